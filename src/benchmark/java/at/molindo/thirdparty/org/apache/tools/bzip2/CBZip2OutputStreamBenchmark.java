@@ -0,0 +1,74 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.apache.tools.bzip2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CBZip2OutputStream} compressing 1 MiB of text-like input. Average time
+ * per MiB is reported, i.e. throughput is 1 / score.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CBZip2OutputStreamBenchmark {
+
+	private static final int SIZE = 1 << 20;
+
+	@Param({ "1", "9" })
+	int _blockSize;
+
+	private byte[] _input;
+	private ByteArrayOutputStream _out;
+
+	@Setup
+	public void setup() {
+		// random words from a small alphabet compress like text
+		final Random rnd = new Random(42);
+		_input = new byte[SIZE];
+		for (int i = 0; i < _input.length; i++) {
+			_input[i] = rnd.nextInt(8) == 0 ? (byte) ' ' : (byte) ('a' + rnd.nextInt(16));
+		}
+		_out = new ByteArrayOutputStream(SIZE);
+	}
+
+	@Benchmark
+	public int compress() throws IOException {
+		_out.reset();
+		final CBZip2OutputStream out = new CBZip2OutputStream(_out, _blockSize);
+		out.write(_input, 0, _input.length);
+		out.close();
+		return _out.size();
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionPolicy;
+
+/**
+ * {@link ConcurrentLinkedHashMap#get(Object)} of cached keys for each
+ * {@link EvictionPolicy}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentLinkedHashMapBenchmark {
+
+	private static final int CAPACITY = 1024;
+
+	@Param({ "FIFO", "SECOND_CHANCE", "LRU", "TINY_LFU" })
+	String _policy;
+
+	private ConcurrentLinkedHashMap<Integer, Integer> _map;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		_map = new ConcurrentLinkedHashMap<Integer, Integer>(EvictionPolicy.valueOf(_policy), CAPACITY);
+		for (int i = 0; i < CAPACITY; i++) {
+			_map.put(i, i);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Key {
+		private int _next;
+
+		Integer next() {
+			return _next++ & CAPACITY - 1;
+		}
+	}
+
+	@Benchmark
+	public Integer get(Key key) {
+		return _map.get(key.next());
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Integer getConcurrent(Key key) {
+		return get(key);
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.springframework.web.util;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link UriUtils} encoding and decoding of plain and non-ASCII query params
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UriUtilsBenchmark {
+
+	private static final String ENCODING = "UTF-8";
+
+	private String _plain = "molindo-utils";
+	private String _param = "gr\u00fc\u00dfe aus wien & umgebung";
+	private String _encoded = "gr%C3%BC%C3%9Fe%20aus%20wien%20%26%20umgebung";
+
+	@Benchmark
+	public String encodeQueryParamPlain() throws UnsupportedEncodingException {
+		return UriUtils.encodeQueryParam(_plain, ENCODING);
+	}
+
+	@Benchmark
+	public String encodeQueryParam() throws UnsupportedEncodingException {
+		return UriUtils.encodeQueryParam(_param, ENCODING);
+	}
+
+	@Benchmark
+	public String decode() throws UnsupportedEncodingException {
+		return UriUtils.decode(_encoded, ENCODING);
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * offer/take on {@link BoundedPriorityBlockingQueue} and
+ * {@link ConcurrentBoundedPriorityBlockingQueue}. Consumers use a timed poll
+ * instead of {@link BoundedPriorityBlockingQueue#take()} as JMH can't end an
+ * iteration while a thread is blocked on an empty queue.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class BoundedPriorityBlockingQueueBenchmark {
+
+	private static final int CAPACITY = 1024;
+
+	@Param({ "locked", "concurrent" })
+	String _impl;
+
+	private BlockingQueue<Integer> _queue;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		if ("concurrent".equals(_impl)) {
+			_queue = new ConcurrentBoundedPriorityBlockingQueue<Integer>(CAPACITY);
+		} else {
+			_queue = new BoundedPriorityBlockingQueue<Integer>(CAPACITY);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Priority {
+		private int _next;
+
+		Integer next() {
+			return _next++ & 0xff;
+		}
+	}
+
+	@Benchmark
+	@Group("single")
+	public Integer offerTake(Priority p) throws InterruptedException {
+		_queue.offer(p.next());
+		return _queue.take();
+	}
+
+	@Benchmark
+	@Group("producerConsumer")
+	@GroupThreads(2)
+	public boolean offer(Priority p) throws InterruptedException {
+		return _queue.offer(p.next(), 1, TimeUnit.MILLISECONDS);
+	}
+
+	@Benchmark
+	@Group("producerConsumer")
+	@GroupThreads(2)
+	public Integer take() throws InterruptedException {
+		return _queue.poll(1, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link KeyLock#withLock(Object, Callable)} with distinct keys per thread
+ * (uncontended) and a single shared key (contended)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyLockBenchmark {
+
+	private static final Callable<Integer> CALLABLE = new Callable<Integer>() {
+
+		@Override
+		public Integer call() throws Exception {
+			return 42;
+		}
+	};
+
+	private final KeyLock<Integer, Integer> _lock = KeyLock.newKeyLock();
+
+	@State(Scope.Thread)
+	public static class ThreadKey {
+		private static int _next = 0;
+
+		private final Integer _key;
+
+		public ThreadKey() {
+			synchronized (ThreadKey.class) {
+				_key = _next++;
+			}
+		}
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Integer uncontended(ThreadKey key) throws Exception {
+		return _lock.withLock(key._key, CALLABLE);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Integer contended() throws Exception {
+		return _lock.withLock(-1, CALLABLE);
+	}
+
+	@Benchmark
+	public Integer singleThread() throws Exception {
+		return _lock.withLock(-1, CALLABLE);
+	}
+}
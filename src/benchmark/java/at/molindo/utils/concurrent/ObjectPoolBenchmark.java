@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ObjectPool#get()} immediately followed by {@link ObjectPool#put(Object)}
+ * compared to {@link ConcurrentObjectPool}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectPoolBenchmark {
+
+	private final ObjectPool<List<String>> _pool = new ObjectPool<List<String>>(64) {
+
+		@Override
+		protected List<String> create() {
+			return new ArrayList<String>();
+		}
+
+		@Override
+		protected boolean reset(List<String> object) {
+			object.clear();
+			return true;
+		}
+	};
+
+	private final ConcurrentObjectPool<List<String>> _concurrentPool = new ConcurrentObjectPool<List<String>>(64) {
+
+		@Override
+		protected List<String> create() {
+			return new ArrayList<String>();
+		}
+
+		@Override
+		protected boolean reset(List<String> object) {
+			object.clear();
+			return true;
+		}
+	};
+
+	@Benchmark
+	public List<String> getPut() {
+		List<String> list = _pool.get();
+		_pool.put(list);
+		return list;
+	}
+
+	@Benchmark
+	@Threads(8)
+	public List<String> getPutConcurrent() {
+		return getPut();
+	}
+
+	@Benchmark
+	public List<String> concurrentGetPut() {
+		List<String> list = _concurrentPool.get();
+		_concurrentPool.put(list);
+		return list;
+	}
+
+	@Benchmark
+	@Threads(8)
+	public List<String> concurrentGetPutConcurrent() {
+		return concurrentGetPut();
+	}
+}
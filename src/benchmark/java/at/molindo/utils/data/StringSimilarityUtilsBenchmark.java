@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link StringSimilarityUtils#similarity(String, String)} and the early abort
+ * of {@link StringSimilarityUtils#similarity(String, String, float)}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringSimilarityUtilsBenchmark {
+
+	private String _string1 = "Molindo Utils - simply utility methods";
+	private String _string2 = "Molindo Util - simple utility method";
+	private String _short = "Molindo";
+
+	@Benchmark
+	public float similarity() {
+		return StringSimilarityUtils.similarity(_string1, _string2);
+	}
+
+	@Benchmark
+	public float similarityMin() {
+		return StringSimilarityUtils.similarity(_string1, _string2, 0.8f);
+	}
+
+	@Benchmark
+	public float similarityAbort() {
+		return StringSimilarityUtils.similarity(_string1, _short, 0.8f);
+	}
+}
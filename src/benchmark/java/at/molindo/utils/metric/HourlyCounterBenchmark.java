@@ -0,0 +1,68 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link HourlyCounter#increment()} and
+ * {@link ConcurrentHourlyCounter#increment()} from a single and from concurrent
+ * threads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HourlyCounterBenchmark {
+
+	private final HourlyCounter _counter = new HourlyCounter();
+	private final ConcurrentHourlyCounter _concurrentCounter = new ConcurrentHourlyCounter();
+
+	@Benchmark
+	public void increment() {
+		_counter.increment();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void incrementConcurrent() {
+		_counter.increment();
+	}
+
+	@Benchmark
+	public void incrementLockFree() {
+		_concurrentCounter.increment();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void incrementLockFreeConcurrent() {
+		_concurrentCounter.increment();
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PercentileCounter#increment(int)},
+ * {@link PercentileCounter#increment(long)} and
+ * {@link PercentileCounter#recordNanos(long)} with typical latency limits
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PercentileCounterBenchmark {
+
+	private static final int[] LIMITS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+	private final PercentileCounter _counter = new PercentileCounter(LIMITS);
+
+	@State(Scope.Thread)
+	public static class Millis {
+		private int _next;
+
+		int next() {
+			return _next = _next + 7 & 0x1fff;
+		}
+	}
+
+	@Benchmark
+	public void increment(Millis m) {
+		_counter.increment(m.next());
+	}
+
+	@Benchmark
+	public void incrementStart() {
+		_counter.increment(System.currentTimeMillis());
+	}
+
+	@Benchmark
+	public void recordNanos(Millis m) {
+		_counter.recordNanos(m.next() * 1000L);
+	}
+
+	@State(Scope.Thread)
+	public static class Timer {
+		private PercentileTimer _timer;
+
+		@Setup
+		public void setup(PercentileCounterBenchmark benchmark) {
+			_timer = new PercentileTimer(benchmark._counter);
+		}
+	}
+
+	@Benchmark
+	public long timer(Timer t) {
+		t._timer.start();
+		return t._timer.stop();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void incrementConcurrent(Millis m) {
+		_counter.increment(m.next());
+	}
+}
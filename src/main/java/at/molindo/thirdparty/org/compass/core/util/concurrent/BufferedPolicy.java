@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node;
+
+/**
+ * The bookkeeping of an {@link ConcurrentLinkedHashMap.EvictionPolicy} that
+ * does not use the map's lock-free list. Reads are recorded in a
+ * {@link ReadBuffer} and replayed in batches, while additions, removals and
+ * evictions are applied immediately. All methods are called with the map's
+ * eviction lock held.
+ */
+abstract class BufferedPolicy<K, V> implements ReadBuffer.Consumer<Node<K, V>>, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Adds a new node that was just inserted into the data store.
+	 */
+	abstract void onAdd(Node<K, V> node);
+
+	/**
+	 * Applies a recorded access. The node may have been removed meanwhile.
+	 */
+	abstract void onAccess(Node<K, V> node);
+
+	/**
+	 * Applies a changed weight of a node.
+	 */
+	abstract void onUpdate(Node<K, V> node);
+
+	/**
+	 * Removes a node that was removed from the data store. The node may not
+	 * have been added yet or may have been evicted already.
+	 */
+	abstract void onRemove(Node<K, V> node);
+
+	/**
+	 * Evicts entries using {@link ConcurrentLinkedHashMap#evictNode(Node)}
+	 * until the map does not exceed its capacity.
+	 */
+	abstract void evict(ConcurrentLinkedHashMap<K, V> map);
+
+	/**
+	 * Retrieves the total weight of the nodes tracked by this policy. May be
+	 * called without holding the eviction lock.
+	 */
+	abstract int weightedSize();
+
+	/**
+	 * Notified when the capacity of the map changes.
+	 */
+	void onCapacityChanged(int capacity) {
+		// do nothing
+	}
+
+	@Override
+	public final void accept(Node<K, V> node) {
+		onAccess(node);
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionPolicy;
+
+/**
+ * An immutable snapshot of the statistics of a {@link ConcurrentLinkedHashMap},
+ * taken without locking the map. As the counters are read one by one while
+ * the map may be modified, the values aren't necessarily consistent with each
+ * other.
+ */
+public final class CacheStats implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final EvictionPolicy policy;
+	private final long hitCount;
+	private final long missCount;
+	private final long putCount;
+	private final long evictionCount;
+	private final int samplingRate;
+	private final long sampledHitCount;
+	private final long sampledMissCount;
+
+	CacheStats(EvictionPolicy policy, StatsCounter stats, HitRateSampler sampler) {
+		this.policy = policy;
+		this.hitCount = stats == null ? 0 : stats.hits.sum();
+		this.missCount = stats == null ? 0 : stats.misses.sum();
+		this.putCount = stats == null ? 0 : stats.puts.sum();
+		this.evictionCount = stats == null ? 0 : stats.evictions.sum();
+		this.samplingRate = sampler == null ? 0 : sampler.rate;
+		this.sampledHitCount = sampler == null ? 0 : sampler.hits.sum();
+		this.sampledMissCount = sampler == null ? 0 : sampler.misses.sum();
+	}
+
+	/**
+	 * Retrieves the eviction policy of the map.
+	 */
+	public EvictionPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Retrieves the number of retrievals that returned a value.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Retrieves the number of retrievals that returned <tt>null</tt>.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * Retrieves the ratio of hits to requests or <tt>0</tt> without requests.
+	 */
+	public double getHitRate() {
+		return ratio(hitCount, missCount);
+	}
+
+	/**
+	 * Retrieves the number of values stored by <tt>put</tt>,
+	 * <tt>putIfAbsent</tt> and <tt>replace</tt>.
+	 */
+	public long getPutCount() {
+		return putCount;
+	}
+
+	/**
+	 * Retrieves the number of entries evicted by the policy.
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Retrieves the sampling rate of the hit rate estimator, i.e. one out of
+	 * this many keys is sampled, or <tt>0</tt> if disabled.
+	 */
+	public int getSamplingRate() {
+		return samplingRate;
+	}
+
+	public long getSampledHitCount() {
+		return sampledHitCount;
+	}
+
+	public long getSampledMissCount() {
+		return sampledMissCount;
+	}
+
+	/**
+	 * Retrieves the hit rate estimated from sampled keys or <tt>0</tt>
+	 * without sampled requests.
+	 */
+	public double getSampledHitRate() {
+		return ratio(sampledHitCount, sampledMissCount);
+	}
+
+	private static double ratio(long hits, long misses) {
+		long requests = hits + misses;
+		return requests == 0 ? 0.0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"CacheStats[policy=%s, hits=%d, misses=%d, hitRate=%.4f, puts=%d, evictions=%d, samplingRate=%d, sampledHitRate=%.4f]",
+				policy, hitCount, missCount, getHitRate(), putCount, evictionCount, samplingRate,
+				getSampledHitRate());
+	}
+}
@@ -43,7 +43,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node.State;
 
@@ -68,35 +70,58 @@ import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHa
  * FIFO. <li> Least Recently Used: An eviction policy based on the observation
  * that entries that have been used recently will likely be used again soon.
  * This policy provides a good approximation of an optimal algorithm, but
- * suffers by being expensive to maintain. The cost of reordering entries on the
- * list during every access operation reduces the concurrency and performance
- * characteristics of this policy. </ul>
+ * suffers by being expensive to maintain. Reordering entries on every access
+ * is amortized by recording accesses in a buffer and replaying them in
+ * batches, hence the order is an approximation. <li> Window TinyLFU: An admission policy that
+ * keeps a small window of recently added entries and only admits entries
+ * leaving the window into the main space if they are estimated to be used more
+ * frequently than the entry they would replace. This policy is resistant to
+ * scans and provides a near-optimal hit rate for skewed workloads. </ul>
+ * 
+ * The <i>Least Recently Used</i> and <i>Window TinyLFU</i> policies do not
+ * maintain the lock-free list. Instead, retrievals are recorded in a lossy,
+ * striped read buffer without allocating and replayed in batches under an
+ * eviction lock, which is only tried by readers, while additions and removals
+ * acquire it. Retrievals therefore perform close to a {@link ConcurrentHashMap}.
  * 
  * The <i>Second Chance</i> eviction policy is recommended for common use cases
- * as it provides the best mix of performance and efficiency of the supported
- * replacement policies.
+ * as it provides the best mix of performance and efficiency of the FIFO-based
+ * policies, <i>Window TinyLFU</i> if the hit rate matters most.
+ * 
+ * The map is bounded by the total weight of its entries, as determined by a
+ * {@link Weigher}. By default, each entry has a weight of 1, i.e. the capacity
+ * is the maximum number of entries. A weigher estimating the size of values in
+ * bytes turns the capacity into a memory bound. Adding a heavy entry evicts as
+ * many entries as necessary.
  * 
- * If the <i>Least Recently Used</i> policy is chosen then the sizing should
- * compensate for the proliferation of dead nodes on the linked list. While the
- * values are removed immediately, the nodes are evicted only when they reach
- * the head of the list. Under FIFO-based policies, dead nodes occur when
- * explicit removals are requested and does not normally produce a noticeable
- * impact on the map's hit rate. The LRU policy creates a dead node on every
- * successful retrieval and a new node is placed at the tail of the list. For
- * this reason, the LRU's efficiency cannot be compared directly to a
- * {@link java.util.LinkedHashMap} evicting in access order.
+ * Statistics are disabled by default. If enabled, hits, misses, puts and
+ * evictions are counted by striped counters. Alternatively, a cheaper
+ * estimate of the hit rate is available by only counting retrievals of a
+ * sample of keys. A {@link CacheStats} snapshot is taken without locking.
+ * 
+ * Under FIFO-based policies, dead nodes occur on the linked list when explicit
+ * removals are requested. While the values are removed immediately, the nodes
+ * are evicted only when they reach the head of the list. This does not
+ * normally produce a noticeable impact on the map's hit rate.
  * 
  * @author <a href="mailto:ben.manes@reardencommerce.com">Ben Manes</a>
  */
 public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V>, Serializable {
 	private static final long serialVersionUID = 8350170357874293408L;
+	private static final Weigher<Object> SINGLETON_WEIGHER = new SingletonWeigher();
 	final List<EvictionListener<K, V>> listeners;
 	final ConcurrentMap<K, Node<K, V>> data;
 	final AtomicInteger capacity;
 	final EvictionPolicy policy;
+	final Weigher<? super V> weigher;
 	final AtomicInteger length;
 	final Node<K, V> head;
 	final Node<K, V> tail;
+	final ReentrantLock evictionLock;
+	final BufferedPolicy<K, V> buffered;
+	final ReadBuffer<Node<K, V>> readBuffer;
+	volatile StatsCounter stats;
+	volatile HitRateSampler sampler;
 
 	/**
 	 * Creates a new, empty, unbounded map with the specified maximum capacity
@@ -112,6 +137,7 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	 *            The listeners registered for notification when an entry is
 	 *            evicted.
 	 */
+	@SafeVarargs
 	public ConcurrentLinkedHashMap(EvictionPolicy policy, int maximumCapacity, EvictionListener<K, V>... listeners) {
 		this(policy, maximumCapacity, 16, listeners);
 	}
@@ -134,9 +160,37 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	 *            The listeners registered for notification when an entry is
 	 *            evicted.
 	 */
+	@SafeVarargs
 	public ConcurrentLinkedHashMap(EvictionPolicy policy, int maximumCapacity, int concurrencyLevel,
 			EvictionListener<K, V>... listeners) {
-		if (policy == null || maximumCapacity < 0 || concurrencyLevel <= 0) {
+		this(policy, maximumCapacity, concurrencyLevel, SINGLETON_WEIGHER, listeners);
+	}
+
+	/**
+	 * Creates a new, empty, unbounded map with the specified maximum weighted
+	 * capacity and concurrency level.
+	 * 
+	 * @param policy
+	 *            The eviction policy to apply when the weighted size exceeds
+	 *            the maximum capacity.
+	 * @param maximumCapacity
+	 *            The maximum total weight to coerces to. The weighted size may
+	 *            exceed it temporarily.
+	 * @param concurrencyLevel
+	 *            The estimated number of concurrently updating threads. The
+	 *            implementation performs internal sizing to try to accommodate
+	 *            this many threads.
+	 * @param weigher
+	 *            The weigher determining the weight of each value.
+	 * @param listeners
+	 *            The listeners registered for notification when an entry is
+	 *            evicted.
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public ConcurrentLinkedHashMap(EvictionPolicy policy, int maximumCapacity, int concurrencyLevel,
+			Weigher<? super V> weigher, EvictionListener<K, V>... listeners) {
+		if (policy == null || weigher == null || maximumCapacity < 0 || concurrencyLevel <= 0) {
 			throw new IllegalArgumentException();
 		}
 		this.listeners = listeners == null ? Collections.<EvictionListener<K, V>> emptyList() : Arrays
@@ -147,6 +201,10 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		this.head = new Node<K, V>();
 		this.tail = new Node<K, V>();
 		this.policy = policy;
+		this.weigher = weigher;
+		this.evictionLock = new ReentrantLock();
+		this.buffered = policy.newBufferedPolicy(maximumCapacity, weigher != SINGLETON_WEIGHER);
+		this.readBuffer = buffered == null ? null : new ReadBuffer<Node<K, V>>();
 
 		head.setPrev(head);
 		head.setNext(tail);
@@ -164,31 +222,145 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	}
 
 	/**
-	 * Sets the maximum capacity of the map and eagerly evicts entries until the
-	 * it shrinks to the appropriate size.
+	 * Sets the maximum weighted capacity of the map and eagerly evicts entries
+	 * until the it shrinks to the appropriate size.
 	 * 
 	 * @param capacity
-	 *            The maximum capacity of the map.
+	 *            The maximum total weight of the map.
 	 */
 	public void setCapacity(int capacity) {
 		if (capacity < 0) {
 			throw new IllegalArgumentException();
 		}
 		this.capacity.set(capacity);
+		if (buffered != null) {
+			evictionLock.lock();
+			try {
+				buffered.onCapacityChanged(capacity);
+				readBuffer.drainTo(buffered);
+				buffered.evict(this);
+			} finally {
+				evictionLock.unlock();
+			}
+			return;
+		}
 		while (isOverflow()) {
 			evict();
 		}
 	}
 
 	/**
-	 * Retrieves the maximum capacity of the map.
+	 * Retrieves the maximum weighted capacity of the map.
 	 * 
-	 * @return The maximum capacity.
+	 * @return The maximum total weight.
 	 */
 	public int capacity() {
 		return capacity.get();
 	}
 
+	/**
+	 * Retrieves the total weight of the entries. Under FIFO-based policies,
+	 * this includes removed entries until they reach the head of the list.
+	 * 
+	 * @return The weighted size.
+	 */
+	public int weightedSize() {
+		return buffered == null ? length.get() : buffered.weightedSize();
+	}
+
+	/**
+	 * Enables or disables counting hits, misses, puts and evictions. Enabling
+	 * starts with zero counts.
+	 * 
+	 * @param recordStats
+	 *            Whether to record statistics.
+	 */
+	public void setRecordStats(boolean recordStats) {
+		this.stats = recordStats ? new StatsCounter() : null;
+	}
+
+	/**
+	 * Enables or disables estimating the hit rate by counting retrievals of
+	 * one out of <tt>rate</tt> keys. Enabling starts with zero counts.
+	 * 
+	 * @param rate
+	 *            The sampling rate, rounded up to the next power of two, or
+	 *            <tt>0</tt> to disable.
+	 */
+	public void setHitRateSampling(int rate) {
+		if (rate < 0) {
+			throw new IllegalArgumentException();
+		}
+		this.sampler = rate == 0 ? null : new HitRateSampler(rate);
+	}
+
+	/**
+	 * Retrieves a snapshot of the statistics without locking the map.
+	 * 
+	 * @return The current statistics, all zero if disabled.
+	 */
+	public CacheStats stats() {
+		return new CacheStats(policy, stats, sampler);
+	}
+
+	/**
+	 * Resets all statistics. Concurrent updates might survive.
+	 */
+	public void resetStats() {
+		StatsCounter stats = this.stats;
+		if (stats != null) {
+			stats.reset();
+		}
+		HitRateSampler sampler = this.sampler;
+		if (sampler != null) {
+			sampler.reset();
+		}
+	}
+
+	/**
+	 * Records a retrieval if statistics are enabled.
+	 * 
+	 * @param key
+	 *            The retrieved key.
+	 * @param hit
+	 *            Whether a value was found.
+	 */
+	private void recordGet(Object key, boolean hit) {
+		StatsCounter stats = this.stats;
+		if (stats != null) {
+			(hit ? stats.hits : stats.misses).increment();
+		}
+		HitRateSampler sampler = this.sampler;
+		if (sampler != null) {
+			sampler.record(key, hit);
+		}
+	}
+
+	/**
+	 * Records a stored value if statistics are enabled.
+	 */
+	private void recordPut() {
+		StatsCounter stats = this.stats;
+		if (stats != null) {
+			stats.puts.increment();
+		}
+	}
+
+	/**
+	 * Determines the weight of a value.
+	 * 
+	 * @param value
+	 *            The value to weigh.
+	 * @return The non-negative weight.
+	 */
+	private int weightOf(V value) {
+		int weight = weigher.weightOf(value);
+		if (weight < 0) {
+			throw new IllegalArgumentException("negative weight: " + weight);
+		}
+		return weight;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -220,11 +392,19 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	 */
 	@Override
 	public boolean containsValue(Object value) {
-		return data.containsValue(new Node<Object, Object>(null, value));
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		for (Node<K, V> node : data.values()) {
+			if (value.equals(node.getValue())) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
-	 * Evicts a single entry if the map exceeds the maximum capacity.
+	 * Evicts entries while the map exceeds the maximum capacity.
 	 */
 	private void evict() {
 		while (isOverflow()) {
@@ -233,15 +413,110 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 				return;
 			} else if (policy.onEvict(this, node)) {
 				V value = node.getValue();
-				if (value != null) {
-					K key = node.getKey();
-					data.remove(key);
+				K key = node.getKey();
+				if (value != null && data.remove(key, node)) {
 					notifyEviction(key, value);
 				}
-				length.decrementAndGet();
-				return;
+				length.addAndGet(-node.getWeight());
+			} else {
+				offer(node);
 			}
-			offer(node);
+		}
+	}
+
+	/**
+	 * Removes a node chosen by the buffered policy from the data store and
+	 * notifies the listeners unless it was removed concurrently. Nodes are
+	 * compared by identity, so a new mapping for the same key is never removed.
+	 * 
+	 * @param node
+	 *            A node that was already unlinked by the policy.
+	 */
+	void evictNode(Node<K, V> node) {
+		K key = node.getKey();
+		V value = node.getValue();
+		if (value != null && data.remove(key, node)) {
+			notifyEviction(key, value);
+		}
+	}
+
+	/**
+	 * Records a retrieval for the buffered policy and drains the read buffer if
+	 * it is filling up and the eviction lock is available.
+	 * 
+	 * @param node
+	 *            The retrieved node.
+	 */
+	void afterRead(Node<K, V> node) {
+		if (readBuffer.record(node) && evictionLock.tryLock()) {
+			try {
+				readBuffer.drainTo(buffered);
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds a new node to the buffered policy and evicts if the map overflowed.
+	 * 
+	 * @param node
+	 *            A node that was just added to the data store.
+	 */
+	private void afterWrite(Node<K, V> node) {
+		evictionLock.lock();
+		try {
+			readBuffer.drainTo(buffered);
+			// skip if removed before the lock was acquired
+			if (node.getValue() != null) {
+				buffered.onAdd(node);
+			}
+			buffered.evict(this);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Applies the changed weight of a node after its value was replaced and
+	 * evicts if the map overflowed.
+	 * 
+	 * @param node
+	 *            The node whose value was replaced.
+	 * @param weight
+	 *            The weight of the new value.
+	 */
+	private void afterUpdate(Node<K, V> node, int weight) {
+		int delta = weight - node.getAndSetWeight(weight);
+		if (delta == 0) {
+			return;
+		}
+		if (buffered == null) {
+			length.addAndGet(delta);
+			evict();
+			return;
+		}
+		evictionLock.lock();
+		try {
+			buffered.onUpdate(node);
+			buffered.evict(this);
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a node from the buffered policy.
+	 * 
+	 * @param node
+	 *            A node that was removed from the data store.
+	 */
+	void afterRemove(Node<K, V> node) {
+		evictionLock.lock();
+		try {
+			buffered.onRemove(node);
+		} finally {
+			evictionLock.unlock();
 		}
 	}
 
@@ -254,6 +529,10 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	 *            The entry's value.
 	 */
 	private void notifyEviction(K key, V value) {
+		StatsCounter stats = this.stats;
+		if (stats != null) {
+			stats.evictions.increment();
+		}
 		for (EvictionListener<K, V> listener : listeners) {
 			listener.onEviction(key, value);
 		}
@@ -321,9 +600,13 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	private Node<K, V> putIfAbsent(Node<K, V> node) {
 		Node<K, V> old = data.putIfAbsent(node.getKey(), node);
 		if (old == null) {
-			length.incrementAndGet();
-			offer(node);
-			evict();
+			if (buffered != null) {
+				afterWrite(node);
+			} else {
+				length.addAndGet(node.getWeight());
+				offer(node);
+				evict();
+			}
 		}
 		return old;
 	}
@@ -337,8 +620,10 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		if (node != null) {
 			V value = node.getValue();
 			policy.onGet(this, node);
+			recordGet(key, value != null);
 			return value;
 		}
+		recordGet(key, false);
 		return null;
 	}
 
@@ -350,8 +635,15 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		if (value == null) {
 			throw new IllegalArgumentException();
 		}
-		Node<K, V> old = putIfAbsent(new Node<K, V>(key, value));
-		return old == null ? null : old.getAndSetValue(value);
+		int weight = weightOf(value);
+		Node<K, V> old = putIfAbsent(new Node<K, V>(key, value, weight));
+		recordPut();
+		if (old == null) {
+			return null;
+		}
+		V oldValue = old.getAndSetValue(value);
+		afterUpdate(old, weight);
+		return oldValue;
 	}
 
 	/**
@@ -362,8 +654,12 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		if (value == null) {
 			throw new IllegalArgumentException();
 		}
-		Node<K, V> old = putIfAbsent(new Node<K, V>(key, value));
-		return old == null ? null : old.getValue();
+		Node<K, V> old = putIfAbsent(new Node<K, V>(key, value, weightOf(value)));
+		if (old == null) {
+			recordPut();
+			return null;
+		}
+		return old.getValue();
 	}
 
 	/**
@@ -386,7 +682,7 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 	@Override
 	public boolean remove(Object key, Object value) {
 		Node<K, V> node = data.get(key);
-		if (node != null && node.value.equals(value) && data.remove(key, node)) {
+		if (node != null && value != null && value.equals(node.getValue()) && data.remove(key, node)) {
 			policy.onRemove(this, node);
 			return true;
 		}
@@ -402,7 +698,14 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 			throw new IllegalArgumentException();
 		}
 		Node<K, V> node = data.get(key);
-		return node == null ? null : node.getAndSetValue(value);
+		if (node == null) {
+			return null;
+		}
+		int weight = weightOf(value);
+		V oldValue = node.getAndSetValue(value);
+		afterUpdate(node, weight);
+		recordPut();
+		return oldValue;
 	}
 
 	/**
@@ -414,7 +717,16 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 			throw new IllegalArgumentException();
 		}
 		Node<K, V> node = data.get(key);
-		return node == null ? false : node.casValue(oldValue, newValue);
+		if (node == null) {
+			return false;
+		}
+		int weight = weightOf(newValue);
+		if (!node.casValue(oldValue, newValue)) {
+			return false;
+		}
+		afterUpdate(node, weight);
+		recordPut();
+		return true;
 	}
 
 	/**
@@ -441,6 +753,38 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		void onEviction(K key, V value);
 	}
 
+	/**
+	 * Determines the weight of a value, i.e. the units of capacity it consumes.
+	 */
+	public interface Weigher<V> {
+
+		/**
+		 * Measures the weight of a value. The weight of an entry must not
+		 * change while it is mapped, unless the value is replaced.
+		 * 
+		 * @param value
+		 *            The value to weigh.
+		 * @return The non-negative weight of the value.
+		 */
+		int weightOf(V value);
+	}
+
+	/**
+	 * A weigher where each value has a weight of 1.
+	 */
+	private static final class SingletonWeigher implements Weigher<Object>, Serializable {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int weightOf(Object value) {
+			return 1;
+		}
+
+		private Object readResolve() {
+			return SINGLETON_WEIGHER;
+		}
+	}
+
 	/**
 	 * The replacement policy to apply to determine which entry to discard to
 	 * when the capacity has been reached.
@@ -495,19 +839,51 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		LRU() {
 			@Override
 			<K, V> void onGet(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
-				Node<K, V> newNode = new Node<K, V>(node.getKey(), node.getValue());
-				if (map.data.replace(node.getKey(), node, newNode)) {
-					map.length.incrementAndGet();
-					onRemove(map, node);
-					map.offer(newNode);
-					map.evict();
-				}
+				map.afterRead(node);
+			}
+
+			@Override
+			<K, V> void onRemove(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
+				super.onRemove(map, node);
+				map.afterRemove(node);
 			}
 
 			@Override
 			<K, V> boolean onEvict(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
 				return true;
 			}
+
+			@Override
+			<K, V> BufferedPolicy<K, V> newBufferedPolicy(int capacity, boolean weighted) {
+				return new LruPolicy<K, V>(capacity);
+			}
+		},
+
+		/**
+		 * Admits entries based on how frequently they are used and evicts
+		 * based on how recently they are used (Window TinyLFU).
+		 */
+		TINY_LFU() {
+			@Override
+			<K, V> void onGet(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
+				map.afterRead(node);
+			}
+
+			@Override
+			<K, V> void onRemove(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
+				super.onRemove(map, node);
+				map.afterRemove(node);
+			}
+
+			@Override
+			<K, V> boolean onEvict(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
+				return true;
+			}
+
+			@Override
+			<K, V> BufferedPolicy<K, V> newBufferedPolicy(int capacity, boolean weighted) {
+				return new TinyLfuPolicy<K, V>(capacity, weighted);
+			}
 		};
 
 		/**
@@ -531,6 +907,14 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		 * false, the node is offered to the tail.
 		 */
 		abstract <K, V> boolean onEvict(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node);
+
+		/**
+		 * Creates the bookkeeping of a policy that does not use the lock-free
+		 * list or <tt>null</tt> if it does.
+		 */
+		<K, V> BufferedPolicy<K, V> newBufferedPolicy(int capacity, boolean weighted) {
+			return null;
+		}
 	}
 
 	/**
@@ -542,6 +926,9 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		private static final AtomicReferenceFieldUpdater<Node, Object> valueUpdater = AtomicReferenceFieldUpdater
 				.newUpdater(Node.class, Object.class, "value");
 		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<Node> weightUpdater = AtomicIntegerFieldUpdater.newUpdater(
+				Node.class, "weight");
+		@SuppressWarnings("rawtypes")
 		private static final AtomicReferenceFieldUpdater<Node, State> stateUpdater = AtomicReferenceFieldUpdater
 				.newUpdater(Node.class, State.class, "state");
 		@SuppressWarnings("rawtypes")
@@ -557,10 +944,15 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 
 		private final K key;
 		private volatile V value;
+		private volatile int weight;
 		private volatile State state;
 		private volatile boolean marked;
 		private volatile Node<K, V> prev;
 		private volatile Node<K, V> next;
+		/** The segment of a buffered policy, guarded by the eviction lock. */
+		int queue;
+		/** The weight accounted by a buffered policy, guarded likewise. */
+		int policyWeight;
 
 		/**
 		 * Creates a sentinel node.
@@ -574,8 +966,16 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 		 * Creates a new, unlinked node.
 		 */
 		public Node(K key, V value) {
+			this(key, value, 1);
+		}
+
+		/**
+		 * Creates a new, unlinked node with the given weight.
+		 */
+		public Node(K key, V value, int weight) {
 			this.key = key;
 			this.value = value;
+			this.weight = weight;
 			this.state = State.UNLINKED;
 		}
 
@@ -600,6 +1000,14 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 			return valueUpdater.compareAndSet(this, expect, update);
 		}
 
+		public int getWeight() {
+			return weight;
+		}
+
+		public int getAndSetWeight(int weight) {
+			return weightUpdater.getAndSet(this, weight);
+		}
+
 		public Node<K, V> getPrev() {
 			return prev;
 		}
@@ -644,30 +1052,6 @@ public class ConcurrentLinkedHashMap<K, V> extends AbstractMap<K, V> implements
 			return stateUpdater.compareAndSet(this, expect, update);
 		}
 
-		/**
-		 * Only ensures that the values are equal, as the key may be
-		 * <tt>null</tt> for look-ups.
-		 */
-		@Override
-		public boolean equals(Object obj) {
-			if (obj == this) {
-				return true;
-			} else if (!(obj instanceof Node)) {
-				return false;
-			}
-			V value = getValue();
-			Node<?, ?> node = (Node<?, ?>) obj;
-			return value == null ? node.getValue() == null : value.equals(node.getValue());
-		}
-
-		/**
-		 * {@inheritDoc}
-		 */
-		@Override
-		public int hashCode() {
-			return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
-		}
-
 		@Override
 		public String toString() {
 			return String.format("Node[state=%s, marked=%b, key=%s, value=%s]", getState(), isMarked(), getKey(),
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+
+/**
+ * A probabilistic multi-set estimating the popularity of keys within a time
+ * window. It is a count-min sketch of 4-bit counters (four counters per key,
+ * sixteen per <tt>long</tt>), i.e. the maximum frequency is 15. All counters
+ * are halved once the number of increments reaches ten times the capacity so
+ * that the sketch ages and adapts to changing workloads.
+ * 
+ * This class is not thread-safe, callers must hold the eviction lock.
+ */
+final class FrequencySketch implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+			0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private long[] table;
+	private int tableMask;
+	private int sampleSize;
+	private int size;
+
+	/**
+	 * Creates a sketch sized for the given maximum number of entries.
+	 */
+	FrequencySketch(int capacity) {
+		ensureCapacity(capacity);
+	}
+
+	/**
+	 * Resizes the sketch if it is too small for <tt>capacity</tt> entries. All
+	 * frequencies are lost when resized.
+	 */
+	void ensureCapacity(int capacity) {
+		int maximum = Math.min(Math.max(capacity, 1), 1 << 30);
+		if (table != null && table.length >= maximum) {
+			return;
+		}
+		table = new long[ceilingPowerOfTwo(maximum)];
+		tableMask = Math.max(0, table.length - 1);
+		sampleSize = 10 * maximum < 0 ? Integer.MAX_VALUE : 10 * maximum;
+		size = 0;
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of the key, up to 15.
+	 */
+	int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Increments the popularity of the key if it does not exceed the maximum.
+	 * All counters are aged if the sample size was reached.
+	 */
+	void increment(Object key) {
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(hash, i), start + i);
+		}
+		if (added && ++size == sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * Increments the counter at the table index if not saturated.
+	 */
+	private boolean incrementAt(int i, int j) {
+		int offset = j << 2;
+		long mask = 0xfL << offset;
+		if ((table[i] & mask) != mask) {
+			table[i] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Halves every counter.
+	 */
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		size >>>= 1;
+	}
+
+	private int indexOf(int item, int i) {
+		long hash = (item + SEEDS[i]) * SEEDS[i];
+		hash += hash >>> 32;
+		return ((int) hash) & tableMask;
+	}
+
+	/**
+	 * Applies a supplemental hash function to defend against poor quality
+	 * hash codes.
+	 */
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+
+	private static int ceilingPowerOfTwo(int x) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+
+import at.molindo.utils.concurrent.StripedCounter;
+
+/**
+ * Estimates the hit rate by only counting retrievals of a sample of keys,
+ * selected by their hash. All retrievals of a sampled key are counted, hence
+ * the estimate reflects the access frequency of keys while the cost of
+ * counting is only paid for one key out of <tt>rate</tt>.
+ */
+final class HitRateSampler implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	final int rate;
+	final StripedCounter hits = new StripedCounter();
+	final StripedCounter misses = new StripedCounter();
+
+	private final int mask;
+
+	/**
+	 * Creates a sampler for one out of <tt>rate</tt> keys, rounded up to the
+	 * next power of two.
+	 */
+	HitRateSampler(int rate) {
+		int r = 1;
+		while (r < rate) {
+			r <<= 1;
+		}
+		this.rate = r;
+		this.mask = r - 1;
+	}
+
+	/**
+	 * Counts the retrieval if the key is sampled.
+	 */
+	void record(Object key, boolean hit) {
+		if ((spread(key.hashCode()) & mask) == 0) {
+			(hit ? hits : misses).increment();
+		}
+	}
+
+	void reset() {
+		hits.reset();
+		misses.reset();
+	}
+
+	/**
+	 * Applies a supplemental hash function so that the low bits of poor hash
+	 * codes are usable.
+	 */
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+}
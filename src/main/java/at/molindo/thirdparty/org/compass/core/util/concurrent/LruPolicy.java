@@ -0,0 +1,115 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node.State;
+
+/**
+ * Least recently used: a single {@link NodeDeque} in access order. As
+ * accesses are recorded in a lossy {@link ReadBuffer} and replayed later, the
+ * order is an approximation.
+ */
+final class LruPolicy<K, V> extends BufferedPolicy<K, V> {
+	private static final long serialVersionUID = 1L;
+
+	private final NodeDeque<K, V> deque;
+
+	private int capacity;
+	private volatile int weightedSize;
+
+	LruPolicy(int capacity) {
+		this.deque = new NodeDeque<K, V>();
+		this.capacity = capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onAdd(Node<K, V> node) {
+		deque.add(node);
+		node.setState(State.LINKED);
+		node.policyWeight = node.getWeight();
+		weightedSize += node.policyWeight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onAccess(Node<K, V> node) {
+		if (node.getState() == State.LINKED) {
+			deque.moveToTail(node);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onUpdate(Node<K, V> node) {
+		if (node.getState() == State.LINKED) {
+			int weight = node.getWeight();
+			weightedSize += weight - node.policyWeight;
+			node.policyWeight = weight;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onRemove(Node<K, V> node) {
+		if (node.getState() == State.LINKED) {
+			unlink(node);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void evict(ConcurrentLinkedHashMap<K, V> map) {
+		while (weightedSize > capacity) {
+			Node<K, V> node = deque.peekFirst();
+			unlink(node);
+			map.evictNode(node);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onCapacityChanged(int capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int weightedSize() {
+		return weightedSize;
+	}
+
+	private void unlink(Node<K, V> node) {
+		deque.remove(node);
+		node.setState(State.UNLINKED);
+		weightedSize -= node.policyWeight;
+	}
+}
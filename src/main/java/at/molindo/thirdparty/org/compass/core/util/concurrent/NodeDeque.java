@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node;
+
+/**
+ * A doubly-linked list of nodes in access order, running through the nodes'
+ * <tt>prev</tt> and <tt>next</tt> pointers. Nodes of a buffered policy are
+ * never linked on the map's lock-free list, so the pointers are free to be
+ * reused.
+ * 
+ * This class is not thread-safe, callers must hold the eviction lock.
+ */
+final class NodeDeque<K, V> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final Node<K, V> sentinel;
+
+	NodeDeque() {
+		sentinel = new Node<K, V>();
+		sentinel.setPrev(sentinel);
+		sentinel.setNext(sentinel);
+	}
+
+	boolean isEmpty() {
+		return sentinel.getNext() == sentinel;
+	}
+
+	/**
+	 * Retrieves the least recently used node or <tt>null</tt> if empty.
+	 */
+	Node<K, V> peekFirst() {
+		return next(sentinel);
+	}
+
+	/**
+	 * Retrieves the node following <tt>node</tt> or <tt>null</tt> if it is the
+	 * last one.
+	 */
+	Node<K, V> next(Node<K, V> node) {
+		Node<K, V> next = node.getNext();
+		return next == sentinel ? null : next;
+	}
+
+	/**
+	 * Retrieves and removes the least recently used node or <tt>null</tt> if
+	 * empty.
+	 */
+	Node<K, V> poll() {
+		Node<K, V> node = peekFirst();
+		if (node != null) {
+			remove(node);
+		}
+		return node;
+	}
+
+	/**
+	 * Links the node as the most recently used one.
+	 */
+	void add(Node<K, V> node) {
+		Node<K, V> last = sentinel.getPrev();
+		node.setPrev(last);
+		node.setNext(sentinel);
+		last.setNext(node);
+		sentinel.setPrev(node);
+	}
+
+	/**
+	 * Unlinks the node.
+	 */
+	void remove(Node<K, V> node) {
+		Node<K, V> prev = node.getPrev();
+		Node<K, V> next = node.getNext();
+		prev.setNext(next);
+		next.setPrev(prev);
+		node.setPrev(null);
+		node.setNext(null);
+	}
+
+	/**
+	 * Moves a linked node to the most recently used position.
+	 */
+	void moveToTail(Node<K, V> node) {
+		if (sentinel.getPrev() != node) {
+			remove(node);
+			add(node);
+		}
+	}
+}
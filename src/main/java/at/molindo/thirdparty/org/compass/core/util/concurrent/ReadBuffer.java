@@ -0,0 +1,146 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lossy, striped set of ring buffers recording accesses. Recording neither
+ * blocks nor allocates: a thread publishes into the stripe selected by its id
+ * and silently drops the element if the stripe is full or another thread won
+ * the race for the slot. A policy only needs an approximate access order, so
+ * losing some elements is acceptable.
+ * 
+ * Elements are consumed in batches by {@link #drainTo(Consumer)}, which must
+ * be called by a single thread at a time (i.e. under the eviction lock).
+ */
+final class ReadBuffer<E> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** The number of slots per stripe. */
+	static final int BUFFER_SIZE = 16;
+
+	/** The number of pending elements in a stripe that triggers a drain. */
+	static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+	private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+	private final Stripe<E>[] stripes;
+	private final int stripeMask;
+
+	/**
+	 * Creates a buffer with a stripe per available processor, rounded up to
+	 * the next power of two.
+	 */
+	ReadBuffer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	ReadBuffer(int stripes) {
+		int count = 1;
+		while (count < stripes) {
+			count <<= 1;
+		}
+		this.stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			this.stripes[i] = new Stripe<E>();
+		}
+		this.stripeMask = count - 1;
+	}
+
+	/**
+	 * Records the element if its stripe has room.
+	 * 
+	 * @return Whether the stripe has enough pending elements to be drained.
+	 */
+	boolean record(E e) {
+		Stripe<E> stripe = stripes[stripeIndex()];
+		long writes = stripe.writes.get();
+		long pending = writes - stripe.reads;
+		if (pending >= BUFFER_SIZE) {
+			return true;
+		}
+		if (stripe.writes.compareAndSet(writes, writes + 1)) {
+			stripe.buffer.lazySet((int) writes & BUFFER_MASK, e);
+		}
+		return pending + 1 >= DRAIN_THRESHOLD;
+	}
+
+	/**
+	 * Passes all published elements to the consumer.
+	 * 
+	 * @return The number of drained elements.
+	 */
+	int drainTo(Consumer<? super E> consumer) {
+		int drained = 0;
+		for (Stripe<E> stripe : stripes) {
+			long reads = stripe.reads;
+			long writes = stripe.writes.get();
+			for (; reads < writes; reads++) {
+				int index = (int) reads & BUFFER_MASK;
+				E e = stripe.buffer.get(index);
+				if (e == null) {
+					// slot claimed but not yet published
+					break;
+				}
+				stripe.buffer.lazySet(index, null);
+				consumer.accept(e);
+				drained++;
+			}
+			stripe.reads = reads;
+		}
+		return drained;
+	}
+
+	/**
+	 * Retrieves the number of recorded but not yet drained elements.
+	 */
+	int pending() {
+		long pending = 0;
+		for (Stripe<E> stripe : stripes) {
+			pending += stripe.writes.get() - stripe.reads;
+		}
+		return (int) pending;
+	}
+
+	int stripes() {
+		return stripes.length;
+	}
+
+	private int stripeIndex() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+		return (hash ^ (hash >>> 16)) & stripeMask;
+	}
+
+	/**
+	 * Receives the drained elements.
+	 */
+	interface Consumer<E> {
+		void accept(E e);
+	}
+
+	private static final class Stripe<E> implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<E>(BUFFER_SIZE);
+		private final AtomicLong writes = new AtomicLong();
+		private volatile long reads;
+	}
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import java.io.Serializable;
+
+import at.molindo.utils.concurrent.StripedCounter;
+
+/**
+ * The counters of a {@link ConcurrentLinkedHashMap} recording statistics.
+ * Striped, so that concurrent readers and writers don't contend on a single
+ * counter.
+ */
+final class StatsCounter implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	final StripedCounter hits = new StripedCounter();
+	final StripedCounter misses = new StripedCounter();
+	final StripedCounter puts = new StripedCounter();
+	final StripedCounter evictions = new StripedCounter();
+
+	void reset() {
+		hits.reset();
+		misses.reset();
+		puts.reset();
+		evictions.reset();
+	}
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Node.State;
+
+/**
+ * Window TinyLFU: new entries are added to a small LRU window (1% of the
+ * capacity). Entries leaving the window become candidates for the main space,
+ * a segmented LRU with a probation and a protected (80%) segment. A candidate
+ * is only admitted if it was used more frequently than the main space's
+ * victim, as estimated by a {@link FrequencySketch}. Hence a scan of entries
+ * that are used only once can't flush popular entries from the map.
+ * 
+ * Segment sizes are weights. If weighted, the number of entries is unknown in
+ * advance and the sketch grows with the number of entries instead of being
+ * sized by the capacity.
+ */
+final class TinyLfuPolicy<K, V> extends BufferedPolicy<K, V> {
+	private static final long serialVersionUID = 1L;
+
+	static final int WINDOW = 0;
+	static final int PROBATION = 1;
+	static final int PROTECTED = 2;
+
+	private final NodeDeque<K, V> window;
+	private final NodeDeque<K, V> probation;
+	private final NodeDeque<K, V> protectedQueue;
+	private final FrequencySketch sketch;
+
+	private final boolean weighted;
+
+	private int capacity;
+	private int windowSize;
+	private int protectedSize;
+	private volatile int weightedSize;
+	private int count;
+
+	TinyLfuPolicy(int capacity, boolean weighted) {
+		this.window = new NodeDeque<K, V>();
+		this.probation = new NodeDeque<K, V>();
+		this.protectedQueue = new NodeDeque<K, V>();
+		this.sketch = new FrequencySketch(weighted ? 0 : capacity);
+		this.weighted = weighted;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onAdd(Node<K, V> node) {
+		count++;
+		if (weighted) {
+			sketch.ensureCapacity(count);
+		}
+		sketch.increment(node.getKey());
+		node.queue = WINDOW;
+		window.add(node);
+		node.setState(State.LINKED);
+		node.policyWeight = node.getWeight();
+		windowSize += node.policyWeight;
+		weightedSize += node.policyWeight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onAccess(Node<K, V> node) {
+		if (node.getState() != State.LINKED) {
+			return;
+		}
+		sketch.increment(node.getKey());
+		switch (node.queue) {
+		case WINDOW:
+			window.moveToTail(node);
+			break;
+		case PROBATION:
+			probation.remove(node);
+			node.queue = PROTECTED;
+			protectedQueue.add(node);
+			protectedSize += node.policyWeight;
+			demote();
+			break;
+		default:
+			protectedQueue.moveToTail(node);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onUpdate(Node<K, V> node) {
+		if (node.getState() != State.LINKED) {
+			return;
+		}
+		int delta = node.getWeight() - node.policyWeight;
+		node.policyWeight += delta;
+		weightedSize += delta;
+		if (node.queue == WINDOW) {
+			windowSize += delta;
+		} else if (node.queue == PROTECTED) {
+			protectedSize += delta;
+			demote();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onRemove(Node<K, V> node) {
+		if (node.getState() == State.LINKED) {
+			unlink(node);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void evict(ConcurrentLinkedHashMap<K, V> map) {
+		// move the window's overflow to the tail of probation
+		Node<K, V> candidate = null;
+		int windowMax = windowMax();
+		while (windowSize > windowMax) {
+			Node<K, V> node = window.poll();
+			windowSize -= node.policyWeight;
+			node.queue = PROBATION;
+			probation.add(node);
+			if (candidate == null) {
+				candidate = node;
+			}
+		}
+
+		// let the candidates compete with the victims at the head of probation
+		while (weightedSize > capacity) {
+			Node<K, V> victim = probation.peekFirst();
+			if (victim == null) {
+				victim = protectedQueue.peekFirst();
+			}
+			if (victim == null) {
+				victim = window.peekFirst();
+			}
+			if (victim == null) {
+				return;
+			}
+
+			if (candidate == null || candidate == victim) {
+				if (candidate != null) {
+					candidate = probation.next(candidate);
+				}
+				evict(map, victim);
+			} else {
+				Node<K, V> next = probation.next(candidate);
+				if (admit(candidate, victim)) {
+					evict(map, victim);
+				} else {
+					evict(map, candidate);
+				}
+				candidate = next;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	void onCapacityChanged(int capacity) {
+		this.capacity = capacity;
+		if (!weighted) {
+			sketch.ensureCapacity(capacity);
+		}
+		demote();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int weightedSize() {
+		return weightedSize;
+	}
+
+	/**
+	 * Determines whether the candidate should replace the victim.
+	 */
+	private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+		return sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey());
+	}
+
+	/**
+	 * Moves the protected segment's overflow to the tail of probation.
+	 */
+	private void demote() {
+		int protectedMax = protectedMax();
+		while (protectedSize > protectedMax) {
+			Node<K, V> node = protectedQueue.poll();
+			protectedSize -= node.policyWeight;
+			node.queue = PROBATION;
+			probation.add(node);
+		}
+	}
+
+	private void evict(ConcurrentLinkedHashMap<K, V> map, Node<K, V> node) {
+		unlink(node);
+		map.evictNode(node);
+	}
+
+	private void unlink(Node<K, V> node) {
+		switch (node.queue) {
+		case WINDOW:
+			window.remove(node);
+			windowSize -= node.policyWeight;
+			break;
+		case PROBATION:
+			probation.remove(node);
+			break;
+		default:
+			protectedQueue.remove(node);
+			protectedSize -= node.policyWeight;
+		}
+		node.setState(State.UNLINKED);
+		weightedSize -= node.policyWeight;
+		count--;
+	}
+
+	private int windowMax() {
+		return capacity == 0 ? 0 : Math.max(1, capacity / 100);
+	}
+
+	private int protectedMax() {
+		return (int) ((capacity - windowMax()) * 0.8);
+	}
+}
@@ -0,0 +1,667 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.CheckForNull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionListener;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionPolicy;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Weigher;
+import at.molindo.utils.concurrent.SingleFlight;
+import at.molindo.utils.concurrent.StripedCounter;
+import at.molindo.utils.metric.percentile.IPercentileCounter;
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * cache computing missing values with an {@link ICacheLoader}, bounded by a
+ * {@link ConcurrentLinkedHashMap} using any {@link EvictionPolicy} and an
+ * optional {@link Weigher}.
+ *
+ * <ul>
+ * <li>concurrent misses for the same key share a single load (see
+ * {@link SingleFlight}), other keys aren't blocked</li>
+ * <li>entries expire a fixed time after they were written and/or last read.
+ * Reads check expiry themselves, a {@link TimerWheel} advanced by writes and
+ * {@link #cleanUp()} removes expired entries that aren't read anymore.
+ * Replaced, invalidated and evicted entries are unlinked from the wheel
+ * immediately or on its next use, i.e. it never holds on to their values</li>
+ * <li>entries older than the refresh time are reloaded asynchronously on the
+ * next read while the stale value is still returned. Failed refreshes are
+ * logged and retried by the next read</li>
+ * <li>hits, misses, loads and load times are counted with
+ * {@link StripedCounter}s, load times are optionally recorded in an
+ * {@link IPercentileCounter}</li>
+ * </ul>
+ *
+ * Configuration setters should be called before the cache is used, expiry
+ * changes only affect entries written afterwards.
+ */
+public class LoadingCache<K, V> {
+
+	private static final Logger log = LoggerFactory.getLogger(LoadingCache.class);
+
+	static final int WHEEL_BUCKETS = 512;
+	static final long WHEEL_TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final ICacheLoader<? super K, ? extends V> _loader;
+	private final ConcurrentLinkedHashMap<K, Entry<K, V>> _map;
+	private final SingleFlight<K, V> _flights = new SingleFlight<K, V>();
+
+	private final ReentrantLock _wheelLock = new ReentrantLock();
+	private final TimerWheel<K, V> _wheel = new TimerWheel<K, V>(WHEEL_BUCKETS, WHEEL_TICK_NANOS);
+	private final TimerWheel.ICallback<K, V> _expirer = new Expirer();
+
+	/**
+	 * evicted entries to unlink from the wheel, as the eviction listener must
+	 * not lock the wheel
+	 */
+	private final ConcurrentLinkedQueue<Entry<K, V>> _evicted = new ConcurrentLinkedQueue<Entry<K, V>>();
+
+	private volatile long _expireAfterWriteNanos;
+	private volatile long _expireAfterAccessNanos;
+	private volatile long _refreshAfterWriteNanos;
+	private volatile Executor _refreshExecutor;
+	private volatile IClock _clock = SystemClock.INSTANCE;
+	private volatile IPercentileCounter _loadTimes;
+
+	private final StripedCounter _hits = new StripedCounter();
+	private final StripedCounter _misses = new StripedCounter();
+	private final StripedCounter _loadSuccesses = new StripedCounter();
+	private final StripedCounter _loadFailures = new StripedCounter();
+	private final StripedCounter _loadNanos = new StripedCounter();
+	private final StripedCounter _refreshes = new StripedCounter();
+	private final StripedCounter _evictions = new StripedCounter();
+	private final StripedCounter _expirations = new StripedCounter();
+
+	/**
+	 * @param capacity
+	 *            maximum number of entries
+	 */
+	public LoadingCache(final ICacheLoader<? super K, ? extends V> loader, final EvictionPolicy policy,
+			final int capacity) {
+		this(loader, policy, capacity, null);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum total weight of entries
+	 * @param weigher
+	 *            weigher of values or null to count entries
+	 */
+	@SuppressWarnings("unchecked")
+	public LoadingCache(final ICacheLoader<? super K, ? extends V> loader, final EvictionPolicy policy,
+			final int capacity, final Weigher<? super V> weigher) {
+		if (loader == null) {
+			throw new NullPointerException("loader");
+		}
+		if (policy == null) {
+			throw new NullPointerException("policy");
+		}
+		_loader = loader;
+
+		final EvictionListener<K, Entry<K, V>> listener = new EvictionListener<K, Entry<K, V>>() {
+
+			@Override
+			public void onEviction(final K key, final Entry<K, V> entry) {
+				// called under the map's eviction lock, never lock the wheel here
+				entry.kill();
+				if (isExpiring()) {
+					_evicted.offer(entry);
+				}
+				_evictions.increment();
+			}
+		};
+
+		if (weigher == null) {
+			_map = new ConcurrentLinkedHashMap<K, Entry<K, V>>(policy, capacity, listener);
+		} else {
+			_map = new ConcurrentLinkedHashMap<K, Entry<K, V>>(policy, capacity, 16, new Weigher<Entry<K, V>>() {
+
+				@Override
+				public int weightOf(final Entry<K, V> entry) {
+					return weigher.weightOf(entry._value);
+				}
+			}, listener);
+		}
+	}
+
+	/**
+	 * @param duration
+	 *            time after writing an entry it expires, 0 to disable
+	 */
+	public LoadingCache<K, V> setExpireAfterWrite(final long duration, final TimeUnit unit) {
+		_expireAfterWriteNanos = nanos(duration, unit);
+		return this;
+	}
+
+	/**
+	 * @param duration
+	 *            time after the last read or write of an entry it expires, 0
+	 *            to disable
+	 */
+	public LoadingCache<K, V> setExpireAfterAccess(final long duration, final TimeUnit unit) {
+		_expireAfterAccessNanos = nanos(duration, unit);
+		return this;
+	}
+
+	/**
+	 * @param duration
+	 *            time after writing an entry it is reloaded on the next read,
+	 *            0 to disable
+	 * @param executor
+	 *            executor running reloads
+	 */
+	public LoadingCache<K, V> setRefreshAfterWrite(final long duration, final TimeUnit unit, final Executor executor) {
+		final long nanos = nanos(duration, unit);
+		if (nanos > 0 && executor == null) {
+			throw new NullPointerException("executor");
+		}
+		_refreshExecutor = executor;
+		_refreshAfterWriteNanos = nanos;
+		return this;
+	}
+
+	/**
+	 * @param clock
+	 *            clock used for expiry, refresh and load times
+	 */
+	public LoadingCache<K, V> setClock(final IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_clock = clock;
+		return this;
+	}
+
+	/**
+	 * @param loadTimes
+	 *            counter receiving load times or null
+	 */
+	public LoadingCache<K, V> setLoadTimes(final IPercentileCounter loadTimes) {
+		_loadTimes = loadTimes;
+		return this;
+	}
+
+	public IPercentileCounter getLoadTimes() {
+		return _loadTimes;
+	}
+
+	private static long nanos(final long duration, final TimeUnit unit) {
+		if (duration < 0) {
+			throw new IllegalArgumentException("duration must be >= 0, was " + duration);
+		}
+		return unit.toNanos(duration);
+	}
+
+	/**
+	 * @return cached value or value loaded by this or a concurrent call, null
+	 *         if the loader returned null
+	 * @throws Exception
+	 *             any exception thrown by {@link ICacheLoader#load(Object)}
+	 */
+	@CheckForNull
+	public V get(final K key) throws Exception {
+		final V value = getIfPresent(key);
+		if (value != null) {
+			return value;
+		}
+		return _flights.get(key, new Load(key));
+	}
+
+	/**
+	 * @return cached value or null, never loads
+	 */
+	@CheckForNull
+	public V getIfPresent(final K key) {
+		final long now = _clock.nanoTime();
+		final Entry<K, V> entry = _map.get(key);
+		if (entry != null) {
+			if (!isExpired(entry, now)) {
+				_hits.increment();
+				if (_expireAfterAccessNanos > 0) {
+					entry._accessNanos = now;
+				}
+				refreshIfNeeded(key, entry, now);
+				return entry._value;
+			}
+			expire(entry);
+		}
+		_misses.increment();
+		return null;
+	}
+
+	/**
+	 * cache <code>value</code>, replacing any cached value
+	 */
+	public void put(final K key, final V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		store(key, value);
+	}
+
+	public void invalidate(final K key) {
+		final Entry<K, V> entry = _map.remove(key);
+		if (entry != null) {
+			entry.kill();
+			if (isExpiring()) {
+				_wheelLock.lock();
+				try {
+					_wheel.remove(entry);
+				} finally {
+					_wheelLock.unlock();
+				}
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		for (final K key : _map.keySet()) {
+			invalidate(key);
+		}
+	}
+
+	/**
+	 * remove all entries expired by now. Writes do the same, but skip it if
+	 * another thread is cleaning up already.
+	 *
+	 * @return number of expired entries
+	 */
+	public int cleanUp() {
+		_wheelLock.lock();
+		try {
+			unlinkEvicted();
+			return _wheel.advance(_clock.nanoTime(), _expirer);
+		} finally {
+			_wheelLock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of cached entries, including expired entries that weren't
+	 *         cleaned up yet
+	 */
+	public int size() {
+		return _map.size();
+	}
+
+	/**
+	 * @return number of entries linked into the timer wheel
+	 */
+	int scheduledCount() {
+		_wheelLock.lock();
+		try {
+			return _wheel.size();
+		} finally {
+			_wheelLock.unlock();
+		}
+	}
+
+	/**
+	 * @return total weight of cached entries
+	 */
+	public int weightedSize() {
+		return _map.weightedSize();
+	}
+
+	public int capacity() {
+		return _map.capacity();
+	}
+
+	public void setCapacity(final int capacity) {
+		_map.setCapacity(capacity);
+	}
+
+	public long getHitCount() {
+		return _hits.sum();
+	}
+
+	public long getMissCount() {
+		return _misses.sum();
+	}
+
+	/**
+	 * @return hits / requests or 0 without requests
+	 */
+	public double getHitRate() {
+		final long hits = getHitCount();
+		final long requests = hits + getMissCount();
+		return requests == 0 ? 0.0 : (double) hits / requests;
+	}
+
+	public long getLoadSuccessCount() {
+		return _loadSuccesses.sum();
+	}
+
+	/**
+	 * @return number of loads that threw an exception
+	 */
+	public long getLoadFailureCount() {
+		return _loadFailures.sum();
+	}
+
+	/**
+	 * @return total time spent loading (including refreshes)
+	 */
+	public long getTotalLoadTime(final TimeUnit unit) {
+		return unit.convert(_loadNanos.sum(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return number of values replaced by a refresh
+	 */
+	public long getRefreshCount() {
+		return _refreshes.sum();
+	}
+
+	/**
+	 * @return number of entries evicted due to capacity
+	 */
+	public long getEvictionCount() {
+		return _evictions.sum();
+	}
+
+	/**
+	 * @return number of entries removed due to expiry
+	 */
+	public long getExpirationCount() {
+		return _expirations.sum();
+	}
+
+	/**
+	 * not atomic, concurrent increments might survive
+	 */
+	public void resetStats() {
+		_hits.reset();
+		_misses.reset();
+		_loadSuccesses.reset();
+		_loadFailures.reset();
+		_loadNanos.reset();
+		_refreshes.reset();
+		_evictions.reset();
+		_expirations.reset();
+	}
+
+	private boolean isExpired(final Entry<K, V> entry, final long now) {
+		final long expireAfterWrite = _expireAfterWriteNanos;
+		if (expireAfterWrite > 0 && now - entry._writeNanos >= expireAfterWrite) {
+			return true;
+		}
+		final long expireAfterAccess = _expireAfterAccessNanos;
+		return expireAfterAccess > 0 && now - entry._accessNanos >= expireAfterAccess;
+	}
+
+	private boolean isExpiring() {
+		return _expireAfterWriteNanos > 0 || _expireAfterAccessNanos > 0;
+	}
+
+	private void expire(final Entry<K, V> entry) {
+		if (_map.remove(entry._key, entry)) {
+			entry.kill();
+			_expirations.increment();
+		}
+	}
+
+	private void store(final K key, final V value) {
+		final long now = _clock.nanoTime();
+		final Entry<K, V> entry = new Entry<K, V>(key, value, now);
+		final Entry<K, V> old = _map.put(key, entry);
+		if (old != null) {
+			old.kill();
+		}
+		afterWrite(entry, old, now);
+	}
+
+	/**
+	 * schedule <code>entry</code>, unlink the replaced entry and remove
+	 * expired entries unless another thread is doing so already
+	 *
+	 * @param old
+	 *            replaced entry or null
+	 */
+	private void afterWrite(final Entry<K, V> entry, final Entry<K, V> old, final long now) {
+		if (!isExpiring()) {
+			return;
+		}
+		_wheelLock.lock();
+		try {
+			if (old != null) {
+				_wheel.remove(old);
+			}
+			unlinkEvicted();
+			if (!entry.isDead()) {
+				_wheel.schedule(entry, _expirer.deadline(entry), now);
+			}
+		} finally {
+			_wheelLock.unlock();
+		}
+
+		if (_wheelLock.tryLock()) {
+			try {
+				_wheel.advance(now, _expirer);
+			} finally {
+				_wheelLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * unlink entries queued by the eviction listener, requires the wheel lock
+	 */
+	private void unlinkEvicted() {
+		Entry<K, V> entry;
+		while ((entry = _evicted.poll()) != null) {
+			_wheel.remove(entry);
+		}
+	}
+
+	private void refreshIfNeeded(final K key, final Entry<K, V> entry, final long now) {
+		final long refreshAfterWrite = _refreshAfterWriteNanos;
+		if (refreshAfterWrite > 0 && now - entry._writeNanos >= refreshAfterWrite && entry.startRefresh()) {
+			try {
+				_refreshExecutor.execute(new Refresh(key, entry));
+			} catch (final RejectedExecutionException e) {
+				entry.endRefresh();
+				log.warn("refresh of " + key + " rejected", e);
+			}
+		}
+	}
+
+	private V load(final K key) throws Exception {
+		final long start = _clock.nanoTime();
+		try {
+			final V value = _loader.load(key);
+			_loadSuccesses.increment();
+			return value;
+		} catch (final Exception e) {
+			_loadFailures.increment();
+			throw e;
+		} finally {
+			final long nanos = _clock.nanoTime() - start;
+			_loadNanos.add(nanos);
+			final IPercentileCounter loadTimes = _loadTimes;
+			if (loadTimes != null) {
+				loadTimes.recordNanos(nanos);
+			}
+		}
+	}
+
+	/**
+	 * loads a missing value
+	 */
+	private final class Load implements Callable<V> {
+
+		private final K _key;
+
+		private Load(final K key) {
+			_key = key;
+		}
+
+		@Override
+		public V call() throws Exception {
+			// a concurrent load might have completed before this one started
+			final Entry<K, V> entry = _map.get(_key);
+			if (entry != null && !isExpired(entry, _clock.nanoTime())) {
+				return entry._value;
+			}
+
+			final V value = load(_key);
+			if (value != null) {
+				store(_key, value);
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * replaces a stale value. If it was removed meanwhile (e.g. evicted or
+	 * expired), the value is stored unless another value was stored already,
+	 * as misses for the same key share this load
+	 */
+	private final class Reload implements Callable<V> {
+
+		private final K _key;
+		private final Entry<K, V> _stale;
+
+		private Reload(final K key, final Entry<K, V> stale) {
+			_key = key;
+			_stale = stale;
+		}
+
+		@Override
+		public V call() throws Exception {
+			final V value = load(_key);
+			if (value != null) {
+				final long now = _clock.nanoTime();
+				final Entry<K, V> entry = new Entry<K, V>(_key, value, now);
+				if (_map.replace(_key, _stale, entry)) {
+					_stale.kill();
+					_refreshes.increment();
+					afterWrite(entry, _stale, now);
+				} else if (_map.putIfAbsent(_key, entry) == null) {
+					afterWrite(entry, null, now);
+				}
+			}
+			return value;
+		}
+	}
+
+	private final class Refresh implements Runnable {
+
+		private final K _key;
+		private final Entry<K, V> _stale;
+
+		private Refresh(final K key, final Entry<K, V> stale) {
+			_key = key;
+			_stale = stale;
+		}
+
+		@Override
+		public void run() {
+			try {
+				_flights.get(_key, new Reload(_key, _stale));
+			} catch (final Exception e) {
+				log.warn("refresh of " + _key + " failed", e);
+			} finally {
+				_stale.endRefresh();
+			}
+		}
+	}
+
+	private final class Expirer implements TimerWheel.ICallback<K, V> {
+
+		@Override
+		public long deadline(final Entry<K, V> entry) {
+			final long expireAfterWrite = _expireAfterWriteNanos;
+			final long expireAfterAccess = _expireAfterAccessNanos;
+			if (expireAfterWrite > 0 && expireAfterAccess > 0) {
+				return Math.min(entry._writeNanos + expireAfterWrite, entry._accessNanos + expireAfterAccess);
+			} else if (expireAfterWrite > 0) {
+				return entry._writeNanos + expireAfterWrite;
+			} else {
+				return entry._accessNanos + expireAfterAccess;
+			}
+		}
+
+		@Override
+		public void expire(final Entry<K, V> entry) {
+			LoadingCache.this.expire(entry);
+		}
+	}
+
+	/**
+	 * cached value with its timestamps, linked into the {@link TimerWheel} if
+	 * expiring
+	 */
+	static final class Entry<K, V> {
+
+		@SuppressWarnings("rawtypes")
+		private static final AtomicIntegerFieldUpdater<Entry> REFRESHING = AtomicIntegerFieldUpdater.newUpdater(
+				Entry.class, "_refreshing");
+
+		final K _key;
+		final V _value;
+		final long _writeNanos;
+		volatile long _accessNanos;
+
+		private volatile boolean _dead;
+		private volatile int _refreshing;
+
+		// guarded by the wheel lock
+		Entry<K, V> _prev;
+		Entry<K, V> _next;
+		int _bucket = -1;
+
+		Entry(final K key, final V value, final long nanos) {
+			_key = key;
+			_value = value;
+			_writeNanos = nanos;
+			_accessNanos = nanos;
+		}
+
+		/**
+		 * @return true if removed from the cache
+		 */
+		boolean isDead() {
+			return _dead;
+		}
+
+		void kill() {
+			_dead = true;
+		}
+
+		boolean startRefresh() {
+			return REFRESHING.compareAndSet(this, 0, 1);
+		}
+
+		void endRefresh() {
+			_refreshing = 0;
+		}
+	}
+}
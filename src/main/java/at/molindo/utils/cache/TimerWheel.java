@@ -0,0 +1,204 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.cache;
+
+import at.molindo.utils.cache.LoadingCache.Entry;
+
+/**
+ * hashed timer wheel of {@link Entry}s: an entry is linked into the bucket of
+ * the tick its deadline falls into. {@link #advance(long, ICallback)} visits
+ * all buckets of the ticks that passed since the last call. Deadlines further
+ * away than a full rotation stay in their bucket and are checked again on each
+ * rotation.
+ *
+ * Deadlines are only hints: the wheel asks {@link ICallback#deadline(Entry)}
+ * for the current deadline of each visited entry and moves it if it was
+ * extended (e.g. by an access), i.e. accesses never need to touch the wheel.
+ *
+ * not thread-safe, guarded by the owning cache
+ */
+final class TimerWheel<K, V> {
+
+	private final Entry<K, V>[] _buckets;
+	private final int _mask;
+	private final long _tickNanos;
+
+	private boolean _started;
+	private long _origin;
+	private long _tick;
+	private int _size;
+
+	/**
+	 * @param buckets
+	 *            number of buckets, rounded up to the next power of two
+	 * @param tickNanos
+	 *            duration covered by each bucket
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	TimerWheel(final int buckets, final long tickNanos) {
+		if (buckets < 1) {
+			throw new IllegalArgumentException("buckets must be >= 1, was " + buckets);
+		}
+		if (tickNanos < 1) {
+			throw new IllegalArgumentException("tickNanos must be >= 1, was " + tickNanos);
+		}
+		int count = 1;
+		while (count < buckets) {
+			count <<= 1;
+		}
+		_buckets = new Entry[count];
+		for (int i = 0; i < count; i++) {
+			final Entry<K, V> sentinel = new Entry<K, V>(null, null, 0);
+			sentinel._prev = sentinel;
+			sentinel._next = sentinel;
+			_buckets[i] = sentinel;
+		}
+		_mask = count - 1;
+		_tickNanos = tickNanos;
+	}
+
+	/**
+	 * link <code>entry</code> into the bucket of <code>deadline</code>,
+	 * unlinking it from its previous bucket if already scheduled
+	 */
+	void schedule(final Entry<K, V> entry, final long deadline, final long now) {
+		start(now);
+		if (entry._bucket >= 0) {
+			unlink(entry);
+		}
+		link(entry, bucket(deadline));
+	}
+
+	/**
+	 * unlink <code>entry</code> if scheduled
+	 */
+	void remove(final Entry<K, V> entry) {
+		if (entry._bucket >= 0) {
+			unlink(entry);
+		}
+	}
+
+	/**
+	 * visit the buckets of all ticks up to <code>now</code>. Dead entries are
+	 * dropped, due entries passed to {@link ICallback#expire(Entry)} and
+	 * entries with an extended deadline moved.
+	 *
+	 * @return number of expired entries
+	 */
+	int advance(final long now, final ICallback<K, V> callback) {
+		start(now);
+		final long tick = tick(now);
+		if (tick <= _tick) {
+			return 0;
+		}
+		final long ticks = Math.min(tick - _tick, _buckets.length);
+		final long from = _tick + 1;
+		_tick = tick;
+
+		int expired = 0;
+		for (long t = from; t < from + ticks; t++) {
+			final int index = (int) t & _mask;
+			final Entry<K, V> sentinel = _buckets[index];
+			Entry<K, V> entry = sentinel._next;
+			while (entry != sentinel) {
+				final Entry<K, V> next = entry._next;
+				if (entry.isDead()) {
+					unlink(entry);
+				} else {
+					final long deadline = callback.deadline(entry);
+					if (deadline - now <= 0) {
+						unlink(entry);
+						callback.expire(entry);
+						expired++;
+					} else {
+						final int bucket = bucket(deadline);
+						if (bucket != index) {
+							unlink(entry);
+							link(entry, bucket);
+						}
+					}
+				}
+				entry = next;
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * @return number of scheduled entries
+	 */
+	int size() {
+		return _size;
+	}
+
+	private void start(final long now) {
+		if (!_started) {
+			_origin = now;
+			_tick = 0;
+			_started = true;
+		}
+	}
+
+	private long tick(final long nanos) {
+		return (nanos - _origin) / _tickNanos;
+	}
+
+	/**
+	 * @return bucket of <code>deadline</code>, the next bucket to visit if
+	 *         its tick already passed
+	 */
+	private int bucket(final long deadline) {
+		return (int) Math.max(tick(deadline), _tick + 1) & _mask;
+	}
+
+	private void link(final Entry<K, V> entry, final int bucket) {
+		final Entry<K, V> sentinel = _buckets[bucket];
+		final Entry<K, V> last = sentinel._prev;
+		entry._prev = last;
+		entry._next = sentinel;
+		last._next = entry;
+		sentinel._prev = entry;
+		entry._bucket = bucket;
+		_size++;
+	}
+
+	private void unlink(final Entry<K, V> entry) {
+		entry._prev._next = entry._next;
+		entry._next._prev = entry._prev;
+		entry._prev = null;
+		entry._next = null;
+		entry._bucket = -1;
+		_size--;
+	}
+
+	/**
+	 * provides deadlines and expires entries for
+	 * {@link TimerWheel#advance(long, ICallback)}
+	 */
+	interface ICallback<K, V> {
+
+		/**
+		 * @return current deadline of <code>entry</code> in nanos
+		 */
+		long deadline(Entry<K, V> entry);
+
+		/**
+		 * called for entries whose deadline passed, the entry is already
+		 * unlinked from the wheel
+		 */
+		void expire(Entry<K, V> entry);
+	}
+}
@@ -0,0 +1,617 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.molindo.utils.metric.percentile.IPercentileCounter;
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * {@link IObjectPool} that never holds more than <code>maxTotal</code> objects
+ * (borrowed and idle): once exhausted, {@link #get()} blocks until an object is
+ * returned or destroyed. Idle objects that weren't used for
+ * <code>idleTimeout</code> are destroyed by {@link #evict()} (optionally run
+ * periodically after {@link #startEviction(long, TimeUnit)}) while at least
+ * <code>minIdle</code> objects are kept or created.
+ *
+ * Objects are created outside of the pool's lock, i.e. slow creation doesn't
+ * block other threads returning objects. Like {@link ObjectPool}, the most
+ * recently returned object is borrowed first.
+ */
+public abstract class BoundedObjectPool<T> implements IObjectPool<T> {
+
+	private static final Logger log = LoggerFactory.getLogger(BoundedObjectPool.class);
+
+	private final int _maxTotal;
+	private final int _minIdle;
+	private final long _idleTimeoutMillis;
+
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _available = _lock.newCondition();
+
+	/**
+	 * most recently returned first
+	 */
+	private final ArrayDeque<Idle<T>> _idle = new ArrayDeque<Idle<T>>();
+
+	/**
+	 * borrowed, idle or being created
+	 */
+	private int _total;
+
+	/**
+	 * borrowed and not yet returned or invalidated
+	 */
+	private int _active;
+
+	// stats, guarded by _lock
+	private long _borrowedCount;
+	private long _createdCount;
+	private long _destroyedCount;
+	private long _waitCount;
+	private long _waitNanos;
+
+	private volatile IPercentileCounter _waitTimes;
+	private volatile IClock _clock = SystemClock.INSTANCE;
+
+	private ScheduledExecutorService _evictor;
+
+	/**
+	 * pool without idle eviction
+	 */
+	public BoundedObjectPool(int maxTotal) {
+		this(maxTotal, 0, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param maxTotal
+	 *            maximum number of borrowed and idle objects
+	 * @param minIdle
+	 *            number of idle objects kept by {@link #evict()}
+	 * @param idleTimeout
+	 *            idle time after which objects are destroyed by
+	 *            {@link #evict()}, 0 to keep idle objects
+	 */
+	public BoundedObjectPool(int maxTotal, int minIdle, long idleTimeout, TimeUnit unit) {
+		if (maxTotal < 1) {
+			throw new IllegalArgumentException("maxTotal must be >= 1, was " + maxTotal);
+		}
+		if (minIdle < 0 || minIdle > maxTotal) {
+			throw new IllegalArgumentException("minIdle must be between 0 and maxTotal, was " + minIdle);
+		}
+		if (idleTimeout < 0) {
+			throw new IllegalArgumentException("idleTimeout must be >= 0, was " + idleTimeout);
+		}
+		_maxTotal = maxTotal;
+		_minIdle = minIdle;
+		_idleTimeoutMillis = unit.toMillis(idleTimeout);
+	}
+
+	/**
+	 * borrow an object, waiting (uninterruptibly) as long as the pool is
+	 * exhausted
+	 *
+	 * @return idle or newly created object
+	 */
+	@Override
+	public T get() {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return borrow(-1);
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * borrow an object, waiting at most <code>timeout</code> if the pool is
+	 * exhausted
+	 *
+	 * @return idle or newly created object or <code>null</code> if timed out
+	 */
+	public T get(long timeout, TimeUnit unit) throws InterruptedException {
+		return borrow(Math.max(0, unit.toNanos(timeout)));
+	}
+
+	/**
+	 * @param timeoutNanos
+	 *            negative to wait without timeout
+	 */
+	private T borrow(final long timeoutNanos) throws InterruptedException {
+		_lock.lockInterruptibly();
+		try {
+			long nanos = timeoutNanos;
+			long start = 0;
+			while (_idle.isEmpty() && _total >= _maxTotal) {
+				if (start == 0) {
+					start = System.nanoTime();
+				}
+				if (timeoutNanos < 0) {
+					_available.await();
+				} else if (nanos <= 0) {
+					waited(start);
+					return null;
+				} else {
+					nanos = _available.awaitNanos(nanos);
+				}
+			}
+			if (start != 0) {
+				waited(start);
+			}
+
+			_borrowedCount++;
+			_active++;
+			final Idle<T> idle = _idle.pollFirst();
+			if (idle != null) {
+				return idle._object;
+			}
+			// reserve slot and create outside of lock
+			_total++;
+		} finally {
+			_lock.unlock();
+		}
+
+		return createObject(true);
+	}
+
+	/**
+	 * must hold lock
+	 */
+	private void waited(long start) {
+		final long nanos = System.nanoTime() - start;
+		_waitCount++;
+		_waitNanos += nanos;
+		final IPercentileCounter waitTimes = _waitTimes;
+		if (waitTimes != null) {
+			waitTimes.recordNanos(nanos);
+		}
+	}
+
+	/**
+	 * create an object for a reserved slot
+	 *
+	 * @param borrowed
+	 *            whether the slot was reserved by a borrow
+	 */
+	private T createObject(final boolean borrowed) {
+		boolean created = false;
+		try {
+			final T o = create();
+			if (o == null) {
+				throw new NullPointerException("create() returned null");
+			}
+			created = true;
+			return o;
+		} finally {
+			_lock.lock();
+			try {
+				if (created) {
+					_createdCount++;
+				} else {
+					// release slot
+					_total--;
+					if (borrowed) {
+						_active--;
+					}
+					_available.signal();
+				}
+			} finally {
+				_lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * return a borrowed object. If {@link #reset(Object)} fails, the object is
+	 * destroyed instead. Objects returned while nothing is borrowed (e.g.
+	 * returned twice) or exceeding <code>maxTotal</code> are destroyed too.
+	 */
+	@Override
+	public void put(T o) {
+		if (o == null) {
+			return;
+		}
+		if (!reset(o)) {
+			invalidate(o);
+			return;
+		}
+
+		boolean destroy = true;
+		_lock.lock();
+		try {
+			if (_active <= 0) {
+				log.warn("object returned but none borrowed, destroying");
+			} else {
+				_active--;
+				if (_total > _maxTotal) {
+					_total--;
+				} else {
+					_idle.addFirst(new Idle<T>(o, _clock.currentTimeMillis()));
+					destroy = false;
+				}
+				_available.signal();
+			}
+		} finally {
+			_lock.unlock();
+		}
+
+		if (destroy) {
+			destroyObject(o);
+		}
+	}
+
+	/**
+	 * destroy a borrowed object that must not be reused, e.g. after an error
+	 */
+	public void invalidate(T o) {
+		if (o == null) {
+			return;
+		}
+		_lock.lock();
+		try {
+			if (_active <= 0) {
+				log.warn("object invalidated but none borrowed");
+			} else {
+				_active--;
+				_total--;
+				_available.signal();
+			}
+		} finally {
+			_lock.unlock();
+		}
+		destroyObject(o);
+	}
+
+	/**
+	 * add a created object for a slot reserved by {@link #evict()}
+	 */
+	private void addIdle(T o) {
+		_lock.lock();
+		try {
+			_idle.addFirst(new Idle<T>(o, _clock.currentTimeMillis()));
+			_available.signal();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	private void destroyObject(T o) {
+		try {
+			destroy(o);
+		} catch (final RuntimeException e) {
+			log.warn("failed to destroy pooled object", e);
+		}
+		_lock.lock();
+		try {
+			_destroyedCount++;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * destroy idle objects exceeding idle timeout (keeping at least
+	 * <code>minIdle</code>) and create objects to reach <code>minIdle</code>
+	 *
+	 * @return number of destroyed objects
+	 */
+	public int evict() {
+		final List<T> evicted = new ArrayList<T>();
+		int missing;
+
+		_lock.lock();
+		try {
+			if (_idleTimeoutMillis > 0) {
+				final long oldest = _clock.currentTimeMillis() - _idleTimeoutMillis;
+				// least recently returned last
+				final Iterator<Idle<T>> iter = _idle.descendingIterator();
+				while (_idle.size() > _minIdle && iter.hasNext()) {
+					final Idle<T> idle = iter.next();
+					if (idle._since > oldest) {
+						break;
+					}
+					iter.remove();
+					evicted.add(idle._object);
+					_total--;
+				}
+			}
+			missing = Math.min(_minIdle - _idle.size(), _maxTotal - _total);
+			if (missing > 0) {
+				_total += missing;
+			} else {
+				missing = 0;
+			}
+		} finally {
+			_lock.unlock();
+		}
+
+		for (final T o : evicted) {
+			destroyObject(o);
+		}
+
+		for (int i = 0; i < missing; i++) {
+			final T o;
+			try {
+				o = createObject(false);
+			} catch (final RuntimeException e) {
+				log.warn("failed to create idle object", e);
+				releaseSlots(missing - i - 1);
+				break;
+			}
+			addIdle(o);
+		}
+
+		return evicted.size();
+	}
+
+	private void releaseSlots(int slots) {
+		if (slots > 0) {
+			_lock.lock();
+			try {
+				_total -= slots;
+				_available.signalAll();
+			} finally {
+				_lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * run {@link #evict()} periodically from a daemon thread
+	 *
+	 * @throws IllegalStateException
+	 *             if already started
+	 */
+	public synchronized void startEviction(final long period, final TimeUnit unit) {
+		if (_evictor != null) {
+			throw new IllegalStateException("already started");
+		}
+
+		_evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, BoundedObjectPool.class.getSimpleName() + "-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		_evictor.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					evict();
+				} catch (final RuntimeException e) {
+					// don't cancel future evictions
+					log.error("failed to evict idle objects", e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	public synchronized void stopEviction() {
+		if (_evictor != null) {
+			_evictor.shutdown();
+			_evictor = null;
+		}
+	}
+
+	/**
+	 * stop eviction and destroy all idle objects. Borrowed objects are
+	 * destroyed once returned if {@link #reset(Object)} returns false.
+	 */
+	public void clear() {
+		stopEviction();
+
+		final List<T> idle = new ArrayList<T>();
+		_lock.lock();
+		try {
+			for (final Idle<T> i : _idle) {
+				idle.add(i._object);
+			}
+			_total -= _idle.size();
+			_idle.clear();
+			_available.signalAll();
+		} finally {
+			_lock.unlock();
+		}
+
+		for (final T o : idle) {
+			destroyObject(o);
+		}
+	}
+
+	/**
+	 * @return a newly created object
+	 */
+	protected abstract @Nonnull T create();
+
+	/**
+	 * reset an object, e.g. call {@link Collection#clear()}
+	 * 
+	 * @param object
+	 * @return <code>false</code> if object shouldn't be reused
+	 */
+	protected boolean reset(T object) {
+		return true;
+	}
+
+	/**
+	 * release resources of an object that is removed from the pool
+	 */
+	protected void destroy(T object) {
+	}
+
+	public int getMaxTotal() {
+		return _maxTotal;
+	}
+
+	public int getMinIdle() {
+		return _minIdle;
+	}
+
+	/**
+	 * @return number of borrowed and idle objects
+	 */
+	public int getTotal() {
+		_lock.lock();
+		try {
+			return _total;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	public int getIdleCount() {
+		_lock.lock();
+		try {
+			return _idle.size();
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of currently borrowed objects
+	 */
+	public int getActiveCount() {
+		_lock.lock();
+		try {
+			return _active;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of successful borrows
+	 */
+	public long getBorrowedCount() {
+		_lock.lock();
+		try {
+			return _borrowedCount;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	public long getCreatedCount() {
+		_lock.lock();
+		try {
+			return _createdCount;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	public long getDestroyedCount() {
+		_lock.lock();
+		try {
+			return _destroyedCount;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of borrows that had to wait (including timeouts)
+	 */
+	public long getWaitCount() {
+		_lock.lock();
+		try {
+			return _waitCount;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return total time spent waiting in nanoseconds
+	 */
+	public long getWaitNanos() {
+		_lock.lock();
+		try {
+			return _waitNanos;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @param waitTimes
+	 *            counter receiving wait times of borrows that had to wait or
+	 *            null
+	 */
+	public void setWaitTimes(IPercentileCounter waitTimes) {
+		_waitTimes = waitTimes;
+	}
+
+	public IPercentileCounter getWaitTimes() {
+		return _waitTimes;
+	}
+
+	/**
+	 * @param clock
+	 *            clock used for idle timeouts
+	 */
+	public void setClock(IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_clock = clock;
+	}
+
+	public IClock getClock() {
+		return _clock;
+	}
+
+	private static final class Idle<T> {
+		private final T _object;
+		private final long _since;
+
+		private Idle(T object, long since) {
+			_object = object;
+			_since = since;
+		}
+	}
+}
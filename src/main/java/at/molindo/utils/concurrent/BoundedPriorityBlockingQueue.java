@@ -74,6 +74,56 @@ public class BoundedPriorityBlockingQueue<E> extends AbstractQueue<E> implements
 		}
 	}
 
+	/**
+	 * Inserts as many of the specified elements as capacity allows, using a
+	 * single lock acquisition.
+	 * 
+	 * @param c
+	 *            the elements to add
+	 * @return number of elements added, i.e. the first elements of
+	 *         <code>c</code> in iteration order
+	 * @throws NullPointerException
+	 *             if the collection or any of its elements is null. Elements
+	 *             preceding a failing element remain in the queue
+	 * @throws IllegalArgumentException
+	 *             if the collection is this queue
+	 */
+	public int offerAll(Collection<? extends E> c) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		_lock.lock();
+		int n = 0;
+		try {
+			for (E e : c) {
+				if (_q.size() == _capacity) {
+					break;
+				}
+				_q.offer(e);
+				++n;
+			}
+			return n;
+		} finally {
+			// wake consumers for inserted elements even if offer failed
+			signal(_notEmpty, n);
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * signal <code>n</code> waiting threads, must hold lock
+	 */
+	private static void signal(Condition condition, int n) {
+		if (n == 1) {
+			condition.signal();
+		} else if (n > 1) {
+			condition.signalAll();
+		}
+	}
+
 	@Override
 	public void put(E e) throws InterruptedException {
 		offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
@@ -166,6 +216,53 @@ public class BoundedPriorityBlockingQueue<E> extends AbstractQueue<E> implements
 		}
 	}
 
+	/**
+	 * Removes up to <code>maxElements</code> elements in priority order,
+	 * waiting up to <code>timeout</code> for at least one element to become
+	 * available. All elements are removed using a single lock acquisition.
+	 * 
+	 * @return number of elements added to <code>c</code>, 0 if timed out
+	 * @throws NullPointerException
+	 *             if the collection is null
+	 * @throws IllegalArgumentException
+	 *             if the collection is this queue
+	 */
+	public int takeBatch(Collection<? super E> c, int maxElements, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		if (maxElements <= 0) {
+			return 0;
+		}
+		long nanos = unit.toNanos(timeout);
+		_lock.lockInterruptibly();
+		try {
+			while (_q.size() == 0) {
+				if (nanos <= 0) {
+					return 0;
+				}
+				try {
+					nanos = _notEmpty.awaitNanos(nanos);
+				} catch (InterruptedException ie) {
+					_notEmpty.signal(); // propagate to non-interrupted thread
+					throw ie;
+				}
+			}
+			final int n = drain(c, maxElements);
+			if (_q.size() > 0) {
+				// more elements for other waiting consumers
+				_notEmpty.signal();
+			}
+			return n;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
 	@Override
 	public E peek() {
 		_lock.lock();
@@ -320,17 +417,27 @@ public class BoundedPriorityBlockingQueue<E> extends AbstractQueue<E> implements
 		}
 		_lock.lock();
 		try {
-			int n = 0;
-			E e;
+			return drain(c, maxElements);
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * must hold lock, signals producers once
+	 */
+	private int drain(Collection<? super E> c, int maxElements) {
+		int n = 0;
+		E e;
+		try {
 			while (n < maxElements && (e = _q.poll()) != null) {
 				c.add(e);
 				++n;
-				_notFull.signal();
 			}
-			return n;
 		} finally {
-			_lock.unlock();
+			signal(_notFull, n);
 		}
+		return n;
 	}
 
 	/**
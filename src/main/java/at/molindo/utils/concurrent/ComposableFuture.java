@@ -0,0 +1,365 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.molindo.utils.data.Function2;
+
+/**
+ * a {@link Future} that is completed explicitly and allows non-blocking
+ * composition (similar to Java 8's CompletableFuture, which isn't available
+ * at this library's language level). Dependent actions added by
+ * {@link #addListener(Runnable, Executor)}, {@link #thenApply(Function2)} or
+ * {@link #thenCompose(Function2)} run once this future completes, either in
+ * the completing thread or - if already complete - in the calling thread.
+ * Exceptions thrown by listeners (or executors rejecting them) are logged and
+ * don't affect other listeners.
+ *
+ * @see FutureUtils#allOf(java.util.Collection)
+ */
+public class ComposableFuture<T> implements Future<T> {
+
+	private static final Logger log = LoggerFactory.getLogger(ComposableFuture.class);
+
+	private final CountDownLatch _done = new CountDownLatch(1);
+
+	/**
+	 * guarded by this
+	 */
+	private boolean _completed;
+	private T _value;
+	private Throwable _failure;
+
+	/**
+	 * guarded by this, null once completed
+	 */
+	private List<Runnable> _listeners = new ArrayList<Runnable>(2);
+
+	/**
+	 * @return a future completed by running <code>callable</code> using
+	 *         <code>executor</code>
+	 */
+	public static <T> ComposableFuture<T> supply(final Callable<? extends T> callable, Executor executor) {
+		final ComposableFuture<T> future = new ComposableFuture<T>();
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					if (future.isDone()) {
+						// cancelled
+						return;
+					}
+					try {
+						future.complete(callable.call());
+					} catch (final Throwable t) {
+						future.fail(t);
+					}
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			future.fail(e);
+		}
+		return future;
+	}
+
+	public static <T> ComposableFuture<T> completed(@Nullable T value) {
+		final ComposableFuture<T> future = new ComposableFuture<T>();
+		future.complete(value);
+		return future;
+	}
+
+	public static <T> ComposableFuture<T> failed(Throwable t) {
+		final ComposableFuture<T> future = new ComposableFuture<T>();
+		future.fail(t);
+		return future;
+	}
+
+	/**
+	 * @return true if this call completed the future
+	 */
+	public boolean complete(@Nullable T value) {
+		return finish(value, null);
+	}
+
+	/**
+	 * @return true if this call completed the future
+	 */
+	public boolean fail(Throwable t) {
+		if (t == null) {
+			throw new NullPointerException("t");
+		}
+		return finish(null, t);
+	}
+
+	/**
+	 * completes this future with a {@link CancellationException}. Running
+	 * computations aren't interrupted.
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return fail(new CancellationException());
+	}
+
+	private boolean finish(T value, Throwable failure) {
+		final List<Runnable> listeners;
+		synchronized (this) {
+			if (_completed) {
+				return false;
+			}
+			_completed = true;
+			_value = value;
+			_failure = failure;
+			listeners = _listeners;
+			_listeners = null;
+		}
+		_done.countDown();
+		for (final Runnable listener : listeners) {
+			runListener(listener);
+		}
+		return true;
+	}
+
+	/**
+	 * run a listener, logging instead of propagating exceptions: a failing
+	 * listener (or an executor rejecting it) must neither prevent other
+	 * listeners from running nor fail the completing caller
+	 */
+	private static void runListener(final Runnable listener) {
+		try {
+			listener.run();
+		} catch (final RuntimeException e) {
+			log.error("unhandled exception from listener", e);
+		}
+	}
+
+	/**
+	 * run <code>listener</code> once this future completes
+	 *
+	 * @param executor
+	 *            executor running the listener or null to run it in the
+	 *            completing (or calling) thread
+	 */
+	public ComposableFuture<T> addListener(final Runnable listener, @Nullable final Executor executor) {
+		final Runnable r = executor == null ? listener : new Runnable() {
+
+			@Override
+			public void run() {
+				executor.execute(listener);
+			}
+		};
+		synchronized (this) {
+			if (!_completed) {
+				_listeners.add(r);
+				return this;
+			}
+		}
+		runListener(r);
+		return this;
+	}
+
+	/**
+	 * @return a future completed with the result of <code>f</code> applied to
+	 *         the value of this future, or failed with the exception of this
+	 *         future or <code>f</code>
+	 */
+	public <R> ComposableFuture<R> thenApply(final Function2<? super T, ? extends R, ?> f) {
+		final ComposableFuture<R> future = new ComposableFuture<R>();
+		addListener(new Runnable() {
+
+			@Override
+			public void run() {
+				final Throwable failure = getFailure();
+				if (failure != null) {
+					future.fail(failure);
+					return;
+				}
+				try {
+					future.complete(f.apply(_value));
+				} catch (final Throwable t) {
+					future.fail(t);
+				}
+			}
+		}, null);
+		return future;
+	}
+
+	/**
+	 * @return a future completed with the future returned by <code>f</code>
+	 *         applied to the value of this future, i.e. chaining asynchronous
+	 *         operations without blocking
+	 */
+	public <R> ComposableFuture<R> thenCompose(final Function2<? super T, ? extends ComposableFuture<R>, ?> f) {
+		final ComposableFuture<R> future = new ComposableFuture<R>();
+		addListener(new Runnable() {
+
+			@Override
+			public void run() {
+				final Throwable failure = getFailure();
+				if (failure != null) {
+					future.fail(failure);
+					return;
+				}
+				final ComposableFuture<R> next;
+				try {
+					next = f.apply(_value);
+				} catch (final Throwable t) {
+					future.fail(t);
+					return;
+				}
+				if (next == null) {
+					future.fail(new NullPointerException("function returned null"));
+				} else {
+					next.propagateTo(future);
+				}
+			}
+		}, null);
+		return future;
+	}
+
+	/**
+	 * @return a future completed with the value of <code>f</code> applied to
+	 *         the exception of this future, or the value of this future if it
+	 *         didn't fail
+	 */
+	public ComposableFuture<T> recover(final Function2<? super Throwable, ? extends T, ?> f) {
+		final ComposableFuture<T> future = new ComposableFuture<T>();
+		addListener(new Runnable() {
+
+			@Override
+			public void run() {
+				final Throwable failure = getFailure();
+				if (failure == null) {
+					future.complete(_value);
+					return;
+				}
+				try {
+					future.complete(f.apply(failure));
+				} catch (final Throwable t) {
+					future.fail(t);
+				}
+			}
+		}, null);
+		return future;
+	}
+
+	/**
+	 * @return a future completed like this future or failed with a
+	 *         {@link TimeoutException} if this future doesn't complete within
+	 *         <code>timeout</code>
+	 */
+	public ComposableFuture<T> withTimeout(long timeout, TimeUnit unit, ScheduledExecutorService scheduler) {
+		final ComposableFuture<T> future = new ComposableFuture<T>();
+		final ScheduledFuture<?> timer = scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				future.fail(new TimeoutException());
+			}
+		}, timeout, unit);
+		future.addListener(new Runnable() {
+
+			@Override
+			public void run() {
+				timer.cancel(false);
+			}
+		}, null);
+		propagateTo(future);
+		return future;
+	}
+
+	/**
+	 * complete <code>other</code> like this future
+	 */
+	void propagateTo(final ComposableFuture<T> other) {
+		addListener(new Runnable() {
+
+			@Override
+			public void run() {
+				final Throwable failure = getFailure();
+				if (failure != null) {
+					other.fail(failure);
+				} else {
+					other.complete(_value);
+				}
+			}
+		}, null);
+	}
+
+	/**
+	 * @return exception this future failed with or null if not failed (yet)
+	 */
+	public synchronized Throwable getFailure() {
+		return _failure;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return _failure instanceof CancellationException;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return _completed;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		_done.await();
+		return result();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!_done.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		return result();
+	}
+
+	private synchronized T result() throws ExecutionException {
+		if (_failure instanceof CancellationException) {
+			throw (CancellationException) _failure;
+		} else if (_failure != null) {
+			throw new ExecutionException(_failure);
+		}
+		return _value;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return ComposableFuture.class.getSimpleName() + "["
+				+ (!_completed ? "pending" : _failure != null ? "failed: " + _failure : "completed: " + _value) + "]";
+	}
+}
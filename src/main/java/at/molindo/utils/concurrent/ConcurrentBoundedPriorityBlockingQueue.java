@@ -0,0 +1,361 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * lock-free alternative to {@link BoundedPriorityBlockingQueue} for many
+ * concurrent producers and consumers. Elements are kept in a
+ * {@link ConcurrentSkipListMap}, capacity and available elements are tracked
+ * by two {@link Semaphore}s, i.e. threads only block if the queue is full or
+ * empty. Elements of equal priority are returned in insertion order.
+ * 
+ * Other than {@link BoundedPriorityBlockingQueue}, {@link #size()} is
+ * constant-time and {@link #iterator()} returns elements in priority order.
+ * Blocked threads aren't served fairly.
+ */
+public class ConcurrentBoundedPriorityBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private final int _capacity;
+	private final Comparator<? super E> _comparator;
+
+	/**
+	 * elements mapped to nothing, ordered by priority and insertion sequence
+	 */
+	private final ConcurrentSkipListMap<Entry<E>, Boolean> _map;
+	private final AtomicLong _seq = new AtomicLong();
+
+	/**
+	 * free capacity
+	 */
+	private final Semaphore _notFull;
+
+	/**
+	 * available elements, never exceeds number of elements in {@link #_map}
+	 */
+	private final Semaphore _notEmpty = new Semaphore(0);
+
+	public ConcurrentBoundedPriorityBlockingQueue(int capacity) {
+		this(capacity, null);
+	}
+
+	public ConcurrentBoundedPriorityBlockingQueue(int capacity, Comparator<? super E> comparator) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be >= 1, was " + capacity);
+		}
+		_capacity = capacity;
+		_comparator = comparator;
+		_notFull = new Semaphore(capacity);
+		_map = new ConcurrentSkipListMap<Entry<E>, Boolean>(new Comparator<Entry<E>>() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public int compare(Entry<E> o1, Entry<E> o2) {
+				final int cmp = _comparator == null ? ((Comparable<? super E>) o1._element).compareTo(o2._element)
+						: _comparator.compare(o1._element, o2._element);
+				if (cmp != 0) {
+					return cmp;
+				}
+				return o1._seq < o2._seq ? -1 : o1._seq == o2._seq ? 0 : 1;
+			}
+		});
+	}
+
+	/**
+	 * Inserts the specified element into this priority queue.
+	 * 
+	 * @param e
+	 *            the element to add
+	 * @return <tt>true</tt> if the element was added to this queue, else
+	 *         <tt>false</tt>
+	 * @throws ClassCastException
+	 *             if the specified element cannot be compared with elements
+	 *             currently in the priority queue according to the priority
+	 *             queue's ordering
+	 * @throws NullPointerException
+	 *             if the specified element is null
+	 */
+	@Override
+	public boolean offer(E e) {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (!_notFull.tryAcquire()) {
+			return false;
+		}
+		insert(e);
+		return true;
+	}
+
+	@Override
+	public void put(E e) throws InterruptedException {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		_notFull.acquire();
+		insert(e);
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+		if (e == null) {
+			throw new NullPointerException();
+		}
+		if (!_notFull.tryAcquire(timeout, unit)) {
+			return false;
+		}
+		insert(e);
+		return true;
+	}
+
+	/**
+	 * insert with acquired capacity
+	 */
+	private void insert(E e) {
+		try {
+			_map.put(new Entry<E>(e, _seq.getAndIncrement()), Boolean.TRUE);
+		} catch (RuntimeException ex) {
+			// e.g. ClassCastException
+			_notFull.release();
+			throw ex;
+		}
+		_notEmpty.release();
+	}
+
+	@Override
+	public E poll() {
+		return _notEmpty.tryAcquire() ? removeFirst() : null;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		_notEmpty.acquire();
+		return removeFirst();
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return _notEmpty.tryAcquire(timeout, unit) ? removeFirst() : null;
+	}
+
+	/**
+	 * remove with acquired element
+	 */
+	private E removeFirst() {
+		final Map.Entry<Entry<E>, Boolean> first = _map.pollFirstEntry();
+		assert first != null;
+		_notFull.release();
+		return first.getKey()._element;
+	}
+
+	/**
+	 * remove an entry if available
+	 */
+	private boolean remove(Entry<E> entry) {
+		if (!_notEmpty.tryAcquire()) {
+			return false;
+		}
+		if (_map.remove(entry) != null) {
+			_notFull.release();
+			return true;
+		} else {
+			// removed concurrently, give back
+			_notEmpty.release();
+			return false;
+		}
+	}
+
+	@Override
+	public E peek() {
+		final Map.Entry<Entry<E>, Boolean> first = _map.firstEntry();
+		return first == null ? null : first.getKey()._element;
+	}
+
+	/**
+	 * Returns the comparator used to order the elements in this queue, or
+	 * <tt>null</tt> if this queue uses the {@linkplain Comparable natural
+	 * ordering} of its elements.
+	 * 
+	 * @return the comparator used to order the elements in this queue, or
+	 *         <tt>null</tt> if this queue uses the natural ordering of its
+	 *         elements
+	 */
+	public Comparator<? super E> comparator() {
+		return _comparator;
+	}
+
+	@Override
+	public int size() {
+		return _notEmpty.availablePermits();
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return _notFull.availablePermits();
+	}
+
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	/**
+	 * Removes a single instance of the specified element from this queue, if it
+	 * is present.
+	 * 
+	 * @param o
+	 *            element to be removed from this queue, if present
+	 * @return <tt>true</tt> if this queue changed as a result of the call
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) {
+			return false;
+		}
+		for (final Entry<E> entry : _map.keySet()) {
+			if (o.equals(entry._element) && remove(entry)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (o == null) {
+			return false;
+		}
+		for (final Entry<E> entry : _map.keySet()) {
+			if (o.equals(entry._element)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             {@inheritDoc}
+	 * @throws ClassCastException
+	 *             {@inheritDoc}
+	 * @throws NullPointerException
+	 *             {@inheritDoc}
+	 * @throws IllegalArgumentException
+	 *             {@inheritDoc}
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             {@inheritDoc}
+	 * @throws ClassCastException
+	 *             {@inheritDoc}
+	 * @throws NullPointerException
+	 *             {@inheritDoc}
+	 * @throws IllegalArgumentException
+	 *             {@inheritDoc}
+	 */
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) {
+			throw new NullPointerException();
+		}
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		int n = 0;
+		E e;
+		while (n < maxElements && (e = poll()) != null) {
+			c.add(e);
+			++n;
+		}
+		return n;
+	}
+
+	/**
+	 * removes all elements available when called
+	 */
+	@Override
+	public void clear() {
+		while (poll() != null) {
+		}
+	}
+
+	/**
+	 * Returns an iterator over the elements in this queue in priority order.
+	 * The returned <tt>Iterator</tt> is a "weakly consistent" iterator that
+	 * will never throw {@link ConcurrentModificationException}, and may (but
+	 * is not guaranteed to) reflect any modifications subsequent to
+	 * construction.
+	 * 
+	 * @return an iterator over the elements in this queue
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		final Iterator<Entry<E>> iter = _map.keySet().iterator();
+		return new Iterator<E>() {
+
+			private Entry<E> _last;
+
+			@Override
+			public boolean hasNext() {
+				return iter.hasNext();
+			}
+
+			@Override
+			public E next() {
+				if (!iter.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				_last = iter.next();
+				return _last._element;
+			}
+
+			@Override
+			public void remove() {
+				if (_last == null) {
+					throw new IllegalStateException();
+				}
+				ConcurrentBoundedPriorityBlockingQueue.this.remove(_last);
+				_last = null;
+			}
+		};
+	}
+
+	private static final class Entry<E> {
+		private final E _element;
+		private final long _seq;
+
+		private Entry(E element, long seq) {
+			_element = element;
+			_seq = seq;
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+/**
+ * lock-free alternative to {@link ObjectPool} for pools shared by many
+ * threads: each thread keeps a small LIFO cache of objects in front of a shared
+ * lock-free (Treiber) stack, hence borrowing and returning an object from the
+ * same thread usually neither contends nor allocates. Both the thread caches
+ * and the shared stack prefer "hot" objects.
+ *
+ * Up to <code>threadCacheSize</code> objects per thread are held in addition
+ * to <code>capacity</code> objects on the shared stack. Objects cached by a
+ * terminated thread are garbage collected. Thread caches don't reference the
+ * pool, i.e. a discarded pool is garbage collected along with its objects.
+ */
+public abstract class ConcurrentObjectPool<T> implements IObjectPool<T> {
+
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 4;
+
+	private final int _capacity;
+	private final int _threadCacheSize;
+
+	private final AtomicReference<Node<T>> _head = new AtomicReference<Node<T>>();
+
+	private final ThreadLocal<Cache<T>> _cache = new ThreadLocal<Cache<T>>() {
+
+		@Override
+		protected Cache<T> initialValue() {
+			return new Cache<T>(_threadCacheSize);
+		}
+	};
+
+	/**
+	 * create a ConcurrentObjectPool that uses the default constructor of the
+	 * passed class
+	 */
+	public static <T> ConcurrentObjectPool<T> create(Class<T> cls, int capacity) {
+		final Constructor<T> constructor = ObjectPool.constructor(cls);
+		return new ConcurrentObjectPool<T>(capacity) {
+
+			@Override
+			protected T create() {
+				return ObjectPool.newInstance(constructor);
+			}
+
+		};
+	}
+
+	public ConcurrentObjectPool(int capacity) {
+		this(capacity, DEFAULT_THREAD_CACHE_SIZE);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of objects on the shared stack
+	 * @param threadCacheSize
+	 *            maximum number of objects cached per thread, 0 to disable
+	 */
+	public ConcurrentObjectPool(int capacity, int threadCacheSize) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must be >= 0, was " + capacity);
+		}
+		if (threadCacheSize < 0) {
+			throw new IllegalArgumentException("threadCacheSize must be >= 0, was " + threadCacheSize);
+		}
+		_capacity = capacity;
+		_threadCacheSize = threadCacheSize;
+	}
+
+	/**
+	 * @return object from thread cache, shared stack or newly created one
+	 */
+	@Override
+	public T get() {
+		T o = _threadCacheSize > 0 ? _cache.get().poll() : null;
+		if (o == null) {
+			o = pop();
+		}
+		return o == null ? create() : o;
+	}
+
+	/**
+	 * @param put
+	 *            object back into thread cache or on shared stack
+	 */
+	@Override
+	public void put(T o) {
+		if (o != null && reset(o)) {
+			if (_threadCacheSize == 0 || !_cache.get().offer(o)) {
+				push(o);
+			}
+		}
+	}
+
+	private T pop() {
+		while (true) {
+			final Node<T> head = _head.get();
+			if (head == null) {
+				return null;
+			}
+			if (_head.compareAndSet(head, head._next)) {
+				return head._value;
+			}
+		}
+	}
+
+	private void push(T o) {
+		Node<T> node = null;
+		while (true) {
+			final Node<T> head = _head.get();
+			final int size = head == null ? 0 : head._size;
+			if (size >= _capacity) {
+				// full, drop object
+				return;
+			}
+			if (node == null) {
+				node = new Node<T>(o);
+			}
+			node._next = head;
+			node._size = size + 1;
+			if (_head.compareAndSet(head, node)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return number of objects on the shared stack (excluding thread caches)
+	 */
+	public int size() {
+		final Node<T> head = _head.get();
+		return head == null ? 0 : head._size;
+	}
+
+	/**
+	 * @return a newly created object
+	 */
+	protected abstract @Nonnull T create();
+
+	/**
+	 * reset an object, e.g. call {@link Collection#clear()}
+	 * 
+	 * @param object
+	 * @return <code>false</code> if object shouldn't be reused
+	 */
+	protected boolean reset(T object) {
+		return true;
+	}
+
+	public T refresh(T o) {
+		if (o != null && reset(o)) {
+			return o;
+		} else {
+			throw new IllegalStateException("failed to refresh object");
+		}
+	}
+
+	private static final class Node<T> {
+		private final T _value;
+		private Node<T> _next;
+		/**
+		 * size of stack including this node, immutable once published
+		 */
+		private int _size;
+
+		private Node(T value) {
+			_value = value;
+		}
+	}
+
+	/**
+	 * LIFO cache, only accessed by its owner thread. Static, as a reference to
+	 * the pool would keep the pool's {@link ThreadLocal} key reachable from the
+	 * thread, i.e. the pool would never be garbage collected.
+	 */
+	private static final class Cache<T> {
+		private final Object[] _objects;
+		private int _size;
+
+		private Cache(int size) {
+			_objects = new Object[size];
+		}
+
+		@SuppressWarnings("unchecked")
+		private T poll() {
+			if (_size == 0) {
+				return null;
+			}
+			final T o = (T) _objects[--_size];
+			_objects[_size] = null;
+			return o;
+		}
+
+		private boolean offer(T o) {
+			if (_size == _objects.length) {
+				return false;
+			}
+			_objects[_size++] = o;
+			return true;
+		}
+	}
+}
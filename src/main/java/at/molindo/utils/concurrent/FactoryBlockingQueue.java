@@ -28,7 +28,8 @@ import java.util.concurrent.TimeUnit;
  * @param <E>
  * 
  * @deprecated Synchronization of this class is broken. Using
- *             synchronized(_queue) doesn't work (see FindBugs report)
+ *             synchronized(_queue) doesn't work (see FindBugs report),
+ *             use {@link PrefetchingFactoryQueue} instead
  */
 @Deprecated
 public abstract class FactoryBlockingQueue<E> implements BlockingQueue<E> {
@@ -18,9 +18,22 @@ package at.molindo.utils.concurrent;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
+/**
+ * runs runnables created by an {@link IRunnableFactory} until inactive or
+ * after too many consecutive errors. If the factory has no work, it may
+ * return <code>null</code> and the thread waits according to its
+ * {@link IIdleStrategy} (defaults to {@link IdleStrategies#backoff()}). After
+ * errors, the thread waits according to its error back-off (defaults to
+ * {@link IdleStrategies#busySpin()}, i.e. retry immediately).
+ *
+ * Interrupting the thread makes it inactive after its current runnable or
+ * idle wait (keeping the interrupt status), as idle strategies return
+ * immediately once interrupted.
+ */
 public class FactoryThread extends Thread {
 
 	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FactoryThread.class);
@@ -32,6 +45,14 @@ public class FactoryThread extends Thread {
 	private int _errors;
 	private int _maxErrors = Integer.MAX_VALUE;
 
+	private volatile IIdleStrategy _idleStrategy = IdleStrategies.backoff();
+	private volatile IIdleStrategy _errorBackoff = IdleStrategies.busySpin();
+
+	// only written by this thread
+	private volatile long _runCount;
+	private volatile long _errorCount;
+	private volatile long _idleCount;
+
 	public FactoryThread(IRunnableFactory factory) {
 		if (factory == null) {
 			throw new NullPointerException("factory");
@@ -57,17 +78,33 @@ public class FactoryThread extends Thread {
 
 	@Override
 	public void run() {
+		int idle = 0;
 		while (_active) {
+			if (isInterrupted()) {
+				setInactive();
+				break;
+			}
 			try {
-				_factory.newRunnable().run();
+				final Runnable r = _factory.newRunnable();
+				if (r == null) {
+					_idleCount++;
+					_idleStrategy.idle(++idle);
+					continue;
+				}
+				idle = 0;
+				r.run();
+				_runCount++;
 				_errors = 0;
 			} catch (Throwable t) {
+				idle = 0;
+				_errorCount++;
 				_errors++;
 				if (_errors >= _maxErrors) {
 					handleException(t, _errors, true);
 					setInactive();
 				} else {
 					handleException(t, _errors, false);
+					_errorBackoff.idle(_errors);
 				}
 			}
 		}
@@ -93,8 +130,57 @@ public class FactoryThread extends Thread {
 		return this;
 	}
 
+	/**
+	 * @param idleStrategy
+	 *            how to wait if the factory returns <code>null</code>
+	 */
+	public FactoryThread setIdleStrategy(@Nonnull IIdleStrategy idleStrategy) {
+		if (idleStrategy == null) {
+			throw new NullPointerException("idleStrategy");
+		}
+		_idleStrategy = idleStrategy;
+		return this;
+	}
+
+	/**
+	 * @param errorBackoff
+	 *            how to wait after an error, called with the number of
+	 *            consecutive errors
+	 */
+	public FactoryThread setErrorBackoff(@Nonnull IIdleStrategy errorBackoff) {
+		if (errorBackoff == null) {
+			throw new NullPointerException("errorBackoff");
+		}
+		_errorBackoff = errorBackoff;
+		return this;
+	}
+
+	/**
+	 * @return number of successfully completed runnables
+	 */
+	public long getRunCount() {
+		return _runCount;
+	}
+
+	/**
+	 * @return number of errors
+	 */
+	public long getErrorCount() {
+		return _errorCount;
+	}
+
+	/**
+	 * @return number of times the factory had no work
+	 */
+	public long getIdleCount() {
+		return _idleCount;
+	}
+
 	public interface IRunnableFactory {
-		@Nonnull
+		/**
+		 * @return next runnable or <code>null</code> if there is no work
+		 */
+		@CheckForNull
 		Runnable newRunnable();
 	}
 
@@ -123,6 +209,61 @@ public class FactoryThread extends Thread {
 			return this;
 		}
 
+		public FactoryThreadGroup setIdleStrategy(@Nonnull IIdleStrategy idleStrategy) {
+			for (FactoryThread t : _threads) {
+				t.setIdleStrategy(idleStrategy);
+			}
+			return this;
+		}
+
+		public FactoryThreadGroup setErrorBackoff(@Nonnull IIdleStrategy errorBackoff) {
+			for (FactoryThread t : _threads) {
+				t.setErrorBackoff(errorBackoff);
+			}
+			return this;
+		}
+
+		/**
+		 * @return number of successfully completed runnables of all threads
+		 */
+		public long getRunCount() {
+			long count = 0;
+			for (FactoryThread t : _threads) {
+				count += t.getRunCount();
+			}
+			return count;
+		}
+
+		/**
+		 * @return number of errors of all threads
+		 */
+		public long getErrorCount() {
+			long count = 0;
+			for (FactoryThread t : _threads) {
+				count += t.getErrorCount();
+			}
+			return count;
+		}
+
+		/**
+		 * @return number of times the factory had no work for any thread
+		 */
+		public long getIdleCount() {
+			long count = 0;
+			for (FactoryThread t : _threads) {
+				count += t.getIdleCount();
+			}
+			return count;
+		}
+
+		/**
+		 * @return a newly created list of all threads, e.g. to get per-thread
+		 *         counters
+		 */
+		public List<FactoryThread> getThreads() {
+			return new ArrayList<FactoryThread>(_threads);
+		}
+
 		public FactoryThreadGroup start() {
 			for (FactoryThread t : _threads) {
 				t.start();
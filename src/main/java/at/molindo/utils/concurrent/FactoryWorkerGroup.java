@@ -0,0 +1,408 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import at.molindo.utils.concurrent.FactoryThread.FactoryThreadGroup;
+import at.molindo.utils.concurrent.FactoryThread.IRunnableFactory;
+
+/**
+ * runs the loop of {@link FactoryThread} (i.e. <code>newRunnable().run()</code>
+ * until inactive or too many consecutive errors, using the same idle and
+ * error back-off strategies) as tasks of an
+ * {@link Executor} instead of dedicated platform threads. The number of
+ * workers can be changed at runtime using {@link #setWorkers(int)}: new
+ * workers are submitted immediately while surplus workers stop after their
+ * current runnable. A worker whose thread is interrupted stops like a worker
+ * terminated by errors, i.e. isn't replaced, keeping the interrupt status for
+ * the executor.
+ *
+ * {@link #newVirtualThreadGroup(String, int, IRunnableFactory)} runs each
+ * worker on its own virtual thread if supported by the runtime (Java 21+),
+ * allowing thousands of workers blocking on I/O without as many OS threads.
+ *
+ * @see FactoryThreadGroup
+ */
+public class FactoryWorkerGroup {
+
+	private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FactoryWorkerGroup.class);
+
+	private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+	private final String _name;
+	private final IRunnableFactory _factory;
+	private final Executor _executor;
+
+	private final ReentrantLock _lock = new ReentrantLock();
+	private final Condition _terminated = _lock.newCondition();
+
+	/**
+	 * running workers, guarded by {@link #_lock}
+	 */
+	private final List<Worker> _workers = new ArrayList<Worker>();
+	private int _targetWorkers;
+	/**
+	 * submitted workers including those stopping
+	 */
+	private int _running;
+	private boolean _started;
+	private boolean _active = true;
+
+	private final AtomicInteger _seq = new AtomicInteger();
+	private volatile int _maxErrors = Integer.MAX_VALUE;
+	private volatile IIdleStrategy _idleStrategy = IdleStrategies.backoff();
+	private volatile IIdleStrategy _errorBackoff = IdleStrategies.busySpin();
+
+	/**
+	 * @return true if the runtime supports virtual threads
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return VIRTUAL_THREAD_FACTORY != null;
+	}
+
+	/**
+	 * @return a group running each worker on a new virtual thread if supported
+	 *         or on a new daemon platform thread otherwise
+	 */
+	public static FactoryWorkerGroup newVirtualThreadGroup(String name, @Nonnegative int workers,
+			@Nonnull IRunnableFactory factory) {
+		ThreadFactory threadFactory = VIRTUAL_THREAD_FACTORY;
+		if (threadFactory == null) {
+			threadFactory = platformThreadFactory(name);
+		}
+		return new FactoryWorkerGroup(name, workers, factory, threadPerTaskExecutor(threadFactory));
+	}
+
+	/**
+	 * @param name
+	 *            name used for logging
+	 * @param workers
+	 *            initial number of workers
+	 * @param executor
+	 *            executor running workers, must be able to run all workers
+	 *            concurrently
+	 */
+	public FactoryWorkerGroup(String name, @Nonnegative int workers, @Nonnull IRunnableFactory factory,
+			@Nonnull Executor executor) {
+		if (factory == null) {
+			throw new NullPointerException("factory");
+		}
+		if (executor == null) {
+			throw new NullPointerException("executor");
+		}
+		if (workers < 0) {
+			throw new IllegalArgumentException("workers must be >= 0, was " + workers);
+		}
+		_name = name;
+		_factory = factory;
+		_executor = executor;
+		_targetWorkers = workers;
+	}
+
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			// Thread.ofVirtual().name("virtual-", 0).factory()
+			final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			final Object named = builderClass.getMethod("name", String.class, long.class).invoke(builder,
+					FactoryWorkerGroup.class.getSimpleName() + "-virtual-", 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(named);
+		} catch (final Exception e) {
+			// not supported (or preview not enabled)
+			return null;
+		}
+	}
+
+	private static ThreadFactory platformThreadFactory(final String name) {
+		final AtomicInteger seq = new AtomicInteger();
+		return new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread t = new Thread(r, name + "#" + seq.getAndIncrement());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	private static Executor threadPerTaskExecutor(final ThreadFactory factory) {
+		return new Executor() {
+
+			@Override
+			public void execute(Runnable command) {
+				factory.newThread(command).start();
+			}
+		};
+	}
+
+	public FactoryWorkerGroup setMaxErrors(int maxErrors) {
+		_maxErrors = maxErrors;
+		return this;
+	}
+
+	/**
+	 * @see FactoryThread#setIdleStrategy(IIdleStrategy)
+	 */
+	public FactoryWorkerGroup setIdleStrategy(@Nonnull IIdleStrategy idleStrategy) {
+		if (idleStrategy == null) {
+			throw new NullPointerException("idleStrategy");
+		}
+		_idleStrategy = idleStrategy;
+		return this;
+	}
+
+	/**
+	 * @see FactoryThread#setErrorBackoff(IIdleStrategy)
+	 */
+	public FactoryWorkerGroup setErrorBackoff(@Nonnull IIdleStrategy errorBackoff) {
+		if (errorBackoff == null) {
+			throw new NullPointerException("errorBackoff");
+		}
+		_errorBackoff = errorBackoff;
+		return this;
+	}
+
+	/**
+	 * submit initial workers
+	 *
+	 * @throws IllegalStateException
+	 *             if already started or inactive
+	 */
+	public FactoryWorkerGroup start() {
+		_lock.lock();
+		try {
+			if (_started) {
+				throw new IllegalStateException("already started");
+			}
+			if (!_active) {
+				throw new IllegalStateException("inactive");
+			}
+			_started = true;
+			adjust();
+		} finally {
+			_lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * change the number of workers. If started, new workers are submitted
+	 * immediately while surplus workers stop after their current runnable.
+	 */
+	public FactoryWorkerGroup setWorkers(@Nonnegative int workers) {
+		if (workers < 0) {
+			throw new IllegalArgumentException("workers must be >= 0, was " + workers);
+		}
+		_lock.lock();
+		try {
+			_targetWorkers = workers;
+			if (_started && _active) {
+				adjust();
+			}
+		} finally {
+			_lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * must hold lock
+	 */
+	private void adjust() {
+		while (_workers.size() > _targetWorkers) {
+			_workers.remove(_workers.size() - 1).setInactive();
+		}
+		while (_workers.size() < _targetWorkers) {
+			final Worker w = new Worker(_seq.getAndIncrement());
+			_workers.add(w);
+			_running++;
+			try {
+				_executor.execute(w);
+			} catch (final RuntimeException e) {
+				_workers.remove(w);
+				_running--;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * stop all workers after their current runnable
+	 */
+	public FactoryWorkerGroup setInactive() {
+		_lock.lock();
+		try {
+			_active = false;
+			for (final Worker w : _workers) {
+				w.setInactive();
+			}
+			_workers.clear();
+		} finally {
+			_lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * wait until all workers stopped
+	 */
+	public FactoryWorkerGroup join() throws InterruptedException {
+		_lock.lock();
+		try {
+			while (_running > 0) {
+				_terminated.await();
+			}
+		} finally {
+			_lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * wait until all workers stopped or at most <code>millis</code>
+	 */
+	public FactoryWorkerGroup join(long millis) throws InterruptedException {
+		long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+		_lock.lock();
+		try {
+			while (_running > 0 && nanos > 0) {
+				nanos = _terminated.awaitNanos(nanos);
+			}
+		} finally {
+			_lock.unlock();
+		}
+		return this;
+	}
+
+	/**
+	 * @return number of workers requested
+	 */
+	public int getWorkers() {
+		_lock.lock();
+		try {
+			return _targetWorkers;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @return number of workers submitted and not yet stopped (including
+	 *         surplus workers that didn't stop yet)
+	 */
+	public int activeCount() {
+		_lock.lock();
+		try {
+			return _running;
+		} finally {
+			_lock.unlock();
+		}
+	}
+
+	public String getName() {
+		return _name;
+	}
+
+	protected void handleException(Throwable t, int consecutiveErrors, boolean terminate) {
+		if (terminate) {
+			log.error(_name + ": unhandled exception from created runnable, terminating after " + consecutiveErrors
+					+ " consecutive errors", t);
+		} else {
+			log.warn(_name + ": unhandled exception from created runnable, " + consecutiveErrors
+					+ " consecutive errors, continuing", t);
+		}
+	}
+
+	private final class Worker implements Runnable {
+
+		private final int _id;
+		private volatile boolean _workerActive = true;
+
+		private Worker(int id) {
+			_id = id;
+		}
+
+		private void setInactive() {
+			_workerActive = false;
+		}
+
+		@Override
+		public void run() {
+			try {
+				int errors = 0;
+				int idle = 0;
+				while (_workerActive) {
+					if (Thread.currentThread().isInterrupted()) {
+						setInactive();
+						break;
+					}
+					try {
+						final Runnable r = _factory.newRunnable();
+						if (r == null) {
+							_idleStrategy.idle(++idle);
+							continue;
+						}
+						idle = 0;
+						r.run();
+						errors = 0;
+					} catch (final Throwable t) {
+						idle = 0;
+						errors++;
+						if (errors >= _maxErrors) {
+							handleException(t, errors, true);
+							setInactive();
+						} else {
+							handleException(t, errors, false);
+							_errorBackoff.idle(errors);
+						}
+					}
+				}
+			} finally {
+				_lock.lock();
+				try {
+					_running--;
+					// terminated by errors or interrupt, don't replace
+					if (_workers.remove(this)) {
+						_targetWorkers--;
+					}
+					if (_running == 0) {
+						_terminated.signalAll();
+					}
+				} finally {
+					_lock.unlock();
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return _name + "#" + _id;
+		}
+	}
+}
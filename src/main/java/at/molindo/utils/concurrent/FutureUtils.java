@@ -15,12 +15,20 @@
  */
 package at.molindo.utils.concurrent;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import at.molindo.utils.data.Function;
+import at.molindo.utils.data.Function2;
 
 public class FutureUtils {
 
@@ -63,4 +71,144 @@ public class FutureUtils {
 		};
 	}
 
+	/**
+	 * @return a {@link ComposableFuture} completed once <code>future</code>
+	 *         completes, blocking a thread of <code>executor</code> until then
+	 *         (unless <code>future</code> already is a
+	 *         {@link ComposableFuture})
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ComposableFuture<T> toComposable(final Future<T> future, Executor executor) {
+		if (future instanceof ComposableFuture) {
+			return (ComposableFuture<T>) future;
+		}
+		return ComposableFuture.supply(new Callable<T>() {
+
+			@Override
+			public T call() throws Exception {
+				try {
+					return future.get();
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw e;
+				}
+			}
+		}, executor);
+	}
+
+	/**
+	 * @return a future completed with the values of all futures (in the same
+	 *         order) once all completed, or failed as soon as any failed
+	 */
+	public static <T> ComposableFuture<List<T>> allOf(final Collection<? extends ComposableFuture<? extends T>> futures) {
+		final ComposableFuture<List<T>> all = new ComposableFuture<List<T>>();
+		if (futures.isEmpty()) {
+			all.complete(new ArrayList<T>());
+			return all;
+		}
+
+		final List<ComposableFuture<? extends T>> list = new ArrayList<ComposableFuture<? extends T>>(futures);
+		final AtomicInteger remaining = new AtomicInteger(list.size());
+		for (final ComposableFuture<? extends T> f : list) {
+			f.addListener(new Runnable() {
+
+				@Override
+				public void run() {
+					final Throwable failure = f.getFailure();
+					if (failure != null) {
+						all.fail(failure);
+					} else if (remaining.decrementAndGet() == 0) {
+						final List<T> values = new ArrayList<T>(list.size());
+						for (final ComposableFuture<? extends T> done : list) {
+							values.add(value(done));
+						}
+						all.complete(values);
+					}
+				}
+			}, null);
+		}
+		return all;
+	}
+
+	/**
+	 * @return a future completed like the first of the futures to complete
+	 */
+	public static <T> ComposableFuture<T> anyOf(final Collection<? extends ComposableFuture<? extends T>> futures) {
+		if (futures.isEmpty()) {
+			throw new IllegalArgumentException("no futures");
+		}
+		final ComposableFuture<T> any = new ComposableFuture<T>();
+		for (final ComposableFuture<? extends T> f : futures) {
+			f.addListener(new Runnable() {
+
+				@Override
+				public void run() {
+					final Throwable failure = f.getFailure();
+					if (failure != null) {
+						any.fail(failure);
+					} else {
+						any.complete(value(f));
+					}
+				}
+			}, null);
+		}
+		return any;
+	}
+
+	/**
+	 * @see #allOf(Collection)
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <T> ComposableFuture<List<T>> allOf(final ComposableFuture<? extends T>... futures) {
+		return allOf(Arrays.asList(futures));
+	}
+
+	/**
+	 * @see #anyOf(Collection)
+	 */
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <T> ComposableFuture<T> anyOf(final ComposableFuture<? extends T>... futures) {
+		return anyOf(Arrays.asList(futures));
+	}
+
+	/**
+	 * fan-out/fan-in: apply <code>f</code> to all inputs in parallel using
+	 * <code>executor</code>
+	 *
+	 * @return a future completed with all results (in the order of inputs) or
+	 *         failed as soon as any call failed
+	 */
+	public static <I, R> ComposableFuture<List<R>> fanOut(final Collection<? extends I> inputs,
+			final Function2<? super I, ? extends R, ?> f, Executor executor) {
+		final List<ComposableFuture<R>> futures = new ArrayList<ComposableFuture<R>>(inputs.size());
+		for (final I input : inputs) {
+			futures.add(ComposableFuture.supply(new Callable<R>() {
+
+				@Override
+				public R call() throws Exception {
+					return f.apply(input);
+				}
+			}, executor));
+		}
+		return allOf(futures);
+	}
+
+	/**
+	 * @return value of a completed, not failed future
+	 */
+	private static <T> T value(final ComposableFuture<T> done) {
+		try {
+			return done.get();
+		} catch (final InterruptedException e) {
+			// not blocking as done
+			throw new IllegalStateException(e);
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
 }
@@ -0,0 +1,33 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+/**
+ * how a thread waits if there's no work (or after an error), trading latency
+ * for CPU usage. Implementations must be thread-safe, i.e. stateless or shared
+ * safely between threads.
+ *
+ * @see IdleStrategies
+ */
+public interface IIdleStrategy {
+
+	/**
+	 * @param count
+	 *            number of consecutive idle iterations (or errors) including
+	 *            this one, i.e. 1 or more
+	 */
+	void idle(int count);
+}
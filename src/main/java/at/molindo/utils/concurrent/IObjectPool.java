@@ -0,0 +1,36 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import javax.annotation.Nonnull;
+
+/**
+ * pool of reusable objects
+ */
+public interface IObjectPool<T> {
+
+	/**
+	 * @return pooled or newly created object
+	 */
+	@Nonnull
+	T get();
+
+	/**
+	 * @param o
+	 *            object to return to the pool, ignored if <code>null</code>
+	 */
+	void put(T o);
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * common {@link IIdleStrategy} implementations
+ */
+public final class IdleStrategies {
+
+	private static final IIdleStrategy BUSY_SPIN = new IIdleStrategy() {
+
+		@Override
+		public void idle(int count) {
+		}
+
+		@Override
+		public String toString() {
+			return "busySpin";
+		}
+	};
+
+	private static final IIdleStrategy YIELDING = new IIdleStrategy() {
+
+		@Override
+		public void idle(int count) {
+			Thread.yield();
+		}
+
+		@Override
+		public String toString() {
+			return "yielding";
+		}
+	};
+
+	private IdleStrategies() {
+	}
+
+	/**
+	 * @return strategy returning immediately, i.e. lowest latency at the cost
+	 *         of a busy core (or retrying immediately after errors)
+	 */
+	public static IIdleStrategy busySpin() {
+		return BUSY_SPIN;
+	}
+
+	/**
+	 * @return strategy calling {@link Thread#yield()}
+	 */
+	public static IIdleStrategy yielding() {
+		return YIELDING;
+	}
+
+	/**
+	 * @return {@link #backoff(int, int, long, long, TimeUnit)} spinning 10
+	 *         times, yielding 5 times and parking from 1 microsecond up to 1
+	 *         millisecond
+	 */
+	public static IIdleStrategy backoff() {
+		return backoff(10, 5, 1, 1000, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * @return strategy spinning <code>maxSpins</code> times, then yielding
+	 *         <code>maxYields</code> times, then parking with exponentially
+	 *         growing time from <code>minPark</code> to <code>maxPark</code>
+	 */
+	public static IIdleStrategy backoff(int maxSpins, int maxYields, long minPark, long maxPark, TimeUnit unit) {
+		return new BackoffIdleStrategy(maxSpins, maxYields, unit.toNanos(minPark), unit.toNanos(maxPark));
+	}
+
+	/**
+	 * @return strategy parking with exponentially growing time from
+	 *         <code>min</code> to <code>max</code>, e.g. as back-off after
+	 *         errors
+	 */
+	public static IIdleStrategy exponential(long min, long max, TimeUnit unit) {
+		return backoff(0, 0, min, max, unit);
+	}
+
+	/**
+	 * @return strategy blocking until {@link BlockingIdleStrategy#signal()} or
+	 *         at most <code>maxWait</code>
+	 */
+	public static BlockingIdleStrategy blocking(long maxWait, TimeUnit unit) {
+		return new BlockingIdleStrategy(unit.toNanos(maxWait));
+	}
+
+	private static final class BackoffIdleStrategy implements IIdleStrategy {
+
+		private final int _maxSpins;
+		private final int _maxYields;
+		private final long _minParkNanos;
+		private final long _maxParkNanos;
+
+		private BackoffIdleStrategy(int maxSpins, int maxYields, long minParkNanos, long maxParkNanos) {
+			if (maxSpins < 0 || maxYields < 0) {
+				throw new IllegalArgumentException("maxSpins and maxYields must be >= 0");
+			}
+			if (minParkNanos < 1 || maxParkNanos < minParkNanos) {
+				throw new IllegalArgumentException("illegal park times: " + minParkNanos + " to " + maxParkNanos);
+			}
+			_maxSpins = maxSpins;
+			_maxYields = maxYields;
+			_minParkNanos = minParkNanos;
+			_maxParkNanos = maxParkNanos;
+		}
+
+		@Override
+		public void idle(int count) {
+			if (count <= _maxSpins) {
+				return;
+			}
+			if (count <= _maxSpins + _maxYields) {
+				Thread.yield();
+				return;
+			}
+			LockSupport.parkNanos(parkNanos(count - _maxSpins - _maxYields));
+		}
+
+		/**
+		 * @param parks
+		 *            1 or more
+		 */
+		long parkNanos(int parks) {
+			final int shift = Math.min(parks - 1, 62);
+			final long nanos = _minParkNanos << shift;
+			return nanos >>> shift != _minParkNanos || nanos > _maxParkNanos ? _maxParkNanos : nanos;
+		}
+
+		@Override
+		public String toString() {
+			return "backoff(" + _maxSpins + ", " + _maxYields + ", " + _minParkNanos + "ns, " + _maxParkNanos
+					+ "ns)";
+		}
+	}
+
+	/**
+	 * waits until signalled, e.g. by a producer after adding work, or at most
+	 * <code>maxWait</code>. Each signal leaves a permit consumed by the next
+	 * {@link #idle(int)}, i.e. a signal sent between a failed lookup for work
+	 * and the wait isn't lost. Permits are bounded by the number of waiting
+	 * threads plus one, so signals without waiting threads don't accumulate.
+	 */
+	public static final class BlockingIdleStrategy implements IIdleStrategy {
+
+		private final long _maxWaitNanos;
+		private final ReentrantLock _lock = new ReentrantLock();
+		private final Condition _signal = _lock.newCondition();
+
+		// guarded by _lock
+		private int _permits;
+		private int _waiting;
+
+		private BlockingIdleStrategy(long maxWaitNanos) {
+			if (maxWaitNanos < 1) {
+				throw new IllegalArgumentException("maxWait must be > 0");
+			}
+			_maxWaitNanos = maxWaitNanos;
+		}
+
+		@Override
+		public void idle(int count) {
+			_lock.lock();
+			try {
+				if (_permits == 0) {
+					_waiting++;
+					try {
+						long nanos = _maxWaitNanos;
+						while (_permits == 0 && nanos > 0) {
+							nanos = _signal.awaitNanos(nanos);
+						}
+					} finally {
+						_waiting--;
+					}
+				}
+				if (_permits > 0) {
+					_permits--;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				_lock.unlock();
+			}
+		}
+
+		/**
+		 * wake up a waiting thread or the next thread to wait
+		 */
+		public void signal() {
+			_lock.lock();
+			try {
+				if (_permits <= _waiting) {
+					_permits++;
+				}
+				_signal.signal();
+			} finally {
+				_lock.unlock();
+			}
+		}
+
+		/**
+		 * wake up all waiting threads and the next thread to wait
+		 */
+		public void signalAll() {
+			_lock.lock();
+			try {
+				_permits = _waiting + 1;
+				_signal.signalAll();
+			} finally {
+				_lock.unlock();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "blocking(" + _maxWaitNanos + "ns)";
+		}
+	}
+}
@@ -16,14 +16,33 @@
 package at.molindo.utils.concurrent;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 
+import at.molindo.utils.data.Pair;
+import at.molindo.utils.metric.percentile.IPercentileCounter;
+
 /**
  * concurrency utility that locks execution of callable by a key, i.e. not using
  * key's identity but equality.
  * 
+ * Use {@link SingleFlight} to share results with concurrent callers.
+ * Each uncontended call allocates a task that waiting callers synchronize on,
+ * while {@link SingleFlight#get(Object, Callable)} runs uncontended callables
+ * without allocation.
+ * 
+ * Acquisitions, contended acquisitions (i.e. waiting for a concurrent call)
+ * and {@link KeyLockedException}s are counted. Wait times are recorded to an
+ * optional {@link IPercentileCounter} and the most contended keys are sampled
+ * using the space-saving algorithm, i.e. an approximate top-k with bounded
+ * memory. The uncontended path doesn't pay for any of it except a counter
+ * increment.
+ * 
  * 
  * @param <K>
  *            key type
@@ -34,9 +53,20 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class KeyLock<K, V> {
 
+	/**
+	 * default number of keys tracked by {@link #getTopContendedKeys(int)}
+	 */
+	public static final int DEFAULT_TOP_KEYS = 32;
+
 	private final ConcurrentHashMap<K, Task> _map = new ConcurrentHashMap<K, Task>();
 	private boolean _wait;
 
+	private final StripedCounter _acquisitions = new StripedCounter();
+	private final StripedCounter _contended = new StripedCounter();
+	private final StripedCounter _rejections = new StripedCounter();
+	private final TopKeys<K> _topKeys = new TopKeys<K>(DEFAULT_TOP_KEYS);
+	private volatile IPercentileCounter _waitTimes;
+
 	public static <K, V> KeyLock<K, V> newKeyLock() {
 		return new KeyLock<K, V>();
 	}
@@ -82,28 +112,52 @@ public class KeyLock<K, V> {
 			throw new NullPointerException("callable");
 		}
 
-		Task t = new Task(callable);
+		_acquisitions.increment();
+
+		Task t = null;
 		try {
-			final Task prev = _map.putIfAbsent(key, t);
+			// waiting callers don't allocate, the first caller does
+			Task prev = _map.get(key);
+			if (prev == null) {
+				t = new Task(callable);
+				prev = _map.putIfAbsent(key, t);
+			}
 			if (prev != null) {
+				_topKeys.sample(key);
 				if (_wait) {
+					_contended.increment();
 					t = prev;
+					return waitFor(t);
 				} else {
+					_rejections.increment();
 					t = null;
 					throw new KeyLockedException(key);
 				}
 			}
 			return t.perform();
 		} finally {
-			// first thread removes mapping
+			// removes mapping unless already replaced by a later task
 			if (t != null) {
-				_map.remove(key);
+				_map.remove(key, t);
 			} else {
 				// only with KeyLockedException
 			}
 		}
 	}
 
+	private V waitFor(final Task t) throws Exception {
+		final IPercentileCounter waitTimes = _waitTimes;
+		if (waitTimes == null) {
+			return t.perform();
+		}
+		final long start = System.nanoTime();
+		try {
+			return t.perform();
+		} finally {
+			waitTimes.recordNanos(System.nanoTime() - start);
+		}
+	}
+
 	/**
 	 * how to replace already computed results. by default it's null, as users
 	 * might not want to get concurrency issues on shared results. As a
@@ -134,6 +188,70 @@ public class KeyLock<K, V> {
 		return new ArrayList<K>(_map.keySet());
 	}
 
+	/**
+	 * @return true if <code>key</code> is locked, cheaper than
+	 *         {@link #activeKeys()}
+	 */
+	public boolean isLocked(final K key) {
+		return _map.containsKey(key);
+	}
+
+	/**
+	 * @return number of {@link #withLock(Object, Callable)} calls
+	 */
+	public long getAcquisitionCount() {
+		return _acquisitions.sum();
+	}
+
+	/**
+	 * @return number of {@link #withLock(Object, Callable)} calls that waited
+	 *         for a concurrent call
+	 */
+	public long getContendedCount() {
+		return _contended.sum();
+	}
+
+	/**
+	 * @return number of {@link KeyLockedException}s thrown
+	 */
+	public long getRejectionCount() {
+		return _rejections.sum();
+	}
+
+	/**
+	 * @param waitTimes
+	 *            counter receiving wait times of contended calls or null
+	 */
+	public void setWaitTimes(final IPercentileCounter waitTimes) {
+		_waitTimes = waitTimes;
+	}
+
+	public IPercentileCounter getWaitTimes() {
+		return _waitTimes;
+	}
+
+	/**
+	 * @param max
+	 *            maximum number of keys to return
+	 * @return most contended (waiting or rejected) keys with their approximate
+	 *         count, most contended first. Counts might overestimate by the
+	 *         count of evicted keys
+	 */
+	public List<Pair<K, Long>> getTopContendedKeys(final int max) {
+		return _topKeys.top(max);
+	}
+
+	/**
+	 * reset all counters and sampled keys, doesn't affect
+	 * {@link #getWaitTimes()}
+	 */
+	public void resetStats() {
+		_acquisitions.reset();
+		_contended.reset();
+		_rejections.reset();
+		_topKeys.clear();
+	}
+
 	private final class Task {
 
 		private final Callable<? extends V> _callable;
@@ -162,11 +280,66 @@ public class KeyLock<K, V> {
 		}
 	}
 
+	/**
+	 * space-saving top-k sampler: once full, a new key replaces the key with
+	 * the lowest count and inherits its count. Only used on the contended
+	 * path, hence simply synchronized.
+	 */
+	private static final class TopKeys<K> {
+
+		private final int _capacity;
+		private final HashMap<K, long[]> _counts;
+
+		private TopKeys(final int capacity) {
+			_capacity = capacity;
+			_counts = new HashMap<K, long[]>(capacity * 2);
+		}
+
+		public synchronized void sample(final K key) {
+			final long[] count = _counts.get(key);
+			if (count != null) {
+				count[0]++;
+			} else if (_counts.size() < _capacity) {
+				_counts.put(key, new long[] { 1 });
+			} else {
+				Map.Entry<K, long[]> min = null;
+				for (final Map.Entry<K, long[]> e : _counts.entrySet()) {
+					if (min == null || e.getValue()[0] < min.getValue()[0]) {
+						min = e;
+					}
+				}
+				final long[] minCount = min.getValue();
+				_counts.remove(min.getKey());
+				minCount[0]++;
+				_counts.put(key, minCount);
+			}
+		}
+
+		public synchronized List<Pair<K, Long>> top(final int max) {
+			final List<Pair<K, Long>> list = new ArrayList<Pair<K, Long>>(_counts.size());
+			for (final Map.Entry<K, long[]> e : _counts.entrySet()) {
+				list.add(Pair.pair(e.getKey(), e.getValue()[0]));
+			}
+			Collections.sort(list, new Comparator<Pair<K, Long>>() {
+
+				@Override
+				public int compare(final Pair<K, Long> o1, final Pair<K, Long> o2) {
+					return o2.getValue().compareTo(o1.getValue());
+				}
+			});
+			return list.size() > max ? new ArrayList<Pair<K, Long>>(list.subList(0, max)) : list;
+		}
+
+		public synchronized void clear() {
+			_counts.clear();
+		}
+	}
+
 	public static final class KeyLockedException extends Exception {
 		private static final long serialVersionUID = 1L;
 		private final Object _key;
 
-		private KeyLockedException(Object key) {
+		KeyLockedException(Object key) {
 			super("key locked by different thread");
 			_key = key;
 		}
@@ -22,7 +22,7 @@ import java.util.concurrent.LinkedBlockingDeque;
 
 import javax.annotation.Nonnull;
 
-public abstract class ObjectPool<T> {
+public abstract class ObjectPool<T> implements IObjectPool<T> {
 
 	/**
 	 * use stack to prefer "hot" objects
@@ -34,36 +34,43 @@ public abstract class ObjectPool<T> {
 	 * class
 	 */
 	public static <T> ObjectPool<T> create(Class<T> cls, int capacity) {
-		try {
-			final Constructor<T> constructor = cls.getConstructor();
-			return new ObjectPool<T>(capacity) {
+		final Constructor<T> constructor = constructor(cls);
+		return new ObjectPool<T>(capacity) {
+
+			@Override
+			protected T create() {
+				return newInstance(constructor);
+			}
 
-				@Override
-				protected T create() {
-					try {
-						return constructor.newInstance();
-					} catch (IllegalArgumentException e) {
-						throw new RuntimeException("failed to create new instance of type "
-								+ constructor.getDeclaringClass().getName(), e);
-					} catch (InstantiationException e) {
-						throw new RuntimeException("failed to create new instance of type "
-								+ constructor.getDeclaringClass().getName(), e);
-					} catch (IllegalAccessException e) {
-						throw new RuntimeException("failed to create new instance of type "
-								+ constructor.getDeclaringClass().getName(), e);
-					} catch (InvocationTargetException e) {
-						throw new RuntimeException("failed to create new instance of type "
-								+ constructor.getDeclaringClass().getName(), e);
-					}
-				}
+		};
+	}
 
-			};
+	static <T> Constructor<T> constructor(Class<T> cls) {
+		try {
+			return cls.getConstructor();
 		} catch (SecurityException e) {
 			throw new IllegalArgumentException(cls.getName() + " does not have an accessible default constructor", e);
 		} catch (NoSuchMethodException e) {
 			throw new IllegalArgumentException(cls.getName() + " does not have a default constructor", e);
 		}
+	}
 
+	static <T> T newInstance(Constructor<T> constructor) {
+		try {
+			return constructor.newInstance();
+		} catch (IllegalArgumentException e) {
+			throw new RuntimeException("failed to create new instance of type "
+					+ constructor.getDeclaringClass().getName(), e);
+		} catch (InstantiationException e) {
+			throw new RuntimeException("failed to create new instance of type "
+					+ constructor.getDeclaringClass().getName(), e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("failed to create new instance of type "
+					+ constructor.getDeclaringClass().getName(), e);
+		} catch (InvocationTargetException e) {
+			throw new RuntimeException("failed to create new instance of type "
+					+ constructor.getDeclaringClass().getName(), e);
+		}
 	}
 
 	public ObjectPool(int capacity) {
@@ -73,6 +80,7 @@ public abstract class ObjectPool<T> {
 	/**
 	 * @return object from stack or newly created one
 	 */
+	@Override
 	public T get() {
 		T o = _stack.poll();
 		return o == null ? create() : o;
@@ -82,6 +90,7 @@ public abstract class ObjectPool<T> {
 	 * @param put
 	 *            object back on stack
 	 */
+	@Override
 	public void put(T o) {
 		if (o != null && reset(o)) {
 			_stack.offerFirst(o);
@@ -0,0 +1,238 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import at.molindo.utils.concurrent.FactoryThread.FactoryThreadGroup;
+import at.molindo.utils.concurrent.FactoryThread.IRunnableFactory;
+import at.molindo.utils.concurrent.IdleStrategies.BlockingIdleStrategy;
+
+/**
+ * replacement for {@link FactoryBlockingQueue} where background producer
+ * threads eagerly {@link #create()} elements, i.e. consumers get pre-built
+ * elements without paying creation latency. Producers fill the buffer up to
+ * <code>highWatermark</code> elements and resume once consumers took it down to
+ * <code>lowWatermark</code> elements.
+ *
+ * Producers are daemon threads that must be started using {@link #start()}
+ * and should be stopped using {@link #stop()}. Exceptions thrown by
+ * {@link #create()} are logged and retried with exponential back-off.
+ */
+public abstract class PrefetchingFactoryQueue<E> {
+
+	private final int _lowWatermark;
+	private final int _highWatermark;
+
+	private final LinkedBlockingQueue<E> _buffer;
+
+	/**
+	 * elements being created
+	 */
+	private final AtomicInteger _creating = new AtomicInteger();
+	private volatile boolean _filling = true;
+
+	private final BlockingIdleStrategy _refill = IdleStrategies.blocking(100, TimeUnit.MILLISECONDS);
+	private final FactoryThreadGroup _producers;
+
+	private final AtomicInteger _inlineCreated = new AtomicInteger();
+
+	/**
+	 * @param name
+	 *            name of producer threads
+	 * @param producers
+	 *            number of producer threads
+	 * @param lowWatermark
+	 *            number of buffered elements that causes producers to resume
+	 * @param highWatermark
+	 *            maximum number of buffered elements
+	 */
+	public PrefetchingFactoryQueue(String name, @Nonnegative int producers, @Nonnegative int lowWatermark,
+			@Nonnegative int highWatermark) {
+		if (producers < 1) {
+			throw new IllegalArgumentException("producers must be >= 1, was " + producers);
+		}
+		if (highWatermark < 1) {
+			throw new IllegalArgumentException("highWatermark must be >= 1, was " + highWatermark);
+		}
+		if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+			throw new IllegalArgumentException("lowWatermark must be between 0 and highWatermark - 1, was "
+					+ lowWatermark);
+		}
+
+		_lowWatermark = lowWatermark;
+		_highWatermark = highWatermark;
+		_buffer = new LinkedBlockingQueue<E>(highWatermark);
+
+		_producers = new FactoryThreadGroup(name, producers, new IRunnableFactory() {
+
+			@Override
+			public Runnable newRunnable() {
+				return _filling ? produce() : null;
+			}
+		});
+		_producers.setIdleStrategy(_refill);
+		_producers.setErrorBackoff(IdleStrategies.exponential(1, 1000, TimeUnit.MILLISECONDS));
+		for (final FactoryThread t : _producers.getThreads()) {
+			t.setDaemon(true);
+		}
+	}
+
+	/**
+	 * @return runnable creating an element or null if buffer is (going to be)
+	 *         full
+	 */
+	private Runnable produce() {
+		if (_buffer.size() + _creating.incrementAndGet() > _highWatermark) {
+			_creating.decrementAndGet();
+			_filling = false;
+			// consumers might have missed the change, see taken()
+			if (_buffer.size() <= _lowWatermark) {
+				_filling = true;
+			}
+			return null;
+		}
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					final E e = create();
+					if (e == null) {
+						throw new NullPointerException("create() returned null");
+					}
+					_buffer.offer(e);
+				} finally {
+					_creating.decrementAndGet();
+				}
+			}
+		};
+	}
+
+	/**
+	 * start producer threads
+	 */
+	public PrefetchingFactoryQueue<E> start() {
+		_producers.start();
+		return this;
+	}
+
+	/**
+	 * stop producer threads after their current element and wait for them
+	 */
+	public void stop() throws InterruptedException {
+		_producers.setInactive();
+		_refill.signalAll();
+		_producers.join();
+	}
+
+	/**
+	 * @return a new element, never null
+	 */
+	protected abstract @Nonnull E create();
+
+	/**
+	 * @return buffered element or a newly created one if buffer is empty
+	 *         (created in the calling thread), never null
+	 */
+	public E get() {
+		final E e = _buffer.poll();
+		if (e != null) {
+			taken();
+			return e;
+		}
+		_inlineCreated.incrementAndGet();
+		final E created = create();
+		if (created == null) {
+			throw new NullPointerException("create() returned null");
+		}
+		return created;
+	}
+
+	/**
+	 * @return buffered element, waiting for producers if necessary
+	 */
+	public E take() throws InterruptedException {
+		final E e = _buffer.take();
+		taken();
+		return e;
+	}
+
+	/**
+	 * @return buffered element or null if none was produced within
+	 *         <code>timeout</code>
+	 */
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		final E e = _buffer.poll(timeout, unit);
+		if (e != null) {
+			taken();
+		}
+		return e;
+	}
+
+	/**
+	 * @return buffered element or null
+	 */
+	public E poll() {
+		final E e = _buffer.poll();
+		if (e != null) {
+			taken();
+		}
+		return e;
+	}
+
+	private void taken() {
+		if (!_filling && _buffer.size() <= _lowWatermark) {
+			_filling = true;
+			_refill.signalAll();
+		}
+	}
+
+	/**
+	 * @return number of buffered elements
+	 */
+	public int size() {
+		return _buffer.size();
+	}
+
+	public int getLowWatermark() {
+		return _lowWatermark;
+	}
+
+	public int getHighWatermark() {
+		return _highWatermark;
+	}
+
+	/**
+	 * @return number of elements created by producers
+	 */
+	public long getProducedCount() {
+		return _producers.getRunCount();
+	}
+
+	/**
+	 * @return number of elements created by {@link #get()} because the buffer
+	 *         was empty
+	 */
+	public int getInlineCreatedCount() {
+		return _inlineCreated.get();
+	}
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * collapses concurrent executions of callables by key (using equality): the
+ * first caller for a key runs its callable while all concurrent callers for the
+ * same key get the same {@link Future}, i.e. share result or exception.
+ * Contrary to {@link KeyLock}, callers never block on a monitor and may wait
+ * with a timeout. Once a callable completes, the next call for its key runs a
+ * new callable.
+ *
+ * Without {@link Executor}, callables run in the calling thread and
+ * {@link #submit(Object, Callable)} only returns after completion for the
+ * first caller. With {@link Executor}, all callers return immediately.
+ *
+ * Returning a {@link Future} requires one allocation per flight. Without
+ * {@link Executor}, {@link #get(Object, Callable)} avoids it for uncontended
+ * calls: the callable runs inline and a {@link Future} is only created once a
+ * concurrent caller joins.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            return type of {@link Callable}
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * mapped while a callable runs inline without {@link Flight}
+	 */
+	private static final Object RUNNING = new Object();
+
+	/**
+	 * never called, flights joining an inline call are completed by
+	 * {@link #finish(Object, Object, Throwable)}
+	 */
+	private static final Callable<Object> JOINED = new Callable<Object>() {
+
+		@Override
+		public Object call() {
+			throw new IllegalStateException("completed by running caller");
+		}
+	};
+
+	/**
+	 * {@link #RUNNING} or {@link Flight}
+	 */
+	private final ConcurrentHashMap<K, Object> _map = new ConcurrentHashMap<K, Object>();
+	private final Executor _executor;
+
+	public static <K, V> SingleFlight<K, V> newSingleFlight() {
+		return new SingleFlight<K, V>();
+	}
+
+	public static <K, V> SingleFlight<K, V> newSingleFlight(Executor executor) {
+		return new SingleFlight<K, V>(executor);
+	}
+
+	public SingleFlight() {
+		_executor = null;
+	}
+
+	/**
+	 * @param executor
+	 *            executor used to run callables asynchronously
+	 */
+	public SingleFlight(final Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("executor");
+		}
+		_executor = executor;
+	}
+
+	/**
+	 * run <code>callable</code> unless another callable is running for
+	 * <code>key</code>.
+	 *
+	 * @return {@link Future} shared by all concurrent callers for
+	 *         <code>key</code> (allocated unless joining a running flight).
+	 *         {@link Future#cancel(boolean)} isn't supported and returns false
+	 * @throws RejectedExecutionException
+	 *             if the executor rejects the callable
+	 * @throws NullPointerException
+	 *             if <code>key</code> or <code>callable</code> are
+	 *             <code>null</code>
+	 */
+	public Future<V> submit(final K key, final Callable<? extends V> callable) {
+		if (key == null) {
+			throw new NullPointerException("key");
+		}
+		if (callable == null) {
+			throw new NullPointerException("callable");
+		}
+
+		final Flight joined = join(key, false);
+		if (joined != null) {
+			return joined;
+		}
+
+		final Flight flight = new Flight(key, callable);
+		final Object prev = _map.putIfAbsent(key, flight);
+		if (prev != null) {
+			// raced with another caller
+			return submit(key, callable);
+		}
+
+		if (_executor == null) {
+			flight.run();
+		} else {
+			try {
+				_executor.execute(flight);
+			} catch (final RuntimeException e) {
+				// complete for callers that already joined this flight
+				flight.complete(null, e);
+				_map.remove(key, flight);
+				throw e;
+			}
+		}
+		return flight;
+	}
+
+	/**
+	 * {@link #submit(Object, Callable)} and wait for the result. Without
+	 * {@link Executor}, uncontended calls run <code>callable</code> inline
+	 * without allocating a {@link Future}.
+	 *
+	 * @throws Exception
+	 *             any exception thrown by <code>callable.call()</code> (of
+	 *             the first caller)
+	 */
+	public V get(final K key, final Callable<? extends V> callable) throws Exception {
+		final Future<V> future = getOrCall(key, callable);
+		if (future == null) {
+			return call(key, callable);
+		}
+		try {
+			return future.get();
+		} catch (final ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * {@link #submit(Object, Callable)} and wait for the result at most
+	 * <code>timeout</code>. Timeouts don't affect the running callable.
+	 *
+	 * @throws TimeoutException
+	 *             if the wait timed out
+	 * @throws Exception
+	 *             any exception thrown by <code>callable.call()</code> (of
+	 *             the first caller)
+	 */
+	public V get(final K key, final Callable<? extends V> callable, final long timeout, final TimeUnit unit)
+			throws Exception {
+		final Future<V> future = getOrCall(key, callable);
+		if (future == null) {
+			return call(key, callable);
+		}
+		try {
+			return future.get(timeout, unit);
+		} catch (final ExecutionException e) {
+			throw unwrap(e);
+		}
+	}
+
+	/**
+	 * @return running or submitted {@link Future} or null if the caller must
+	 *         {@link #call(Object, Callable)} inline
+	 */
+	private Future<V> getOrCall(final K key, final Callable<? extends V> callable) {
+		if (key == null) {
+			throw new NullPointerException("key");
+		}
+		if (callable == null) {
+			throw new NullPointerException("callable");
+		}
+		if (_executor != null) {
+			return submit(key, callable);
+		}
+		return join(key, true);
+	}
+
+	/**
+	 * @param own
+	 *            map {@link #RUNNING} if nothing is running
+	 * @return running flight, null if nothing is running (and owned by the
+	 *         caller if <code>own</code>)
+	 */
+	private Flight join(final K key, final boolean own) {
+		Flight joining = null;
+		while (true) {
+			final Object running = own ? _map.putIfAbsent(key, RUNNING) : _map.get(key);
+			if (running == null) {
+				return null;
+			}
+			if (running != RUNNING) {
+				return flight(running);
+			}
+			// running inline, publish a flight completed by the running caller
+			if (joining == null) {
+				joining = new Flight(key);
+			}
+			if (_map.replace(key, RUNNING, joining)) {
+				return joining;
+			}
+		}
+	}
+
+	/**
+	 * run <code>callable</code> after mapping {@link #RUNNING}
+	 */
+	private V call(final K key, final Callable<? extends V> callable) throws Exception {
+		final V result;
+		try {
+			result = callable.call();
+		} catch (final Exception e) {
+			finish(key, null, e);
+			throw e;
+		} catch (final Error e) {
+			finish(key, null, e);
+			throw e;
+		}
+		finish(key, result, null);
+		return result;
+	}
+
+	private void finish(final K key, final V result, final Throwable t) {
+		if (!_map.remove(key, RUNNING)) {
+			// joined by concurrent callers, only this caller may remove it
+			flight(_map.get(key)).complete(result, t);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Flight flight(final Object running) {
+		return (Flight) running;
+	}
+
+	private static Exception unwrap(final ExecutionException e) {
+		final Throwable cause = e.getCause();
+		if (cause instanceof Exception) {
+			return (Exception) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		} else {
+			return e;
+		}
+	}
+
+	/**
+	 * @return running {@link Future} for <code>key</code> or null
+	 */
+	public Future<V> getRunning(final K key) {
+		return join(key, false);
+	}
+
+	/**
+	 * @return number of active keys
+	 */
+	public int activeCount() {
+		return _map.size();
+	}
+
+	/**
+	 * @return a newly created {@link List} of all active keys
+	 */
+	public List<K> activeKeys() {
+		return new ArrayList<K>(_map.keySet());
+	}
+
+	private final class Flight extends FutureTask<V> {
+
+		private final K _key;
+
+		@SuppressWarnings("unchecked")
+		public Flight(final K key, final Callable<? extends V> callable) {
+			super((Callable<V>) callable);
+			_key = key;
+		}
+
+		/**
+		 * flight completed by the caller running inline
+		 */
+		@SuppressWarnings("unchecked")
+		public Flight(final K key) {
+			super((Callable<V>) (Callable<?>) JOINED);
+			_key = key;
+		}
+
+		private void complete(final V result, final Throwable t) {
+			if (t == null) {
+				set(result);
+			} else {
+				setException(t);
+			}
+		}
+
+		@Override
+		protected void done() {
+			_map.remove(_key, this);
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			// shared by all callers
+			return false;
+		}
+	}
+}
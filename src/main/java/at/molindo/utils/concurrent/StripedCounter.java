@@ -0,0 +1,62 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.io.Serializable;
+
+/**
+ * a single long counter for frequent concurrent updates and rare reads
+ *
+ * @see StripedLongArray
+ */
+public class StripedCounter implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final StripedLongArray _cells;
+
+	public StripedCounter() {
+		_cells = new StripedLongArray(1);
+	}
+
+	public void increment() {
+		_cells.increment(0);
+	}
+
+	public void add(long x) {
+		_cells.add(0, x);
+	}
+
+	public long sum() {
+		return _cells.sum();
+	}
+
+	/**
+	 * @return {@link #sum()} saturated to {@link Integer#MAX_VALUE}
+	 */
+	public int intValue() {
+		return (int) Math.min(sum(), Integer.MAX_VALUE);
+	}
+
+	public void reset() {
+		_cells.reset();
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import at.molindo.utils.concurrent.KeyLock.KeyLockedException;
+
+/**
+ * constant memory alternative to {@link KeyLock} for huge numbers of distinct
+ * keys: a fixed number of locks is selected by key hash, i.e. there are no
+ * per-key allocations but unrelated keys mapping to the same stripe block
+ * each other. Other than {@link KeyLock}, waiting callers run their own
+ * callable once the lock is released (there is no result to share between
+ * different keys of a stripe). Locks are reentrant.
+ *
+ * Waits (i.e. contended acquisitions) and time spent waiting are counted per
+ * stripe to allow sizing the number of stripes.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            return type of {@link Callable}
+ */
+public class StripedKeyLock<K, V> {
+
+	private static final int WAITS = 0;
+	private static final int WAIT_NANOS = 1;
+	private static final int REJECTIONS = 2;
+	private static final int STATS = 3;
+
+	private final ReentrantLock[] _locks;
+	private final int _mask;
+	private final boolean _wait;
+
+	/**
+	 * {@link #STATS} counters per stripe
+	 */
+	private final AtomicLongArray _stats;
+
+	public static <K, V> StripedKeyLock<K, V> newStripedKeyLock(int stripes) {
+		return new StripedKeyLock<K, V>(stripes);
+	}
+
+	public static <K, V> StripedKeyLock<K, V> newStripedKeyLock(int stripes, boolean wait) {
+		return new StripedKeyLock<K, V>(stripes, wait);
+	}
+
+	public StripedKeyLock(int stripes) {
+		this(stripes, true);
+	}
+
+	/**
+	 * @param stripes
+	 *            number of locks, rounded up to the next power of 2
+	 * @param wait
+	 *            should {@link #withLock(Object, Callable)} calls wait for
+	 *            concurrent calls to finish or should they fail fast
+	 */
+	public StripedKeyLock(int stripes, boolean wait) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be >= 1, was " + stripes);
+		}
+
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+
+		_locks = new ReentrantLock[n];
+		for (int i = 0; i < n; i++) {
+			_locks[i] = new ReentrantLock();
+		}
+		_mask = n - 1;
+		_wait = wait;
+		_stats = new AtomicLongArray(n * STATS);
+	}
+
+	/**
+	 * execute <code>callable</code> while locking concurrent execution for
+	 * all keys of the same stripe as <code>key</code>
+	 * 
+	 * @throws KeyLockedException
+	 *             only if key lock configured not to wait and stripe locked
+	 *             by other thread
+	 * @throws Exception
+	 *             any exception thrown by <code>callable.call()</code>
+	 * @throws NullPointerException
+	 *             if <code>key</code> or <code>callable</code> are
+	 *             <code>null</code>
+	 */
+	public V withLock(final K key, final Callable<? extends V> callable) throws Exception {
+		if (key == null) {
+			throw new NullPointerException("key");
+		}
+		if (callable == null) {
+			throw new NullPointerException("callable");
+		}
+
+		final int stripe = stripe(key);
+		final ReentrantLock lock = _locks[stripe];
+
+		if (!lock.tryLock()) {
+			if (!_wait) {
+				_stats.incrementAndGet(stripe * STATS + REJECTIONS);
+				throw new KeyLockedException(key);
+			}
+			// only measure contended acquisitions
+			final long start = System.nanoTime();
+			lock.lockInterruptibly();
+			_stats.incrementAndGet(stripe * STATS + WAITS);
+			_stats.addAndGet(stripe * STATS + WAIT_NANOS, System.nanoTime() - start);
+		}
+
+		try {
+			return callable.call();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return stripe index used for <code>key</code>
+	 */
+	public int stripe(final K key) {
+		int h = key.hashCode();
+		// spread bits as keys often differ in higher bits only
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h & _mask;
+	}
+
+	/**
+	 * @return number of stripes
+	 */
+	public int stripes() {
+		return _locks.length;
+	}
+
+	/**
+	 * @return true if <code>key</code>'s stripe is locked by any thread
+	 */
+	public boolean isLocked(final K key) {
+		return _locks[stripe(key)].isLocked();
+	}
+
+	/**
+	 * @return number of currently locked stripes
+	 */
+	public int activeCount() {
+		int count = 0;
+		for (final ReentrantLock lock : _locks) {
+			if (lock.isLocked()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of acquisitions that had to wait, per stripe
+	 */
+	public long[] getWaitCounts() {
+		return stats(WAITS);
+	}
+
+	/**
+	 * @return total nanoseconds spent waiting, per stripe
+	 */
+	public long[] getWaitNanos() {
+		return stats(WAIT_NANOS);
+	}
+
+	/**
+	 * @return number of {@link KeyLockedException}s thrown, per stripe
+	 */
+	public long[] getRejectionCounts() {
+		return stats(REJECTIONS);
+	}
+
+	private long[] stats(final int offset) {
+		final long[] stats = new long[_locks.length];
+		for (int i = 0; i < stats.length; i++) {
+			stats[i] = _stats.get(i * STATS + offset);
+		}
+		return stats;
+	}
+
+	/**
+	 * reset all wait and rejection counters
+	 */
+	public void resetStats() {
+		for (int i = 0; i < _stats.length(); i++) {
+			_stats.set(i, 0);
+		}
+	}
+}
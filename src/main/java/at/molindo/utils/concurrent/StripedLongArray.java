@@ -0,0 +1,181 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a fixed length array of long counters where each thread adds to its own
+ * stripe (similar to Java 8's LongAdder). Stripes are padded to separate cache
+ * lines, hence concurrent updates from different cores don't contend. Reads sum
+ * up all stripes and are therefore considerably more expensive than updates.
+ *
+ * Reads are not atomic snapshots: updates happening concurrently to
+ * {@link #get(int)}, {@link #toArray()} or {@link #reset()} may or may not be
+ * reflected.
+ */
+public class StripedLongArray implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * longs per 64 byte cache line
+	 */
+	private static final int PAD = 8;
+
+	private final int _length;
+	private final int _stride;
+	private final int _mask;
+	private final AtomicLongArray _cells;
+
+	public StripedLongArray(int length) {
+		this(length, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param length
+	 *            number of counters
+	 * @param stripes
+	 *            number of stripes, rounded up to the next power of 2
+	 */
+	public StripedLongArray(int length, int stripes) {
+		if (length < 1) {
+			throw new IllegalArgumentException("length must be >= 1, was " + length);
+		}
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be >= 1, was " + stripes);
+		}
+
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+
+		_length = length;
+		// round up to full cache lines and add a line of padding
+		_stride = (length + PAD - 1) / PAD * PAD + PAD;
+		_mask = n - 1;
+		// leading padding for first stripe
+		_cells = new AtomicLongArray(PAD + n * _stride);
+	}
+
+	/**
+	 * @return offset of the current thread's stripe
+	 */
+	private int offset() {
+		// thread ids are sequential, threads of a pool end up in distinct
+		// stripes
+		return PAD + ((int) Thread.currentThread().getId() & _mask) * _stride;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= _length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+	}
+
+	public void increment(int index) {
+		add(index, 1);
+	}
+
+	public void add(int index, long x) {
+		checkIndex(index);
+		_cells.addAndGet(offset() + index, x);
+	}
+
+	/**
+	 * @return sum of counter at <code>index</code> over all stripes
+	 */
+	public long get(int index) {
+		checkIndex(index);
+		long sum = 0;
+		for (int offset = PAD; offset < _cells.length(); offset += _stride) {
+			sum += _cells.get(offset + index);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return sum of all counters
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int offset = PAD; offset < _cells.length(); offset += _stride) {
+			for (int i = 0; i < _length; i++) {
+				sum += _cells.get(offset + i);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @return a newly created array containing the merged values of all
+	 *         stripes
+	 */
+	public long[] toArray() {
+		return toArray(new long[_length]);
+	}
+
+	/**
+	 * @param a
+	 *            array to copy merged values to, must be of at least
+	 *            {@link #length()}
+	 * @return <code>a</code>
+	 */
+	public long[] toArray(long[] a) {
+		if (a.length < _length) {
+			throw new IllegalArgumentException("array too small, " + a.length + " < " + _length);
+		}
+		for (int i = 0; i < _length; i++) {
+			a[i] = 0;
+		}
+		for (int offset = PAD; offset < _cells.length(); offset += _stride) {
+			for (int i = 0; i < _length; i++) {
+				a[i] += _cells.get(offset + i);
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * reset all counters to 0
+	 */
+	public void reset() {
+		for (int offset = PAD; offset < _cells.length(); offset += _stride) {
+			for (int i = 0; i < _length; i++) {
+				_cells.set(offset + i, 0);
+			}
+		}
+	}
+
+	public int length() {
+		return _length;
+	}
+
+	/**
+	 * @return number of stripes
+	 */
+	public int stripes() {
+		return _mask + 1;
+	}
+
+	@Override
+	public String toString() {
+		return StripedLongArray.class.getSimpleName() + Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} reading from the current position of a
+ * {@link ByteBuffer}, advancing it. Doesn't copy the buffer.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private final ByteBuffer _buf;
+
+	public ByteBufferInputStream(final ByteBuffer buf) {
+		if (buf == null) {
+			throw new NullPointerException("buf");
+		}
+		_buf = buf;
+	}
+
+	@Override
+	public int read() {
+		return _buf.hasRemaining() ? _buf.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (!_buf.hasRemaining()) {
+			return -1;
+		}
+		final int n = Math.min(len, _buf.remaining());
+		_buf.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public long skip(final long n) {
+		final int skipped = (int) Math.max(0, Math.min(n, _buf.remaining()));
+		_buf.position(_buf.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return _buf.remaining();
+	}
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.io;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link OutputStream} writing to the current position of a
+ * {@link ByteBuffer}, advancing it. Writing to a full buffer throws a
+ * {@link java.nio.BufferOverflowException}.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+	private final ByteBuffer _buf;
+
+	public ByteBufferOutputStream(final ByteBuffer buf) {
+		if (buf == null) {
+			throw new NullPointerException("buf");
+		}
+		_buf = buf;
+	}
+
+	@Override
+	public void write(final int b) {
+		_buf.put((byte) b);
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) {
+		_buf.put(b, off, len);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * variable length encoding of long values using 7 bits per byte (least
+ * significant group first, high bit set if more bytes follow) as used by
+ * protocol buffers. Small values need a single byte, {@link Long#MAX_VALUE}
+ * needs 9 and negative values 10 bytes. Use the signed methods (zigzag
+ * encoding) for values that are likely negative.
+ */
+public class VarIntUtils {
+
+	/**
+	 * maximum number of bytes of an encoded value
+	 */
+	public static final int MAX_LENGTH = 10;
+
+	private VarIntUtils() {
+	}
+
+	/**
+	 * @return number of bytes needed to encode <code>value</code>
+	 */
+	public static int length(long value) {
+		int length = 1;
+		while ((value & ~0x7FL) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	public static int signedLength(final long value) {
+		return length(zigZag(value));
+	}
+
+	/**
+	 * map signed to unsigned values so that values of small magnitude have a
+	 * short encoding (0, -1, 1, -2, ... to 0, 1, 2, 3, ...)
+	 */
+	public static long zigZag(final long value) {
+		return value << 1 ^ value >> 63;
+	}
+
+	public static long unZigZag(final long value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	public static void write(long value, final ByteBuffer buf) {
+		while ((value & ~0x7FL) != 0) {
+			buf.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buf.put((byte) value);
+	}
+
+	public static void writeSigned(final long value, final ByteBuffer buf) {
+		write(zigZag(value), buf);
+	}
+
+	public static void write(long value, final OutputStream out) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	public static void writeSigned(final long value, final OutputStream out) throws IOException {
+		write(zigZag(value), out);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if encoded value is longer than {@link #MAX_LENGTH}
+	 * @throws java.nio.BufferUnderflowException
+	 *             if <code>buf</code> ends before the value is complete
+	 */
+	public static long read(final ByteBuffer buf) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = buf.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("malformed varint");
+	}
+
+	public static long readSigned(final ByteBuffer buf) {
+		return unZigZag(read(buf));
+	}
+
+	/**
+	 * @throws EOFException
+	 *             if <code>in</code> ends before the value is complete
+	 * @throws IOException
+	 *             if encoded value is longer than {@link #MAX_LENGTH}
+	 */
+	public static long read(final InputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = in.read();
+			if (b == -1) {
+				throw new EOFException();
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	public static long readSigned(final InputStream in) throws IOException {
+		return unZigZag(read(in));
+	}
+
+	/**
+	 * write a nullable string as UTF-8 prefixed by its length + 1 (0 for
+	 * null)
+	 */
+	public static void writeString(final String value, final OutputStream out) throws IOException {
+		if (value == null) {
+			write(0, out);
+		} else {
+			final byte[] bytes = value.getBytes(CharsetUtils.UTF_8);
+			write(bytes.length + 1L, out);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @see #writeString(String, OutputStream)
+	 */
+	public static String readString(final InputStream in) throws IOException {
+		final long length = read(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("illegal string length " + length);
+		}
+		final byte[] bytes = new byte[(int) length];
+		StreamUtils.readFully(in, bytes);
+		return new String(bytes, CharsetUtils.UTF_8);
+	}
+}
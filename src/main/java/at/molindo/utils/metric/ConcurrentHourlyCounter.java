@@ -0,0 +1,343 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import at.molindo.utils.io.VarIntUtils;
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * lock-free {@link HourlyCounter} alternative. Each bucket stores its time
+ * index along with its count in a single long. An increment for a bucket of
+ * an outdated time index replaces it atomically, i.e. rotation is a CAS of the
+ * bucket and neither requires a lock nor loses concurrent increments.
+ *
+ * {@link #getData()}, {@link #getMax()}, {@link #getMin()} and
+ * {@link #toHourlyCounterBean()} each read every bucket once and derive all
+ * values from the same snapshot. Unlike {@link HourlyCounter},
+ * {@link #getMin()} ignores empty buckets.
+ */
+@XmlJavaTypeAdapter(ConcurrentHourlyCounterAdapter.class)
+public class ConcurrentHourlyCounter implements ICounter {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int DEFAULT_HOURS = 168;
+	private static final int DEFAULT_GRANULARITY = 60;
+
+	/**
+	 * time index in upper, count in lower 32 bits
+	 */
+	private final AtomicLongArray _buckets;
+	private final int _hours;
+	private final int _granularity;
+	private final IClock _clock;
+
+	/**
+	 * max and min of buckets no longer in {@link #_buckets}
+	 */
+	private final AtomicInteger _max = new AtomicInteger();
+	private final AtomicInteger _min = new AtomicInteger();
+
+	private volatile String _title;
+
+	public ConcurrentHourlyCounter() {
+		this(DEFAULT_HOURS, DEFAULT_GRANULARITY);
+	}
+
+	public ConcurrentHourlyCounter(final int hours) {
+		this(hours, DEFAULT_GRANULARITY);
+	}
+
+	public ConcurrentHourlyCounter(final int hours, final int granularity) {
+		this(hours, granularity, SystemClock.INSTANCE);
+	}
+
+	public ConcurrentHourlyCounter(final int hours, final int granularity, final IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_clock = clock;
+		_hours = hours;
+		_granularity = checkGranularity(granularity);
+		_buckets = new AtomicLongArray(_hours * 60 / _granularity);
+	}
+
+	public ConcurrentHourlyCounter(final HourlyCounterBean hourlyCounterBean) {
+		this(hourlyCounterBean, SystemClock.INSTANCE);
+	}
+
+	public ConcurrentHourlyCounter(final HourlyCounterBean hourlyCounterBean, final IClock clock) {
+		this(hourlyCounterBean.getHours(), hourlyCounterBean.getGranularity(), clock);
+
+		final int[] array = hourlyCounterBean.getArray();
+		final int currentIndex = hourlyCounterBean.getCurrentIndex();
+		for (int offset = 0; offset < _buckets.length(); offset++) {
+			final int index = currentIndex - offset;
+			_buckets.set(slot(index), bucket(index, array[slot(index)]));
+		}
+		_max.set(hourlyCounterBean.getMax());
+		_min.set(hourlyCounterBean.getMin());
+	}
+
+	@Override
+	public void increment() {
+		increment(1);
+	}
+
+	@Override
+	public void increment(final int count) {
+		if (count < 1) {
+			return;
+		}
+
+		final int now = calcIndex();
+		final int slot = slot(now);
+
+		while (true) {
+			final long bucket = _buckets.get(slot);
+			final int index = index(bucket);
+
+			final long update;
+			if (index >= now) {
+				// current bucket (or newer if clock went backwards)
+				update = bucket(index, add(count(bucket), count));
+			} else {
+				// rotate, folding an idempotent max/min is safe before CAS
+				fold(count(bucket));
+				update = bucket(now, count);
+			}
+
+			if (_buckets.compareAndSet(slot, bucket, update)) {
+				return;
+			}
+		}
+	}
+
+	private void fold(final int value) {
+		if (value == 0) {
+			return;
+		}
+
+		int max;
+		while (value > (max = _max.get()) && !_max.compareAndSet(max, value)) {
+			// retry
+		}
+
+		int min;
+		while (((min = _min.get()) == 0 || value < min) && !_min.compareAndSet(min, value)) {
+			// retry
+		}
+	}
+
+	@Override
+	public int getCount() {
+		return getCount(0);
+	}
+
+	/**
+	 * e.g. -1 or 1 for previous hour
+	 */
+	public int getCount(int offset) {
+		offset = Math.abs(offset);
+		if (offset >= _buckets.length()) {
+			throw new IllegalArgumentException("offset must be < " + _buckets.length() + " but was " + offset);
+		}
+
+		final int index = calcIndex() - offset;
+		return count(index, _buckets.get(slot(index)));
+	}
+
+	/**
+	 * @return count of bucket if it belongs to time index, 0 otherwise
+	 */
+	private static int count(final int index, final long bucket) {
+		return index(bucket) == index ? count(bucket) : 0;
+	}
+
+	private long[] buckets() {
+		final long[] buckets = new long[_buckets.length()];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = _buckets.get(i);
+		}
+		return buckets;
+	}
+
+	/**
+	 * @return one value per bucket indexed as in {@link HourlyCounterBean},
+	 *         0 for buckets of outdated time indexes
+	 */
+	private int[] toArray(final long[] buckets, final int now) {
+		final int[] array = new int[buckets.length];
+		for (int offset = 0; offset < array.length; offset++) {
+			final int index = now - offset;
+			array[slot(index)] = count(index, buckets[slot(index)]);
+		}
+		return array;
+	}
+
+	/**
+	 * max val of previous hours (getCount() might return a greater value)
+	 */
+	public int getMax() {
+		return max(buckets(), calcIndex());
+	}
+
+	/**
+	 * min val of previous hours (getCount() might return a lower value)
+	 */
+	public int getMin() {
+		return min(buckets(), calcIndex());
+	}
+
+	/**
+	 * @return max of all buckets before <code>now</code>, including those
+	 *         outside of the current time window
+	 */
+	private int max(final long[] buckets, final int now) {
+		int max = _max.get();
+		for (final long bucket : buckets) {
+			if (index(bucket) < now) {
+				max = Math.max(max, count(bucket));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @return min of all non-empty buckets before <code>now</code>, including
+	 *         those outside of the current time window
+	 */
+	private int min(final long[] buckets, final int now) {
+		int min = _min.get();
+		for (final long bucket : buckets) {
+			final int val = count(bucket);
+			if (index(bucket) < now && val != 0 && (min == 0 || val < min)) {
+				min = val;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * @return counts, oldest first
+	 */
+	public int[] getData() {
+		final int now = calcIndex();
+		final int[] array = toArray(buckets(), now);
+
+		final int[] data = new int[array.length];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = array[slot(now - (data.length - (i + 1)))];
+		}
+		return data;
+	}
+
+	public HourlyCounterBean toHourlyCounterBean() {
+		final int now = calcIndex();
+		final long[] buckets = buckets();
+		return new HourlyCounterBean(toArray(buckets, now), now, _granularity, _hours, max(buckets, now), min(
+				buckets, now));
+	}
+
+	/**
+	 * write title and binary representation of {@link #toHourlyCounterBean()}
+	 */
+	public void write(final OutputStream out) throws IOException {
+		VarIntUtils.writeString(_title, out);
+		toHourlyCounterBean().write(out);
+	}
+
+	/**
+	 * @see #write(OutputStream)
+	 */
+	public static ConcurrentHourlyCounter read(final InputStream in) throws IOException {
+		return read(in, SystemClock.INSTANCE);
+	}
+
+	public static ConcurrentHourlyCounter read(final InputStream in, final IClock clock) throws IOException {
+		final String title = VarIntUtils.readString(in);
+		final ConcurrentHourlyCounter counter = new ConcurrentHourlyCounter(HourlyCounterBean.read(in), clock);
+		counter.setTitle(title);
+		return counter;
+	}
+
+	private int slot(final int index) {
+		return index % _buckets.length();
+	}
+
+	private static long bucket(final int index, final int count) {
+		return (long) index << 32 | count & 0xFFFFFFFFL;
+	}
+
+	private static int index(final long bucket) {
+		return (int) (bucket >>> 32);
+	}
+
+	private static int count(final long bucket) {
+		return (int) bucket;
+	}
+
+	/**
+	 * @return saturated sum, overflow must not touch the time index
+	 */
+	private static int add(final int a, final int b) {
+		final int sum = a + b;
+		return sum < 0 ? Integer.MAX_VALUE : sum;
+	}
+
+	private int calcIndex() {
+		return (int) (currentMillis() / (_granularity * 60000L));
+	}
+
+	// mock this method for unit testing
+	protected long currentMillis() {
+		return _clock.currentTimeMillis();
+	}
+
+	public int getHours() {
+		return _hours;
+	}
+
+	public int getGranularity() {
+		return _granularity;
+	}
+
+	@Override
+	public String getTitle() {
+		return _title;
+	}
+
+	public void setTitle(final String title) {
+		_title = title;
+	}
+
+	private static int checkGranularity(final int granularity) {
+		if (60 % granularity != 0) {
+			throw new IllegalArgumentException(
+					"60 mod granularity must be 0 (i.e. 60, 30, 20, 15, 12, 10, 6, 5, 4, 3, 2, 1)");
+		}
+		return granularity;
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import at.molindo.utils.io.CharsetUtils;
+import at.molindo.utils.io.StreamUtils;
+
+/**
+ * appends each {@link MetricsSnapshot} as a single line to a file. The file is
+ * opened for each export, i.e. it may be rotated or deleted at any time.
+ */
+public class FileMetricsSink implements IMetricsSink {
+
+	private final File _file;
+
+	public FileMetricsSink(final File file) {
+		if (file == null) {
+			throw new NullPointerException("file");
+		}
+		_file = file;
+	}
+
+	@Override
+	public synchronized void export(final MetricsSnapshot snapshot) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(_file, true), CharsetUtils.UTF_8);
+		try {
+			writer.write(snapshot.toString());
+			writer.write('\n');
+			// report failures to flush
+			writer.close();
+		} finally {
+			// no-op unless writing failed
+			StreamUtils.close(writer);
+		}
+	}
+
+	public File getFile() {
+		return _file;
+	}
+}
@@ -15,8 +15,17 @@
  */
 package at.molindo.utils.metric;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import at.molindo.utils.io.VarIntUtils;
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
 @XmlJavaTypeAdapter(HourlyCounterAdapter.class)
 public class HourlyCounter implements ICounter {
 
@@ -35,6 +44,11 @@ public class HourlyCounter implements ICounter {
 
 	private String _title;
 
+	/**
+	 * not final, missing in instances serialized by older versions
+	 */
+	private IClock _clock;
+
 	public HourlyCounter() {
 		this(DEFAULT_HOURS, DEFAULT_GRANULARITY);
 	}
@@ -44,6 +58,14 @@ public class HourlyCounter implements ICounter {
 	}
 
 	public HourlyCounter(final int hours, final int granularity) {
+		this(hours, granularity, SystemClock.INSTANCE);
+	}
+
+	public HourlyCounter(final int hours, final int granularity, final IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_clock = clock;
 		_hours = hours;
 		_granularity = checkGranularity(granularity);
 
@@ -59,16 +81,25 @@ public class HourlyCounter implements ICounter {
 			_max = hc._max;
 			_min = hc._min;
 			_granularity = hc._granularity;
+			_clock = hc._clock;
 		}
 	}
 
 	public HourlyCounter(final HourlyCounterBean hourlyCounterBean) {
+		this(hourlyCounterBean, SystemClock.INSTANCE);
+	}
+
+	public HourlyCounter(final HourlyCounterBean hourlyCounterBean, final IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
 		_array = hourlyCounterBean.getArray();
 		_currentIndex = hourlyCounterBean.getCurrentIndex();
 		_hours = hourlyCounterBean.getHours();
 		_max = hourlyCounterBean.getMax();
 		_min = hourlyCounterBean.getMin();
 		_granularity = hourlyCounterBean.getGranularity();
+		_clock = clock;
 	}
 
 	@Override
@@ -140,7 +171,14 @@ public class HourlyCounter implements ICounter {
 	}
 
 	private int calcIndex() {
-		return (int) (System.currentTimeMillis() / (_granularity * 60000L));
+		return (int) (_clock.currentTimeMillis() / (_granularity * 60000L));
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (_clock == null) {
+			_clock = SystemClock.INSTANCE;
+		}
 	}
 
 	@Override
@@ -193,4 +231,30 @@ public class HourlyCounter implements ICounter {
 	public HourlyCounterBean toHourlyCounterBean() {
 		return new HourlyCounterBean(_array, _currentIndex, _granularity, _hours, _max, _min);
 	}
+
+	/**
+	 * write title and binary representation of {@link #toHourlyCounterBean()}
+	 */
+	public void write(final OutputStream out) throws IOException {
+		final HourlyCounterBean bean;
+		synchronized (this) {
+			bean = new HourlyCounterBean(_array.clone(), _currentIndex, _granularity, _hours, _max, _min);
+		}
+		VarIntUtils.writeString(_title, out);
+		bean.write(out);
+	}
+
+	/**
+	 * @see #write(OutputStream)
+	 */
+	public static HourlyCounter read(final InputStream in) throws IOException {
+		return read(in, SystemClock.INSTANCE);
+	}
+
+	public static HourlyCounter read(final InputStream in, final IClock clock) throws IOException {
+		final String title = VarIntUtils.readString(in);
+		final HourlyCounter counter = new HourlyCounter(HourlyCounterBean.read(in), clock);
+		counter.setTitle(title);
+		return counter;
+	}
 }
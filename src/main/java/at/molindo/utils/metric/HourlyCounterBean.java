@@ -15,20 +15,20 @@
  */
 package at.molindo.utils.metric;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlTransient;
 
-import at.molindo.utils.collections.IteratorUtils;
-import at.molindo.utils.data.Function;
-import at.molindo.utils.data.PrimitiveUtils;
-import at.molindo.utils.data.StringUtils;
+import at.molindo.utils.io.VarIntUtils;
 
 @XmlAccessorType(XmlAccessType.PROPERTY)
 public class HourlyCounterBean {
-	private static final String DELIM = " ";
+	private static final char DELIM = ' ';
+	private static final byte VERSION = 1;
 	private int[] _array;
 	private int _currentIndex;
 	private int _granularity;
@@ -36,18 +36,39 @@ public class HourlyCounterBean {
 	private int _max;
 	private int _min;
 
-	private static int[] splitInts(String valueString, String delim) {
-		Iterable<Integer> values = IteratorUtils.transform(StringUtils.split(valueString, delim),
-				new Function<String, Integer>() {
-
-					@Override
-					public Integer apply(String input) throws NumberFormatException {
-						return StringUtils.empty(input) ? 0 : Integer.valueOf(input);
-					}
-
-				});
-
-		return PrimitiveUtils.primitive(IteratorUtils.list(values), 0);
+	/**
+	 * parse delimited ints without boxing, empty values are 0
+	 */
+	private static int[] splitInts(final String valueString, final char delim) {
+		int count = 1;
+		for (int i = 0; i < valueString.length(); i++) {
+			if (valueString.charAt(i) == delim) {
+				count++;
+			}
+		}
+
+		final int[] values = new int[count];
+		int start = 0;
+		for (int i = 0; i < count; i++) {
+			int end = valueString.indexOf(delim, start);
+			if (end == -1) {
+				end = valueString.length();
+			}
+			values[i] = start == end ? 0 : Integer.parseInt(valueString.substring(start, end));
+			start = end + 1;
+		}
+		return values;
+	}
+
+	private static String joinInts(final int[] values, final char delim) {
+		final StringBuilder buf = new StringBuilder(values.length * 4);
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				buf.append(delim);
+			}
+			buf.append(values[i]);
+		}
+		return buf.toString();
 	}
 
 	public HourlyCounterBean() {
@@ -63,17 +84,86 @@ public class HourlyCounterBean {
 		setMin(min);
 	}
 
+	/**
+	 * write binary representation. Values are written in chronological order,
+	 * each as zigzag varint of the difference to its predecessor.
+	 */
+	public void write(final OutputStream out) throws IOException {
+		out.write(VERSION);
+		VarIntUtils.write(_hours, out);
+		VarIntUtils.write(_granularity, out);
+		VarIntUtils.writeSigned(_currentIndex, out);
+		VarIntUtils.writeSigned(_max, out);
+		VarIntUtils.writeSigned(_min, out);
+
+		if (_array == null) {
+			VarIntUtils.write(0, out);
+		} else {
+			VarIntUtils.write(_array.length + 1L, out);
+			int prev = 0;
+			for (int offset = _array.length - 1; offset >= 0; offset--) {
+				final int val = _array[index(_currentIndex - offset, _array.length)];
+				VarIntUtils.writeSigned((long) val - prev, out);
+				prev = val;
+			}
+		}
+	}
+
+	/**
+	 * @see #write(OutputStream)
+	 */
+	public static HourlyCounterBean read(final InputStream in) throws IOException {
+		final int version = in.read();
+		if (version != VERSION) {
+			throw new IOException("unsupported version " + version);
+		}
+
+		final HourlyCounterBean bean = new HourlyCounterBean();
+		bean.setHours(readInt(VarIntUtils.read(in)));
+		bean.setGranularity(readInt(VarIntUtils.read(in)));
+		bean.setCurrentIndex(readInt(VarIntUtils.readSigned(in)));
+		bean.setMax(readInt(VarIntUtils.readSigned(in)));
+		bean.setMin(readInt(VarIntUtils.readSigned(in)));
+
+		final long length = VarIntUtils.read(in) - 1;
+		if (length >= 0) {
+			final int[] array = new int[readInt(length)];
+			long val = 0;
+			for (int offset = array.length - 1; offset >= 0; offset--) {
+				val += VarIntUtils.readSigned(in);
+				array[index(bean.getCurrentIndex() - offset, array.length)] = readInt(val);
+			}
+			bean.setArray(array);
+		}
+		return bean;
+	}
+
+	private static int index(final int index, final int length) {
+		return (index % length + length) % length;
+	}
+
+	private static int readInt(final long value) throws IOException {
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new IOException("value out of range: " + value);
+		}
+		return (int) value;
+	}
+
 	public HourlyCounter toHourlyCounter() {
 		return new HourlyCounter(this);
 	}
 
+	public ConcurrentHourlyCounter toConcurrentHourlyCounter() {
+		return new ConcurrentHourlyCounter(this);
+	}
+
 	@XmlTransient
 	public int[] getArray() {
 		return _array;
 	}
 
 	public String getValues() {
-		return _array == null ? null : StringUtils.join(DELIM, Arrays.asList(PrimitiveUtils.object(_array)));
+		return _array == null ? null : joinInts(_array, DELIM);
 	}
 
 	public int getCurrentIndex() {
@@ -0,0 +1,45 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * logs each {@link MetricsSnapshot} as a single line at info level
+ */
+public class LogMetricsSink implements IMetricsSink {
+
+	private final Logger _log;
+
+	public LogMetricsSink() {
+		this(LoggerFactory.getLogger(MetricsRegistry.class));
+	}
+
+	public LogMetricsSink(final Logger log) {
+		if (log == null) {
+			throw new NullPointerException("log");
+		}
+		_log = log;
+	}
+
+	@Override
+	public void export(final MetricsSnapshot snapshot) {
+		if (_log.isInfoEnabled()) {
+			_log.info(snapshot.toString());
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import at.molindo.utils.metric.percentile.IIntervalPercentileCounter;
+import at.molindo.utils.metric.percentile.IPercentileCounter;
+import at.molindo.utils.metric.percentile.PercentileSnapshot;
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * thread-safe registry of named {@link ICounter}s and
+ * {@link IPercentileCounter}s. {@link #export()} takes a
+ * {@link MetricsSnapshot} of all metrics and passes it to all registered
+ * {@link IMetricsSink}s, either on demand or periodically from a daemon thread
+ * after {@link #start(long, TimeUnit)}.
+ */
+public class MetricsRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+	private final ConcurrentHashMap<String, ICounter> _counters = new ConcurrentHashMap<String, ICounter>();
+	private final ConcurrentHashMap<String, IPercentileCounter> _percentileCounters = new ConcurrentHashMap<String, IPercentileCounter>();
+	private final List<IMetricsSink> _sinks = new CopyOnWriteArrayList<IMetricsSink>();
+	private final IClock _clock;
+
+	private ScheduledExecutorService _scheduler;
+
+	public MetricsRegistry() {
+		this(SystemClock.INSTANCE);
+	}
+
+	/**
+	 * @param clock
+	 *            clock used for timestamps of snapshots
+	 */
+	public MetricsRegistry(final IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_clock = clock;
+	}
+
+	/**
+	 * @return <code>counter</code>
+	 * @throws IllegalArgumentException
+	 *             if a metric with this name is already registered
+	 */
+	public synchronized <C extends ICounter> C register(final String name, final C counter) {
+		checkName(name);
+		if (counter == null) {
+			throw new NullPointerException("counter");
+		}
+		_counters.put(name, counter);
+		return counter;
+	}
+
+	/**
+	 * @return <code>counter</code>
+	 * @throws IllegalArgumentException
+	 *             if a metric with this name is already registered
+	 */
+	public synchronized <C extends IPercentileCounter> C register(final String name, final C counter) {
+		checkName(name);
+		if (counter == null) {
+			throw new NullPointerException("counter");
+		}
+		_percentileCounters.put(name, counter);
+		return counter;
+	}
+
+	private void checkName(final String name) {
+		if (name == null) {
+			throw new NullPointerException("name");
+		}
+		if (_counters.containsKey(name) || _percentileCounters.containsKey(name)) {
+			throw new IllegalArgumentException("metric already registered: " + name);
+		}
+	}
+
+	/**
+	 * @return true if a metric was removed
+	 */
+	public synchronized boolean unregister(final String name) {
+		return _counters.remove(name) != null | _percentileCounters.remove(name) != null;
+	}
+
+	/**
+	 * @return counter or null if not registered
+	 */
+	public ICounter getCounter(final String name) {
+		return _counters.get(name);
+	}
+
+	/**
+	 * @return counter or null if not registered
+	 */
+	public IPercentileCounter getPercentileCounter(final String name) {
+		return _percentileCounters.get(name);
+	}
+
+	/**
+	 * @return sorted names of all registered metrics
+	 */
+	public SortedSet<String> getNames() {
+		final TreeSet<String> names = new TreeSet<String>(_counters.keySet());
+		names.addAll(_percentileCounters.keySet());
+		return names;
+	}
+
+	/**
+	 * @return {@link Statistics} containing all counters and all
+	 *         {@link IIntervalPercentileCounter}s, e.g. for persistence
+	 */
+	public Statistics toStatistics() {
+		final Statistics statistics = new Statistics();
+		statistics.getCounters().addAll(_counters.values());
+		for (final IPercentileCounter counter : _percentileCounters.values()) {
+			if (counter instanceof IIntervalPercentileCounter) {
+				statistics.getIntervalPercentileCounters().add((IIntervalPercentileCounter) counter);
+			}
+		}
+		return statistics;
+	}
+
+	public void addSink(final IMetricsSink sink) {
+		if (sink == null) {
+			throw new NullPointerException("sink");
+		}
+		_sinks.add(sink);
+	}
+
+	public boolean removeSink(final IMetricsSink sink) {
+		return _sinks.remove(sink);
+	}
+
+	/**
+	 * @return current state of all metrics
+	 */
+	public MetricsSnapshot snapshot() {
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (final Map.Entry<String, ICounter> e : _counters.entrySet()) {
+			counts.put(e.getKey(), e.getValue().getCount());
+		}
+
+		final Map<String, PercentileSnapshot> percentiles = new HashMap<String, PercentileSnapshot>();
+		for (final Map.Entry<String, IPercentileCounter> e : _percentileCounters.entrySet()) {
+			percentiles.put(e.getKey(), e.getValue().toSnapshot());
+		}
+
+		return new MetricsSnapshot(_clock.currentTimeMillis(), counts, percentiles);
+	}
+
+	/**
+	 * take a snapshot and pass it to all sinks. Exceptions of sinks are logged
+	 * but don't affect other sinks.
+	 *
+	 * @return exported snapshot
+	 */
+	public MetricsSnapshot export() {
+		final MetricsSnapshot snapshot = snapshot();
+		for (final IMetricsSink sink : _sinks) {
+			try {
+				sink.export(snapshot);
+			} catch (final Exception e) {
+				log.warn("failed to export metrics to " + sink, e);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * start exporting periodically from a daemon thread
+	 *
+	 * @throws IllegalStateException
+	 *             if already started
+	 */
+	public synchronized void start(final long period, final TimeUnit unit) {
+		if (_scheduler != null) {
+			throw new IllegalStateException("already started");
+		}
+
+		_scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, MetricsRegistry.class.getSimpleName() + "-export");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		_scheduler.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					export();
+				} catch (final RuntimeException e) {
+					// don't cancel future exports
+					log.error("failed to export metrics", e);
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * stop periodic exports, doesn't wait for a running export to complete
+	 */
+	public synchronized void stop() {
+		if (_scheduler != null) {
+			_scheduler.shutdown();
+			_scheduler = null;
+		}
+	}
+
+	public synchronized boolean isStarted() {
+		return _scheduler != null;
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import at.molindo.utils.metric.percentile.Percentile;
+import at.molindo.utils.metric.percentile.PercentileSnapshot;
+
+/**
+ * immutable state of all metrics of a {@link MetricsRegistry} at a point in
+ * time
+ */
+public final class MetricsSnapshot implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long _timestamp;
+	private final SortedMap<String, Integer> _counts;
+	private final SortedMap<String, PercentileSnapshot> _percentiles;
+
+	public MetricsSnapshot(final long timestamp, final Map<String, Integer> counts,
+			final Map<String, PercentileSnapshot> percentiles) {
+		_timestamp = timestamp;
+		_counts = Collections.unmodifiableSortedMap(new TreeMap<String, Integer>(counts));
+		_percentiles = Collections.unmodifiableSortedMap(new TreeMap<String, PercentileSnapshot>(percentiles));
+	}
+
+	/**
+	 * @return time of snapshot in milliseconds since epoch
+	 */
+	public long getTimestamp() {
+		return _timestamp;
+	}
+
+	/**
+	 * @return current count of each {@link ICounter} by name
+	 */
+	public SortedMap<String, Integer> getCounts() {
+		return _counts;
+	}
+
+	/**
+	 * @return snapshot of each percentile counter by name
+	 */
+	public SortedMap<String, PercentileSnapshot> getPercentiles() {
+		return _percentiles;
+	}
+
+	/**
+	 * @return single line representation, e.g.
+	 *         <code>1466000000000 requests=42 latency=[40 (95.24%) &lt;= 10 ms, 42 (100.00%) &lt;= 100 ms] 42 total</code>
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder buf = new StringBuilder();
+		buf.append(_timestamp);
+
+		for (final Map.Entry<String, Integer> e : _counts.entrySet()) {
+			buf.append(' ').append(e.getKey()).append('=').append(e.getValue());
+		}
+
+		for (final Map.Entry<String, PercentileSnapshot> e : _percentiles.entrySet()) {
+			buf.append(' ').append(e.getKey()).append("=[");
+			boolean first = true;
+			for (final Percentile p : e.getValue()) {
+				if (!first) {
+					buf.append(", ");
+				}
+				buf.append(p);
+				first = false;
+			}
+			buf.append("] ").append(e.getValue().getTotal()).append(" total");
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import at.molindo.utils.collections.CircularQueue;
+
+/**
+ * keeps the most recent {@link MetricsSnapshot}s in memory, e.g. for tests or
+ * to serve recent history
+ */
+public class RingMetricsSink implements IMetricsSink {
+
+	private final CircularQueue<MetricsSnapshot> _snapshots;
+
+	public RingMetricsSink(final int capacity) {
+		_snapshots = new CircularQueue<MetricsSnapshot>(capacity);
+	}
+
+	@Override
+	public synchronized void export(final MetricsSnapshot snapshot) {
+		_snapshots.add(snapshot);
+	}
+
+	/**
+	 * @return copy of all snapshots, oldest first
+	 */
+	public synchronized List<MetricsSnapshot> getSnapshots() {
+		return new ArrayList<MetricsSnapshot>(_snapshots);
+	}
+
+	/**
+	 * @return most recent snapshot or null if none
+	 */
+	public synchronized MetricsSnapshot getLast() {
+		MetricsSnapshot last = null;
+		for (final MetricsSnapshot snapshot : _snapshots) {
+			last = snapshot;
+		}
+		return last;
+	}
+
+	public synchronized void clear() {
+		_snapshots.clear();
+	}
+}
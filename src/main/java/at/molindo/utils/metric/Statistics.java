@@ -15,15 +15,30 @@
  */
 package at.molindo.utils.metric;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 
+import at.molindo.utils.io.ByteBufferInputStream;
+import at.molindo.utils.io.ByteBufferOutputStream;
+import at.molindo.utils.io.VarIntUtils;
 import at.molindo.utils.metric.percentile.IIntervalPercentileCounter;
+import at.molindo.utils.metric.percentile.IntervalPercentileCounter;
 
 public class Statistics implements Serializable {
 	private static final long serialVersionUID = 1L;
 
+	private static final byte VERSION = 1;
+
+	private static final byte HOURLY_COUNTER = 1;
+	private static final byte CONCURRENT_HOURLY_COUNTER = 2;
+	private static final byte INTERVAL_PERCENTILE_COUNTER = 1;
+
 	private List<ICounter> _counters;
 	private List<IIntervalPercentileCounter> _intervalPercentileCounters;
 
@@ -49,4 +64,118 @@ public class Statistics implements Serializable {
 		_intervalPercentileCounters = percentileCounters;
 	}
 
+	/**
+	 * write binary representation of all counters, supports
+	 * {@link HourlyCounter}, {@link ConcurrentHourlyCounter} and
+	 * {@link IntervalPercentileCounter}
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a counter isn't supported
+	 */
+	public void write(final OutputStream out) throws IOException {
+		final List<ICounter> counters = getCounters();
+		final List<IIntervalPercentileCounter> percentileCounters = getIntervalPercentileCounters();
+
+		out.write(VERSION);
+
+		VarIntUtils.write(counters.size(), out);
+		for (final ICounter counter : counters) {
+			if (counter instanceof HourlyCounter) {
+				out.write(HOURLY_COUNTER);
+				((HourlyCounter) counter).write(out);
+			} else if (counter instanceof ConcurrentHourlyCounter) {
+				out.write(CONCURRENT_HOURLY_COUNTER);
+				((ConcurrentHourlyCounter) counter).write(out);
+			} else {
+				throw new IllegalArgumentException("unsupported counter type " + counter.getClass().getName());
+			}
+		}
+
+		VarIntUtils.write(percentileCounters.size(), out);
+		for (final IIntervalPercentileCounter counter : percentileCounters) {
+			if (counter instanceof IntervalPercentileCounter) {
+				out.write(INTERVAL_PERCENTILE_COUNTER);
+				((IntervalPercentileCounter) counter).write(out);
+			} else {
+				throw new IllegalArgumentException("unsupported percentile counter type "
+						+ counter.getClass().getName());
+			}
+		}
+	}
+
+	/**
+	 * @throws java.nio.BufferOverflowException
+	 *             if <code>buf</code> is too small
+	 * @see #write(OutputStream)
+	 */
+	public void write(final ByteBuffer buf) {
+		try {
+			write(new ByteBufferOutputStream(buf));
+		} catch (final IOException e) {
+			throw new RuntimeException("failed to write to ByteBuffer", e);
+		}
+	}
+
+	public byte[] toByteArray() {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			write(out);
+		} catch (final IOException e) {
+			throw new RuntimeException("failed to write to ByteArrayOutputStream", e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @see #write(OutputStream)
+	 */
+	public static Statistics read(final InputStream in) throws IOException {
+		final int version = in.read();
+		if (version != VERSION) {
+			throw new IOException("unsupported version " + version);
+		}
+
+		final Statistics statistics = new Statistics();
+
+		final long counters = VarIntUtils.read(in);
+		for (long i = 0; i < counters; i++) {
+			final int type = in.read();
+			if (type == HOURLY_COUNTER) {
+				statistics.getCounters().add(HourlyCounter.read(in));
+			} else if (type == CONCURRENT_HOURLY_COUNTER) {
+				statistics.getCounters().add(ConcurrentHourlyCounter.read(in));
+			} else {
+				throw new IOException("unsupported counter type " + type);
+			}
+		}
+
+		final long percentileCounters = VarIntUtils.read(in);
+		for (long i = 0; i < percentileCounters; i++) {
+			final int type = in.read();
+			if (type == INTERVAL_PERCENTILE_COUNTER) {
+				statistics.getIntervalPercentileCounters().add(IntervalPercentileCounter.read(in));
+			} else {
+				throw new IOException("unsupported percentile counter type " + type);
+			}
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if <code>buf</code> doesn't contain valid statistics
+	 * @see #read(InputStream)
+	 */
+	public static Statistics read(final ByteBuffer buf) {
+		try {
+			return read(new ByteBufferInputStream(buf));
+		} catch (final IOException e) {
+			throw new IllegalArgumentException("invalid statistics", e);
+		}
+	}
+
+	public static Statistics fromByteArray(final byte[] bytes) {
+		return read(ByteBuffer.wrap(bytes));
+	}
 }
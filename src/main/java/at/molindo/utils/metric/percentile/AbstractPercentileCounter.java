@@ -0,0 +1,246 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * base class for {@link IPercentileCounter} implementations reporting
+ * {@link Percentile}s for a fixed set of limits
+ */
+public abstract class AbstractPercentileCounter implements IPercentileCounter {
+
+	private static final long serialVersionUID = 1L;
+
+	private IClock _clock = SystemClock.INSTANCE;
+
+	/**
+	 * @return a copy of the sorted limits (in <code>unit</code>, rounded down)
+	 *         reported by {@link #iterator()}
+	 */
+	public abstract long[] getLimits(TimeUnit unit);
+
+	/**
+	 * @return a copy of the sorted limits (in milliseconds, rounded down)
+	 *         reported by {@link #iterator()}
+	 */
+	public int[] getLimits() {
+		final long[] limits = getLimits(TimeUnit.MILLISECONDS);
+		final int[] millis = new int[limits.length];
+		for (int i = 0; i < limits.length; i++) {
+			millis[i] = (int) Math.min(limits[i], Integer.MAX_VALUE);
+		}
+		return millis;
+	}
+
+	/**
+	 * record the time since <code>start</code> with millisecond resolution
+	 *
+	 * @see #recordNanos(long)
+	 */
+	@Override
+	public void increment(final long start) {
+		recordNanos(TimeUnit.MILLISECONDS.toNanos(_clock.currentTimeMillis() - start));
+	}
+
+	@Override
+	public void increment(final int millis) {
+		recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+
+	/**
+	 * add all counts of <code>snapshot</code>, e.g. to restore or aggregate
+	 * state
+	 *
+	 * @throws IllegalArgumentException
+	 *             if limits differ
+	 */
+	public abstract void add(PercentileSnapshot snapshot);
+
+	public IClock getClock() {
+		return _clock;
+	}
+
+	/**
+	 * @param clock
+	 *            clock used by {@link #increment(long)}, set before use
+	 */
+	public void setClock(final IClock clock) {
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_clock = clock;
+	}
+
+	/**
+	 * counters serialized before this class was introduced use the system clock
+	 */
+	private void readObjectNoData() {
+		_clock = SystemClock.INSTANCE;
+	}
+
+	/**
+	 * @return estimated percentile in milliseconds, rounded up
+	 */
+	@Override
+	public int estimatePercentile(final double percentile) {
+		final long nanos = estimatePercentile(percentile, TimeUnit.NANOSECONDS);
+		return nanos == Long.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.min(ceil(nanos, TimeUnit.MILLISECONDS),
+				Integer.MAX_VALUE);
+	}
+
+	@Override
+	public long estimatePercentile(final double percentile, final TimeUnit unit) {
+		return estimatePercentile(this, percentile, unit);
+	}
+
+	@Override
+	public PercentileSnapshot toSnapshot() {
+		return PercentileSnapshot.of(this);
+	}
+
+	@Override
+	public List<Percentile> toList() {
+		final ArrayList<Percentile> list = new ArrayList<Percentile>();
+		for (final Percentile p : this) {
+			list.add(p);
+		}
+		return list;
+	}
+
+	protected String toString(final String name) {
+		final StringBuilder buf = new StringBuilder();
+		buf.append(name).append(": ");
+
+		Percentile last = null;
+		for (final Percentile p : this) {
+			if (last == null || p.getLongSum() != last.getLongSum()) {
+				buf.append(p).append(", ");
+			}
+			last = p;
+		}
+
+		final double remaining = last == null ? 0.0 : 100.0 - last.getPercentage();
+
+		if (Math.abs(remaining) > 0.001) {
+			final long count = last.getLongTotal() - last.getLongSum();
+			buf.append(String.format("%d (%.2f%%) > %s", count, remaining,
+					Percentile.format(last.getLimit(TimeUnit.NANOSECONDS))));
+			buf.append(", ");
+		}
+
+		buf.append(last == null ? 0 : last.getLongTotal()).append(" total");
+
+		return buf.toString();
+	}
+
+	/**
+	 * @return counts of <code>snapshot</code>
+	 * @throws IllegalArgumentException
+	 *             if limits of <code>snapshot</code> differ
+	 */
+	static long[] counts(final long[] limits, final PercentileSnapshot snapshot) {
+		if (!Arrays.equals(limits, snapshot.getLimits(TimeUnit.NANOSECONDS))) {
+			throw new IllegalArgumentException("can't add snapshot with different limits");
+		}
+		return snapshot.getCounts();
+	}
+
+	/**
+	 * @return limit of the first {@link Percentile} covering
+	 *         <code>percentile</code> or {@link Long#MAX_VALUE}
+	 */
+	static long estimatePercentile(final Iterable<Percentile> percentiles, final double percentile,
+			final TimeUnit unit) {
+		if (percentile < 0.0 || percentile > 100.0) {
+			throw new IllegalArgumentException("percentile must be between 0.0 and 100.0, was " + percentile);
+		}
+
+		for (final Percentile p : percentiles) {
+			if (percentile - p.getPercentage() <= 0.0001) {
+				return p.getLimit(unit);
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return index of the first limit >= nanos or limits.length if nanos
+	 *         exceeds all limits
+	 */
+	static int index(final long[] limits, final long nanos) {
+		// binary search
+
+		int low = 0;
+		int high = limits.length - 1;
+		int mid = -1;
+
+		while (low <= high) {
+			mid = (low + high) >>> 1;
+
+			if (limits[mid] < nanos) {
+				low = mid + 1;
+			} else if (limits[mid] > nanos) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return limits[mid] < nanos ? mid + 1 : mid;
+	}
+
+	/**
+	 * @return sorted copy of limits converted to nanoseconds
+	 */
+	static long[] limits(final TimeUnit unit, final int... limits) {
+		if (limits.length == 0) {
+			throw new IllegalArgumentException("at least 1 limit required");
+		}
+
+		final long[] nanos = new long[limits.length];
+		for (int i = 0; i < limits.length; i++) {
+			nanos[i] = unit.toNanos(limits[i]);
+		}
+		Arrays.sort(nanos);
+		return nanos;
+	}
+
+	/**
+	 * @return copy of limits (in nanoseconds) converted to <code>unit</code>
+	 */
+	static long[] limits(final long[] nanos, final TimeUnit unit) {
+		final long[] limits = new long[nanos.length];
+		for (int i = 0; i < nanos.length; i++) {
+			limits[i] = unit.convert(nanos[i], TimeUnit.NANOSECONDS);
+		}
+		return limits;
+	}
+
+	/**
+	 * @return nanos converted to <code>unit</code>, rounded up
+	 */
+	static long ceil(final long nanos, final TimeUnit unit) {
+		final long nanosPerUnit = unit.toNanos(1);
+		return nanos / nanosPerUnit + (nanos % nanosPerUnit > 0 ? 1 : 0);
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import at.molindo.utils.concurrent.StripedLongArray;
+
+/**
+ * thread-safe {@link PercentileCounter} alternative. Each bucket is a
+ * {@link StripedLongArray} counter, i.e. concurrent increments neither contend
+ * nor get lost. Reading (i.e. {@link #iterator()} and {@link #getTotal()})
+ * merges all stripes.
+ *
+ * Memory usage is about <code>(limits + 1) * 8 * stripes</code> bytes, where
+ * the number of stripes defaults to the number of available processors.
+ */
+public class ConcurrentPercentileCounter extends AbstractPercentileCounter {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * limits in nanoseconds
+	 */
+	private final long[] _limits;
+
+	/**
+	 * one counter per limit and one for values exceeding the highest limit.
+	 * the total is the sum of all counters
+	 */
+	private final StripedLongArray _counts;
+
+	private volatile String _title;
+
+	public ConcurrentPercentileCounter(final int... limits) {
+		this(TimeUnit.MILLISECONDS, limits);
+	}
+
+	public ConcurrentPercentileCounter(final TimeUnit unit, final int... limits) {
+		this(limits(unit, limits));
+	}
+
+	private ConcurrentPercentileCounter(final long[] limits) {
+		_limits = limits;
+		_counts = new StripedLongArray(_limits.length + 1);
+	}
+
+	/**
+	 * @return a factory for {@link ConcurrentPercentileCounter}s using the given
+	 *         limits
+	 */
+	public static IPercentileCounterFactory factory(final TimeUnit unit, final int... limits) {
+		return new Factory(limits(unit, limits));
+	}
+
+	@Override
+	public void recordNanos(final long nanos) {
+		_counts.increment(index(_limits, nanos));
+	}
+
+	@Override
+	public void add(final PercentileSnapshot snapshot) {
+		final long[] counts = counts(_limits, snapshot);
+		for (int i = 0; i < counts.length; i++) {
+			_counts.add(i, counts[i]);
+		}
+	}
+
+	/**
+	 * @return total saturated to {@link Integer#MAX_VALUE}
+	 * @see #getLongTotal()
+	 */
+	@Override
+	public int getTotal() {
+		return (int) Math.min(getLongTotal(), Integer.MAX_VALUE);
+	}
+
+	public long getLongTotal() {
+		return _counts.sum();
+	}
+
+	/**
+	 * not atomic, concurrent increments might survive
+	 */
+	@Override
+	public void clear() {
+		_counts.reset();
+	}
+
+	@Override
+	public String toString() {
+		return toString(ConcurrentPercentileCounter.class.getSimpleName());
+	}
+
+	@Override
+	public Iterator<Percentile> iterator() {
+		// merge stripes once, total is consistent with counts
+		final long[] counts = _counts.toArray();
+		long total = 0;
+		for (final long count : counts) {
+			total += count;
+		}
+		final long snapshotTotal = total;
+
+		return new Iterator<Percentile>() {
+
+			private int _i = 0;
+			private long _sum = 0;
+
+			@Override
+			public boolean hasNext() {
+				return _i < _limits.length;
+			}
+
+			@Override
+			public Percentile next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				_sum += counts[_i];
+				final Percentile p = new Percentile(_sum, snapshotTotal, _limits[_i], TimeUnit.NANOSECONDS);
+				_i++;
+				return p;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public long[] getLimits(final TimeUnit unit) {
+		return limits(_limits, unit);
+	}
+
+	@Override
+	public String getTitle() {
+		return _title;
+	}
+
+	public void setTitle(final String title) {
+		_title = title;
+	}
+
+	static final class Factory implements IPercentileCounterFactory {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] _limits;
+
+		Factory(final long[] limits) {
+			_limits = limits;
+		}
+
+		@Override
+		public ConcurrentPercentileCounter newPercentileCounter() {
+			return new ConcurrentPercentileCounter(_limits);
+		}
+	}
+}
@@ -0,0 +1,400 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * thread-safe {@link IPercentileCounter} backed by a log-linear bucketed
+ * histogram (following the layout of HdrHistogram): values are recorded with
+ * a configurable number of significant decimal digits, i.e. a relative error
+ * of at most 10<sup>-digits</sup>, over the whole range from 1 to
+ * <code>highestTrackableValue</code>. Recording is allocation free and costs a
+ * single atomic increment.
+ *
+ * Values are recorded in the {@link TimeUnit} passed to the constructor (e.g.
+ * {@link TimeUnit#MICROSECONDS}). Reporting via {@link #iterator()} uses the
+ * given limits (in milliseconds) to stay compatible with other
+ * {@link IPercentileCounter}s, while
+ * {@link #estimatePercentile(double, TimeUnit)} and
+ * {@link #getValueAtPercentile(double)} return arbitrary quantiles.
+ *
+ * Memory usage grows linearly with 10<sup>digits</sup> and logarithmically
+ * with <code>highestTrackableValue</code>, e.g. 184 KiB for 3 digits up to 1
+ * hour in microseconds and 26 KiB for 2 digits.
+ */
+public class HistogramPercentileCounter extends AbstractPercentileCounter {
+
+	private static final long serialVersionUID = 1L;
+
+	private final TimeUnit _unit;
+	private final long _highestTrackableValue;
+	private final int _significantDigits;
+	/**
+	 * limits in nanoseconds
+	 */
+	private final long[] _limits;
+
+	private final int _subBucketHalfCountMagnitude;
+	private final int _subBucketHalfCount;
+	private final long _subBucketMask;
+	private final int _leadingZeroCountBase;
+
+	private final AtomicLongArray _counts;
+
+	private volatile String _title;
+
+	/**
+	 * @param unit
+	 *            unit of recorded values
+	 * @param highestTrackableValue
+	 *            highest value to track (in <code>unit</code>), higher values
+	 *            are recorded as <code>highestTrackableValue</code>
+	 * @param significantDigits
+	 *            number of significant decimal digits (1 to 5)
+	 * @param limits
+	 *            limits in milliseconds used for {@link #iterator()}
+	 */
+	public HistogramPercentileCounter(final TimeUnit unit, final long highestTrackableValue,
+			final int significantDigits, final int... limits) {
+		this(unit, highestTrackableValue, significantDigits, limits(TimeUnit.MILLISECONDS, limits));
+	}
+
+	private HistogramPercentileCounter(final TimeUnit unit, final long highestTrackableValue,
+			final int significantDigits, final long[] limits) {
+		if (unit == null) {
+			throw new NullPointerException("unit");
+		}
+		if (significantDigits < 1 || significantDigits > 5) {
+			throw new IllegalArgumentException("significantDigits must be between 1 and 5, was " + significantDigits);
+		}
+		if (highestTrackableValue < 2) {
+			throw new IllegalArgumentException("highestTrackableValue must be >= 2, was " + highestTrackableValue);
+		}
+
+		_unit = unit;
+		_highestTrackableValue = highestTrackableValue;
+		_significantDigits = significantDigits;
+		_limits = limits;
+
+		// values up to this are recorded with single unit resolution
+		final long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+		final int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution)
+				/ Math.log(2));
+		final int subBucketCount = 1 << subBucketCountMagnitude;
+
+		_subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+		_subBucketHalfCount = subBucketCount / 2;
+		_subBucketMask = subBucketCount - 1;
+		_leadingZeroCountBase = 64 - subBucketCountMagnitude;
+
+		// each bucket doubles the covered range
+		long smallestUntrackableValue = subBucketCount;
+		int bucketCount = 1;
+		while (smallestUntrackableValue <= highestTrackableValue) {
+			if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+				bucketCount++;
+				break;
+			}
+			smallestUntrackableValue <<= 1;
+			bucketCount++;
+		}
+
+		_counts = new AtomicLongArray((bucketCount + 1) * _subBucketHalfCount);
+	}
+
+	/**
+	 * @return a factory for {@link HistogramPercentileCounter}s using the
+	 *         given configuration
+	 * @see #HistogramPercentileCounter(TimeUnit, long, int, int...)
+	 */
+	public static IPercentileCounterFactory factory(final TimeUnit unit, final long highestTrackableValue,
+			final int significantDigits, final int... limits) {
+		return new Factory(unit, highestTrackableValue, significantDigits, limits(TimeUnit.MILLISECONDS, limits));
+	}
+
+	/**
+	 * record a value
+	 *
+	 * @param value
+	 *            value in {@link #getUnit()}, negative values are recorded as
+	 *            0, values exceeding {@link #getHighestTrackableValue()} as
+	 *            {@link #getHighestTrackableValue()}
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > _highestTrackableValue) {
+			value = _highestTrackableValue;
+		}
+		_counts.incrementAndGet(countsIndex(value));
+	}
+
+	@Override
+	public void recordNanos(final long nanos) {
+		record(_unit.convert(nanos, TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * adds counts of each limit at the value of the limit and counts exceeding
+	 * the highest limit at {@link #getHighestTrackableValue()}, i.e.
+	 * percentiles at limits are preserved while others are approximated
+	 */
+	@Override
+	public void add(final PercentileSnapshot snapshot) {
+		final long[] counts = counts(_limits, snapshot);
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				final long value = i < _limits.length ? _unit.convert(_limits[i], TimeUnit.NANOSECONDS)
+						: _highestTrackableValue;
+				_counts.addAndGet(countsIndex(Math.max(0, Math.min(value, _highestTrackableValue))), counts[i]);
+			}
+		}
+	}
+
+	private int countsIndex(final long value) {
+		final int bucketIndex = _leadingZeroCountBase - Long.numberOfLeadingZeros(value | _subBucketMask);
+		final int subBucketIndex = (int) (value >>> bucketIndex);
+		return (bucketIndex + 1 << _subBucketHalfCountMagnitude) + subBucketIndex - _subBucketHalfCount;
+	}
+
+	/**
+	 * @return lowest value recorded at <code>index</code>
+	 */
+	private long lowestValue(final int index) {
+		int bucketIndex = (index >> _subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & _subBucketHalfCount - 1) + _subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= _subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		return (long) subBucketIndex << bucketIndex;
+	}
+
+	/**
+	 * @return highest value recorded at <code>index</code>
+	 */
+	private long highestValue(final int index) {
+		final int bucketIndex = Math.max(0, (index >> _subBucketHalfCountMagnitude) - 1);
+		return Math.min(lowestValue(index) + (1L << bucketIndex) - 1, _highestTrackableValue);
+	}
+
+	/**
+	 * @return a copy of all bucket counts
+	 */
+	long[] counts() {
+		final long[] counts = new long[_counts.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = _counts.get(i);
+		}
+		return counts;
+	}
+
+	/**
+	 * add <code>count</code> to the bucket at <code>index</code> of
+	 * {@link #counts()}, e.g. to restore encoded counts
+	 *
+	 * @throws IllegalArgumentException
+	 *             if index or count is illegal
+	 */
+	void addCount(final int index, final long count) {
+		if (index < 0 || index >= _counts.length()) {
+			throw new IllegalArgumentException("index must be between 0 and " + (_counts.length() - 1) + ", was "
+					+ index);
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException("count must be >= 0, was " + count);
+		}
+		_counts.addAndGet(index, count);
+	}
+
+	private static long total(final long[] counts) {
+		long total = 0;
+		for (final long count : counts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return total saturated to {@link Integer#MAX_VALUE}
+	 * @see #getLongTotal()
+	 */
+	@Override
+	public int getTotal() {
+		return (int) Math.min(getLongTotal(), Integer.MAX_VALUE);
+	}
+
+	public long getLongTotal() {
+		long total = 0;
+		for (int i = 0; i < _counts.length(); i++) {
+			total += _counts.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0.0 and 100.0
+	 * @return highest value (in {@link #getUnit()}) that <code>percentile</code>
+	 *         of all recorded values don't exceed (within the configured
+	 *         precision) or 0 if empty
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (percentile < 0.0 || percentile > 100.0) {
+			throw new IllegalArgumentException("percentile must be between 0.0 and 100.0, was " + percentile);
+		}
+
+		final long[] counts = counts();
+		final long total = total(counts);
+		if (total == 0) {
+			return 0;
+		}
+
+		final long countAtPercentile = Math.max(1, (long) (percentile / 100.0 * total + 0.5));
+
+		long sum = 0;
+		for (int i = 0; i < counts.length; i++) {
+			sum += counts[i];
+			if (sum >= countAtPercentile) {
+				return highestValue(i);
+			}
+		}
+		return _highestTrackableValue;
+	}
+
+	/**
+	 * @return {@link #getValueAtPercentile(double)} in <code>unit</code>,
+	 *         rounded up
+	 */
+	@Override
+	public long estimatePercentile(final double percentile, final TimeUnit unit) {
+		return ceil(_unit.toNanos(getValueAtPercentile(percentile)), unit);
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < _counts.length(); i++) {
+			_counts.set(i, 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return toString(HistogramPercentileCounter.class.getSimpleName());
+	}
+
+	@Override
+	public Iterator<Percentile> iterator() {
+		// get a copy of current state
+		final long[] counts = counts();
+		final long total = total(counts);
+
+		return new Iterator<Percentile>() {
+
+			private int _i = 0;
+			private int _index = 0;
+			private long _sum = 0;
+
+			@Override
+			public boolean hasNext() {
+				return _i < _limits.length;
+			}
+
+			@Override
+			public Percentile next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				final long limit = _unit.convert(_limits[_i], TimeUnit.NANOSECONDS);
+				while (_index < counts.length && lowestValue(_index) <= limit) {
+					_sum += counts[_index++];
+				}
+
+				return new Percentile(_sum, total, _limits[_i++], TimeUnit.NANOSECONDS);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public long[] getLimits(final TimeUnit unit) {
+		return limits(_limits, unit);
+	}
+
+	public TimeUnit getUnit() {
+		return _unit;
+	}
+
+	public long getHighestTrackableValue() {
+		return _highestTrackableValue;
+	}
+
+	public int getSignificantDigits() {
+		return _significantDigits;
+	}
+
+	@Override
+	public String getTitle() {
+		return _title;
+	}
+
+	public void setTitle(final String title) {
+		_title = title;
+	}
+
+	static final class Factory implements IPercentileCounterFactory {
+		private static final long serialVersionUID = 1L;
+
+		private final TimeUnit _unit;
+		private final long _highestTrackableValue;
+		private final int _significantDigits;
+		private final long[] _limits;
+
+		Factory(final TimeUnit unit, final long highestTrackableValue, final int significantDigits,
+				final long[] limits) {
+			_unit = unit;
+			_highestTrackableValue = highestTrackableValue;
+			_significantDigits = significantDigits;
+			_limits = limits;
+		}
+
+		@Override
+		public HistogramPercentileCounter newPercentileCounter() {
+			return new HistogramPercentileCounter(_unit, _highestTrackableValue, _significantDigits, _limits);
+		}
+
+		TimeUnit getUnit() {
+			return _unit;
+		}
+
+		long getHighestTrackableValue() {
+			return _highestTrackableValue;
+		}
+
+		int getSignificantDigits() {
+			return _significantDigits;
+		}
+	}
+}
@@ -16,11 +16,14 @@
 package at.molindo.utils.metric.percentile;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public interface IIntervalPercentileCounter extends IPercentileCounter {
 
 	int[] getLimits();
 
+	long[] getLimits(TimeUnit unit);
+
 	List<IPercentileCounter> toCountersList();
 
 }
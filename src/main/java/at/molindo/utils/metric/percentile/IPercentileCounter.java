@@ -17,6 +17,7 @@ package at.molindo.utils.metric.percentile;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public interface IPercentileCounter extends Iterable<Percentile>, Serializable {
 
@@ -24,6 +25,13 @@ public interface IPercentileCounter extends Iterable<Percentile>, Serializable {
 
 	void increment(long start);
 
+	/**
+	 * record a duration measured with {@link System#nanoTime()}
+	 *
+	 * @see PercentileTimer
+	 */
+	void recordNanos(long nanos);
+
 	int getTotal();
 
 	void clear();
@@ -32,5 +40,17 @@ public interface IPercentileCounter extends Iterable<Percentile>, Serializable {
 
 	int estimatePercentile(double percentile);
 
+	/**
+	 * @return estimated percentile in <code>unit</code> or
+	 *         {@link Long#MAX_VALUE} if exceeding the highest limit
+	 */
+	long estimatePercentile(double percentile, TimeUnit unit);
+
+	/**
+	 * @return immutable copy of current state, e.g. for merging or
+	 *         transmitting
+	 */
+	PercentileSnapshot toSnapshot();
+
 	String getTitle();
 }
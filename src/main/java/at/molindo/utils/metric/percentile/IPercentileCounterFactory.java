@@ -0,0 +1,33 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.io.Serializable;
+
+import javax.annotation.Nonnull;
+
+/**
+ * creates the per-interval counters of an {@link IntervalPercentileCounter}
+ */
+public interface IPercentileCounterFactory extends Serializable {
+
+	/**
+	 * @return a new, empty counter. All counters created by the same factory
+	 *         must use the same limits.
+	 */
+	@Nonnull
+	AbstractPercentileCounter newPercentileCounter();
+}
@@ -15,21 +15,63 @@
  */
 package at.molindo.utils.metric.percentile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 
+import at.molindo.utils.concurrent.StripedCounter;
+import at.molindo.utils.data.SerializationUtils;
+import at.molindo.utils.io.StreamUtils;
+import at.molindo.utils.io.VarIntUtils;
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * keeps one {@link IPercentileCounter} per interval for a fixed number of
+ * intervals. Unless another factory is given, intervals are backed by a
+ * {@link ConcurrentPercentileCounter}.
+ */
 public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * fields of older versions (without factory and clock, total as int)
+	 * followed by new fields
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("_title", String.class),
+			new ObjectStreamField("_counters", AbstractPercentileCounter[].class),
+			new ObjectStreamField("_total", int.class), new ObjectStreamField("_start", int.class),
+			new ObjectStreamField("_millis", int.class), new ObjectStreamField("_last", int.class),
+			new ObjectStreamField("_longTotal", long.class),
+			new ObjectStreamField("_factory", IPercentileCounterFactory.class),
+			new ObjectStreamField("_clock", IClock.class) };
+
+	private static final byte VERSION = 1;
+
+	private static final byte FACTORY_SERIALIZED = 0;
+	private static final byte FACTORY_PERCENTILE = 1;
+	private static final byte FACTORY_CONCURRENT = 2;
+	private static final byte FACTORY_HISTOGRAM = 3;
+
 	private String _title;
-	private final PercentileCounter[] _counters;
-	private int _total;
-	private final int _start;
-	private final int _millis;
+	private IPercentileCounterFactory _factory;
+	private AbstractPercentileCounter[] _counters;
+	private StripedCounter _total = new StripedCounter();
+	private IClock _clock;
+	private int _start;
+	private int _millis;
 	private volatile int _last;
 
 	public IntervalPercentileCounter(final int hours, final int... limits) {
@@ -42,33 +84,69 @@ public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 
 	public IntervalPercentileCounter(final TimeUnit invervalUnit, final int size, final TimeUnit limitsUnit,
 			final int... limits) {
+		this(invervalUnit, size, ConcurrentPercentileCounter.factory(limitsUnit, limits));
+	}
+
+	public IntervalPercentileCounter(final TimeUnit invervalUnit, final int size,
+			final IPercentileCounterFactory factory) {
+		this(invervalUnit, size, factory, SystemClock.INSTANCE);
+	}
+
+	public IntervalPercentileCounter(final TimeUnit invervalUnit, final int size,
+			final IPercentileCounterFactory factory, final IClock clock) {
+		this((int) invervalUnit.toMillis(1), size, factory, clock);
+	}
+
+	private IntervalPercentileCounter(final int millis, final int size, final IPercentileCounterFactory factory,
+			final IClock clock) {
 		if (size < 1) {
 			throw new IllegalArgumentException("size must be >= 1, was " + size);
 		}
-		_counters = new PercentileCounter[size];
+		if (factory == null) {
+			throw new NullPointerException("factory");
+		}
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_factory = factory;
+		_clock = clock;
+		_counters = new AbstractPercentileCounter[size];
 		for (int i = 0; i < _counters.length; i++) {
-			_counters[i] = new PercentileCounter(limitsUnit, limits);
+			_counters[i] = factory.newPercentileCounter();
 		}
 
-		_millis = (int) invervalUnit.toMillis(1);
+		_millis = millis;
 		_start = (int) (currentMillis() / _millis);
 	}
 
 	@Override
 	public void increment(final long start) {
-		getCurrent(true).increment(start);
-		_total++;
+		recordNanos(TimeUnit.MILLISECONDS.toNanos(currentMillis() - start));
 	}
 
 	@Override
 	public void increment(final int millis) {
 		getCurrent(true).increment(millis);
-		_total++;
+		_total.increment();
+	}
+
+	@Override
+	public void recordNanos(final long nanos) {
+		getCurrent(true).recordNanos(nanos);
+		_total.increment();
 	}
 
+	/**
+	 * @return total saturated to {@link Integer#MAX_VALUE}
+	 * @see #getLongTotal()
+	 */
 	@Override
 	public int getTotal() {
-		return _total;
+		return _total.intValue();
+	}
+
+	public long getLongTotal() {
+		return _total.sum();
 	}
 
 	@Override
@@ -81,6 +159,14 @@ public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 		return getCurrent(false).toList();
 	}
 
+	/**
+	 * @return snapshot of the current interval
+	 */
+	@Override
+	public PercentileSnapshot toSnapshot() {
+		return getCurrent(false).toSnapshot();
+	}
+
 	@Override
 	public List<IPercentileCounter> toCountersList() {
 		final ArrayList<IPercentileCounter> counters = new ArrayList<IPercentileCounter>(_counters.length);
@@ -133,6 +219,11 @@ public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 		return getCurrent(false).estimatePercentile(percentile);
 	}
 
+	@Override
+	public long estimatePercentile(final double percentile, final TimeUnit unit) {
+		return getCurrent(false).estimatePercentile(percentile, unit);
+	}
+
 	@Override
 	public void clear() {
 		for (int i = 0; i < _counters.length; i++) {
@@ -143,18 +234,18 @@ public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 	/**
 	 * don't clear but replace - avoid having to throw influence iterators
 	 */
-	private PercentileCounter clear(final int i) {
-		return _counters[i] = new PercentileCounter(_counters[i].getLimits());
+	private AbstractPercentileCounter clear(final int i) {
+		return _counters[i] = _factory.newPercentileCounter();
 	}
 
-	PercentileCounter getCurrent(final boolean advance) {
+	AbstractPercentileCounter getCurrent(final boolean advance) {
 		if (!advance) {
 			return _counters[_last];
 		} else {
 			int current = (int) (currentMillis() / _millis) - _start;
 			current %= _counters.length;
 
-			PercentileCounter counter = _counters[current];
+			AbstractPercentileCounter counter = _counters[current];
 
 			if (current != _last) {
 				synchronized (this) {
@@ -185,9 +276,254 @@ public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 		return buf.toString();
 	}
 
+	/**
+	 * write binary representation: configuration, limits and the counts of all
+	 * intervals as varints. Built-in factories are written as their
+	 * configuration, others using Java serialization. Intervals of
+	 * {@link HistogramPercentileCounter#factory(TimeUnit, long, int, int...)}
+	 * are written with all non-empty histogram buckets, others with their
+	 * counts per limit only.
+	 */
+	public void write(final OutputStream out) throws IOException {
+		final long total = getLongTotal();
+		final boolean histogram = _factory instanceof HistogramPercentileCounter.Factory;
+
+		out.write(VERSION);
+		VarIntUtils.writeString(_title, out);
+		VarIntUtils.write(_millis, out);
+		writeFactory(_factory, out);
+
+		final long[] limits = _counters[0].getLimits(TimeUnit.NANOSECONDS);
+		VarIntUtils.write(limits.length, out);
+		VarIntUtils.writeSigned(limits[0], out);
+		for (int i = 1; i < limits.length; i++) {
+			VarIntUtils.write(limits[i] - limits[i - 1], out);
+		}
+
+		VarIntUtils.write(total, out);
+
+		// oldest first
+		VarIntUtils.write(_counters.length, out);
+		final int last = _last;
+		for (int i = 0; i < _counters.length; i++) {
+			final AbstractPercentileCounter counter = _counters[(last + 1 + i) % _counters.length];
+			if (histogram) {
+				writeHistogram((HistogramPercentileCounter) counter, out);
+			} else {
+				for (final long count : counter.toSnapshot().getCounts()) {
+					VarIntUtils.write(count, out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * write number of non-empty buckets followed by index delta and count of
+	 * each
+	 */
+	private static void writeHistogram(final HistogramPercentileCounter counter, final OutputStream out)
+			throws IOException {
+		final long[] counts = counter.counts();
+		int buckets = 0;
+		for (final long count : counts) {
+			if (count != 0) {
+				buckets++;
+			}
+		}
+		VarIntUtils.write(buckets, out);
+		int prev = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				VarIntUtils.write(i - prev, out);
+				VarIntUtils.write(counts[i], out);
+				prev = i;
+			}
+		}
+	}
+
+	private static void readHistogram(final HistogramPercentileCounter counter, final InputStream in)
+			throws IOException {
+		final int buckets = readInt(VarIntUtils.read(in));
+		int index = 0;
+		for (int i = 0; i < buckets; i++) {
+			index += readInt(VarIntUtils.read(in));
+			counter.addCount(index, VarIntUtils.read(in));
+		}
+	}
+
+	private static void writeFactory(final IPercentileCounterFactory factory, final OutputStream out)
+			throws IOException {
+		if (factory instanceof PercentileCounter.Factory) {
+			out.write(FACTORY_PERCENTILE);
+		} else if (factory instanceof ConcurrentPercentileCounter.Factory) {
+			out.write(FACTORY_CONCURRENT);
+		} else if (factory instanceof HistogramPercentileCounter.Factory) {
+			final HistogramPercentileCounter.Factory f = (HistogramPercentileCounter.Factory) factory;
+			out.write(FACTORY_HISTOGRAM);
+			out.write(f.getUnit().ordinal());
+			VarIntUtils.write(f.getHighestTrackableValue(), out);
+			VarIntUtils.write(f.getSignificantDigits(), out);
+		} else {
+			final byte[] bytes = SerializationUtils.serialize(factory);
+			out.write(FACTORY_SERIALIZED);
+			VarIntUtils.write(bytes.length, out);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * @see #write(OutputStream)
+	 */
+	public static IntervalPercentileCounter read(final InputStream in) throws IOException {
+		return read(in, SystemClock.INSTANCE);
+	}
+
+	/**
+	 * restore a counter written by {@link #write(OutputStream)}. The most recent
+	 * interval becomes the current interval at the time of reading.
+	 */
+	public static IntervalPercentileCounter read(final InputStream in, final IClock clock) throws IOException {
+		final int version = in.read();
+		if (version != VERSION) {
+			throw new IOException("unsupported version " + version);
+		}
+
+		final String title = VarIntUtils.readString(in);
+		final int millis = readInt(VarIntUtils.read(in));
+		final int factoryType = in.read();
+
+		TimeUnit unit = null;
+		long highestTrackableValue = 0;
+		int significantDigits = 0;
+		IPercentileCounterFactory factory = null;
+
+		switch (factoryType) {
+		case FACTORY_PERCENTILE:
+		case FACTORY_CONCURRENT:
+			break;
+		case FACTORY_HISTOGRAM:
+			final int ordinal = in.read();
+			if (ordinal < 0 || ordinal >= TimeUnit.values().length) {
+				throw new IOException("illegal unit " + ordinal);
+			}
+			unit = TimeUnit.values()[ordinal];
+			highestTrackableValue = VarIntUtils.read(in);
+			significantDigits = readInt(VarIntUtils.read(in));
+			break;
+		case FACTORY_SERIALIZED:
+			final byte[] bytes = new byte[readInt(VarIntUtils.read(in))];
+			StreamUtils.readFully(in, bytes);
+			try {
+				factory = SerializationUtils.deserialize(bytes, IPercentileCounterFactory.class);
+			} catch (final ClassNotFoundException e) {
+				throw new IOException("failed to deserialize factory", e);
+			}
+			break;
+		default:
+			throw new IOException("unsupported factory type " + factoryType);
+		}
+
+		final long[] limits = new long[readInt(VarIntUtils.read(in))];
+		if (limits.length == 0) {
+			throw new IOException("at least 1 limit required");
+		}
+		limits[0] = VarIntUtils.readSigned(in);
+		for (int i = 1; i < limits.length; i++) {
+			limits[i] = limits[i - 1] + VarIntUtils.read(in);
+		}
+
+		if (factoryType == FACTORY_PERCENTILE) {
+			factory = new PercentileCounter.Factory(limits);
+		} else if (factoryType == FACTORY_CONCURRENT) {
+			factory = new ConcurrentPercentileCounter.Factory(limits);
+		} else if (factoryType == FACTORY_HISTOGRAM) {
+			factory = new HistogramPercentileCounter.Factory(unit, highestTrackableValue, significantDigits, limits);
+		}
+
+		final long total = VarIntUtils.read(in);
+		final int size = readInt(VarIntUtils.read(in));
+
+		final IntervalPercentileCounter counter;
+		try {
+			counter = new IntervalPercentileCounter(millis, size, factory, clock);
+
+			// current interval is at index 0
+			for (int i = 0; i < size; i++) {
+				final AbstractPercentileCounter c = counter._counters[(i + 1) % size];
+				if (factoryType == FACTORY_HISTOGRAM) {
+					readHistogram((HistogramPercentileCounter) c, in);
+				} else {
+					final long[] counts = new long[limits.length + 1];
+					for (int j = 0; j < counts.length; j++) {
+						counts[j] = VarIntUtils.read(in);
+					}
+					c.add(new PercentileSnapshot(limits, TimeUnit.NANOSECONDS, counts));
+				}
+			}
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("invalid " + IntervalPercentileCounter.class.getSimpleName(), e);
+		}
+
+		counter._total.add(total);
+		counter.setTitle(title);
+		return counter;
+	}
+
+	private static int readInt(final long value) throws IOException {
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("value out of range: " + value);
+		}
+		return (int) value;
+	}
+
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		final ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("_title", _title);
+		fields.put("_counters", _counters);
+		fields.put("_total", getTotal());
+		fields.put("_start", _start);
+		fields.put("_millis", _millis);
+		fields.put("_last", _last);
+		fields.put("_longTotal", getLongTotal());
+		fields.put("_factory", _factory);
+		fields.put("_clock", _clock);
+		out.writeFields();
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final ObjectInputStream.GetField fields = in.readFields();
+		final Object counters = fields.get("_counters", null);
+		if (!(counters instanceof AbstractPercentileCounter[]) || ((Object[]) counters).length == 0) {
+			throw new InvalidObjectException("illegal counters");
+		}
+		// older versions used PercentileCounter[]
+		_counters = Arrays.copyOf((AbstractPercentileCounter[]) counters, ((Object[]) counters).length,
+				AbstractPercentileCounter[].class);
+
+		_title = (String) fields.get("_title", null);
+		_start = fields.get("_start", 0);
+		_millis = fields.get("_millis", 0);
+		_last = fields.get("_last", 0);
+		if (_millis < 1 || _last < 0 || _last >= _counters.length) {
+			throw new InvalidObjectException("illegal interval");
+		}
+
+		_total = new StripedCounter();
+		_total.add(fields.defaulted("_longTotal") ? fields.get("_total", 0) : fields.get("_longTotal", 0L));
+
+		_factory = (IPercentileCounterFactory) fields.get("_factory", null);
+		if (_factory == null) {
+			_factory = new PercentileCounter.Factory(_counters[0].getLimits(TimeUnit.NANOSECONDS));
+		}
+		_clock = (IClock) fields.get("_clock", null);
+		if (_clock == null) {
+			_clock = SystemClock.INSTANCE;
+		}
+	}
+
 	// mock this method for unit testing
 	protected long currentMillis() {
-		return System.currentTimeMillis();
+		return _clock.currentTimeMillis();
 	}
 
 	@Override
@@ -195,6 +531,11 @@ public class IntervalPercentileCounter implements IIntervalPercentileCounter {
 		return getCurrent(false).getLimits();
 	}
 
+	@Override
+	public long[] getLimits(final TimeUnit unit) {
+		return getCurrent(false).getLimits(unit);
+	}
+
 	@Override
 	public String getTitle() {
 		return _title;
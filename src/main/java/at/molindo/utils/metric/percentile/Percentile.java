@@ -15,50 +15,136 @@
  */
 package at.molindo.utils.metric.percentile;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 public class Percentile implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
-	private final int _sum;
-	private final int _total;
-	private final int _limit;
+	/**
+	 * int fields of older versions (limit in milliseconds, saturated) followed
+	 * by exact long fields
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("_sum", int.class),
+			new ObjectStreamField("_total", int.class), new ObjectStreamField("_limit", int.class),
+			new ObjectStreamField("_longSum", long.class), new ObjectStreamField("_longTotal", long.class),
+			new ObjectStreamField("_limitNanos", long.class) };
+
+	private long _sum;
+	private long _total;
+	private long _limitNanos;
 
 	public Percentile(final int sum, final int total, final int limit) {
+		this((long) sum, (long) total, limit);
+	}
+
+	public Percentile(final long sum, final long total, final int limit) {
+		this(sum, total, limit, TimeUnit.MILLISECONDS);
+	}
+
+	public Percentile(final long sum, final long total, final long limit, final TimeUnit unit) {
 		_sum = sum;
 		_total = total;
-		_limit = limit;
+		_limitNanos = unit.toNanos(limit);
 	}
 
+	/**
+	 * @return sum saturated to {@link Integer#MAX_VALUE}
+	 * @see #getLongSum()
+	 */
 	public int getSum() {
-		return _sum;
+		return saturate(_sum);
 	}
 
+	/**
+	 * @return total saturated to {@link Integer#MAX_VALUE}
+	 * @see #getLongTotal()
+	 */
 	public int getTotal() {
+		return saturate(_total);
+	}
+
+	public long getLongSum() {
+		return _sum;
+	}
+
+	public long getLongTotal() {
 		return _total;
 	}
 
+	/**
+	 * @return limit in milliseconds, rounded down
+	 * @see #getLimit(TimeUnit)
+	 */
 	public int getLimit() {
-		return _limit;
+		return saturate(TimeUnit.NANOSECONDS.toMillis(_limitNanos));
+	}
+
+	public long getLimit(final TimeUnit unit) {
+		return unit.convert(_limitNanos, TimeUnit.NANOSECONDS);
 	}
 
 	public double getPercentage() {
 		return _total == 0 ? 0 : 100.0 / _total * _sum;
 	}
 
+	/**
+	 * @return limit as milliseconds if possible, microseconds otherwise
+	 */
+	static String format(final long limitNanos) {
+		if (limitNanos % 1000000 == 0) {
+			return TimeUnit.NANOSECONDS.toMillis(limitNanos) + " ms";
+		} else {
+			return TimeUnit.NANOSECONDS.toMicros(limitNanos) + " us";
+		}
+	}
+
+	private static int saturate(final long value) {
+		return (int) Math.min(value, Integer.MAX_VALUE);
+	}
+
 	@Override
 	public String toString() {
-		return String.format("%d (%.2f%%) <= %d ms", _sum, getPercentage(), _limit);
+		return String.format("%d (%.2f%%) <= %s", _sum, getPercentage(), format(_limitNanos));
+	}
+
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		final ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("_sum", getSum());
+		fields.put("_total", getTotal());
+		fields.put("_limit", getLimit());
+		fields.put("_longSum", _sum);
+		fields.put("_longTotal", _total);
+		fields.put("_limitNanos", _limitNanos);
+		out.writeFields();
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final ObjectInputStream.GetField fields = in.readFields();
+		if (fields.defaulted("_limitNanos")) {
+			// int fields only
+			_sum = fields.get("_sum", 0);
+			_total = fields.get("_total", 0);
+			_limitNanos = TimeUnit.MILLISECONDS.toNanos(fields.get("_limit", 0));
+		} else {
+			_sum = fields.get("_longSum", 0L);
+			_total = fields.get("_longTotal", 0L);
+			_limitNanos = fields.get("_limitNanos", 0L);
+		}
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + _limit;
-		result = prime * result + _sum;
-		result = prime * result + _total;
+		result = prime * result + (int) (_limitNanos ^ _limitNanos >>> 32);
+		result = prime * result + (int) (_sum ^ _sum >>> 32);
+		result = prime * result + (int) (_total ^ _total >>> 32);
 		return result;
 	}
 
@@ -74,7 +160,7 @@ public class Percentile implements Serializable {
 			return false;
 		}
 		final Percentile other = (Percentile) obj;
-		if (_limit != other._limit) {
+		if (_limitNanos != other._limitNanos) {
 			return false;
 		}
 		if (_sum != other._sum) {
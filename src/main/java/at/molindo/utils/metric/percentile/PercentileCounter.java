@@ -15,18 +15,23 @@
  */
 package at.molindo.utils.metric.percentile;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 
-public class PercentileCounter implements IPercentileCounter {
+public class PercentileCounter extends AbstractPercentileCounter {
 	private static final long serialVersionUID = 1L;
 
-	private final int[] _limits;
-	private final int[] _counts;
+	/**
+	 * limits in nanoseconds, written in milliseconds as <code>int[]</code> by
+	 * older versions
+	 */
+	private long[] _limits;
+	private int[] _counts;
 	private int _total;
 	private String _title;
 
@@ -35,63 +40,41 @@ public class PercentileCounter implements IPercentileCounter {
 	}
 
 	public PercentileCounter(final TimeUnit unit, final int... limits) {
-		if (limits.length == 0) {
-			throw new IllegalArgumentException("at least 1 limit required");
-		}
-
-		_limits = Arrays.copyOf(limits, limits.length);
-		Arrays.sort(_limits);
-
-		if (unit != TimeUnit.MILLISECONDS) {
-			for (int i = 0; i < _limits.length; i++) {
-				_limits[i] = (int) unit.toMillis(_limits[i]);
-			}
-		}
+		this(limits(unit, limits));
+	}
 
+	private PercentileCounter(final long[] limits) {
+		_limits = limits;
 		_counts = new int[_limits.length];
-
 	}
 
-	@Override
-	public void increment(final long start) {
-		final long value = System.currentTimeMillis() - start;
-		if (value > Integer.MAX_VALUE) {
-			throw new IllegalArgumentException("cannot increment percentile with values > Integer.MAX_VALUE, was "
-					+ value + " (start=" + start + ")");
-		}
-		increment((int) value);
+	/**
+	 * @return a factory for {@link PercentileCounter}s using the given limits
+	 */
+	public static IPercentileCounterFactory factory(final TimeUnit unit, final int... limits) {
+		return new Factory(limits(unit, limits));
 	}
 
 	@Override
-	public void increment(final int millis) {
-		final int i = index(millis);
+	public void recordNanos(final long nanos) {
+		final int i = index(_limits, nanos);
 		if (i < _limits.length) {
 			_counts[i]++;
 		}
 		_total++;
 	}
 
-	int index(final int millis) {
-		// binary search
-
-		int low = 0;
-		int high = _limits.length - 1;
-		int mid = -1;
-
-		while (low <= high) {
-			mid = (low + high) / 2;
-
-			final int res = _limits[mid] - millis;
-			if (res < 0) {
-				low = mid + 1;
-			} else if (res > 0) {
-				high = mid - 1;
-			} else {
-				return mid;
-			}
+	@Override
+	public void add(final PercentileSnapshot snapshot) {
+		final long[] counts = counts(_limits, snapshot);
+		for (int i = 0; i < _counts.length; i++) {
+			_counts[i] = (int) Math.min(_counts[i] + counts[i], Integer.MAX_VALUE);
 		}
+		_total = (int) Math.min(_total + snapshot.getTotal(), Integer.MAX_VALUE);
+	}
 
-		return _limits[mid] < millis ? mid + 1 : mid;
+	int index(final int millis) {
+		return index(_limits, TimeUnit.MILLISECONDS.toNanos(millis));
 	}
 
 	@Override
@@ -99,20 +82,6 @@ public class PercentileCounter implements IPercentileCounter {
 		return _total;
 	}
 
-	@Override
-	public int estimatePercentile(final double percentile) {
-		if (percentile < 0.0 || percentile > 100.0) {
-			throw new IllegalArgumentException("percentile must be between 0.0 and 100.0, was " + percentile);
-		}
-
-		for (final Percentile p : this) {
-			if (percentile - p.getPercentage() <= 0.0001) {
-				return p.getLimit();
-			}
-		}
-		return Integer.MAX_VALUE;
-	}
-
 	@Override
 	public void clear() {
 		for (int i = 0; i < _counts.length; i++) {
@@ -123,29 +92,7 @@ public class PercentileCounter implements IPercentileCounter {
 
 	@Override
 	public String toString() {
-		final StringBuilder buf = new StringBuilder();
-		buf.append(PercentileCounter.class.getSimpleName()).append(": ");
-
-		Percentile last = null;
-		for (final Percentile p : this) {
-			if (last == null || p.getSum() != last.getSum()) {
-				buf.append(p).append(", ");
-			}
-			last = p;
-		}
-
-		final double remaining = last == null ? 0.0 : 100.0 - last.getPercentage();
-
-		if (Math.abs(remaining) > 0.001) {
-			final int count = _total - last.getSum();
-			final int limit = _limits[_limits.length - 1];
-			buf.append(String.format("%d (%.2f%%) > %d ms", count, remaining, limit));
-			buf.append(", ");
-		}
-
-		buf.append(_total).append(" total");
-
-		return buf.toString();
+		return toString(PercentileCounter.class.getSimpleName());
 	}
 
 	@Override
@@ -172,7 +119,7 @@ public class PercentileCounter implements IPercentileCounter {
 				}
 
 				_sum += _counts[_i];
-				final Percentile p = new Percentile(_sum, _total, _limits[_i]);
+				final Percentile p = new Percentile(_sum, _total, _limits[_i], TimeUnit.NANOSECONDS);
 				_i++;
 				return p;
 			}
@@ -185,16 +132,8 @@ public class PercentileCounter implements IPercentileCounter {
 	}
 
 	@Override
-	public List<Percentile> toList() {
-		final ArrayList<Percentile> list = new ArrayList<Percentile>(_limits.length);
-		for (final Percentile p : this) {
-			list.add(p);
-		}
-		return list;
-	}
-
-	public int[] getLimits() {
-		return Arrays.copyOf(_limits, _limits.length);
+	public long[] getLimits(final TimeUnit unit) {
+		return limits(_limits, unit);
 	}
 
 	@Override
@@ -205,4 +144,37 @@ public class PercentileCounter implements IPercentileCounter {
 	public void setTitle(final String title) {
 		_title = title;
 	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		final ObjectInputStream.GetField fields = in.readFields();
+		final Object limits = fields.get("_limits", null);
+		if (limits instanceof int[]) {
+			_limits = limits(TimeUnit.MILLISECONDS, (int[]) limits);
+		} else if (limits instanceof long[]) {
+			_limits = (long[]) limits;
+		} else {
+			throw new InvalidObjectException("illegal limits");
+		}
+		_counts = (int[]) fields.get("_counts", null);
+		_total = fields.get("_total", 0);
+		_title = (String) fields.get("_title", null);
+		if (_counts == null || _counts.length != _limits.length) {
+			throw new InvalidObjectException("illegal counts");
+		}
+	}
+
+	static final class Factory implements IPercentileCounterFactory {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] _limits;
+
+		Factory(final long[] limits) {
+			_limits = limits;
+		}
+
+		@Override
+		public PercentileCounter newPercentileCounter() {
+			return new PercentileCounter(_limits);
+		}
+	}
 }
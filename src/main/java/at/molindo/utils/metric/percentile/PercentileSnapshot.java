@@ -0,0 +1,348 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import at.molindo.utils.io.VarIntUtils;
+
+/**
+ * immutable, mergeable state of an {@link IPercentileCounter}: one count per
+ * limit and one for values exceeding the highest limit. Snapshots of
+ * counters with equal limits (e.g. the same counter on different nodes) can be
+ * merged without loss.
+ *
+ * The binary encoding ({@link #write(ByteBuffer)}, {@link #read(ByteBuffer)})
+ * stores limits delta encoded and all values as varints, i.e. a snapshot with
+ * 12 limits and small counts needs less than 40 bytes.
+ *
+ * @see IPercentileCounter#toSnapshot()
+ */
+public final class PercentileSnapshot implements Iterable<Percentile>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final byte VERSION = 1;
+
+	/**
+	 * limits in nanoseconds
+	 */
+	private final long[] _limits;
+
+	/**
+	 * counts per limit, last is count of values exceeding the highest limit
+	 */
+	private final long[] _counts;
+
+	private final long _total;
+
+	/**
+	 * @param limits
+	 *            sorted limits in <code>unit</code>
+	 * @param counts
+	 *            one count per limit and one count of values exceeding the
+	 *            highest limit
+	 */
+	public PercentileSnapshot(final long[] limits, final TimeUnit unit, final long[] counts) {
+		this(nanos(limits, unit), Arrays.copyOf(counts, counts.length));
+	}
+
+	/**
+	 * doesn't copy arrays
+	 */
+	private PercentileSnapshot(final long[] limitNanos, final long[] counts) {
+		if (limitNanos.length == 0) {
+			throw new IllegalArgumentException("at least 1 limit required");
+		}
+		if (counts.length != limitNanos.length + 1) {
+			throw new IllegalArgumentException("expected " + (limitNanos.length + 1) + " counts, was "
+					+ counts.length);
+		}
+
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] < 0) {
+				throw new IllegalArgumentException("counts must not be negative, was " + counts[i]);
+			}
+			if (i > 0 && i < limitNanos.length && limitNanos[i] < limitNanos[i - 1]) {
+				throw new IllegalArgumentException("limits must be sorted");
+			}
+			total += counts[i];
+		}
+
+		_limits = limitNanos;
+		_counts = counts;
+		_total = total;
+	}
+
+	private static long[] nanos(final long[] limits, final TimeUnit unit) {
+		final long[] nanos = new long[limits.length];
+		for (int i = 0; i < limits.length; i++) {
+			nanos[i] = unit.toNanos(limits[i]);
+		}
+		return nanos;
+	}
+
+	/**
+	 * @return snapshot of all {@link Percentile}s of <code>counter</code>
+	 */
+	public static PercentileSnapshot of(final IPercentileCounter counter) {
+		final List<Percentile> percentiles = counter.toList();
+		if (percentiles.isEmpty()) {
+			throw new IllegalArgumentException("counter without limits");
+		}
+
+		final long[] limits = new long[percentiles.size()];
+		final long[] counts = new long[limits.length + 1];
+
+		long sum = 0;
+		for (int i = 0; i < limits.length; i++) {
+			final Percentile p = percentiles.get(i);
+			limits[i] = p.getLimit(TimeUnit.NANOSECONDS);
+			counts[i] = p.getLongSum() - sum;
+			sum = p.getLongSum();
+		}
+		counts[limits.length] = percentiles.get(limits.length - 1).getLongTotal() - sum;
+
+		return new PercentileSnapshot(limits, counts);
+	}
+
+	/**
+	 * @return a new snapshot with the counts of this and <code>other</code>
+	 * @throws IllegalArgumentException
+	 *             if limits differ
+	 */
+	public PercentileSnapshot merge(final PercentileSnapshot other) {
+		checkLimits(other);
+
+		final long[] counts = Arrays.copyOf(_counts, _counts.length);
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other._counts[i];
+		}
+		return new PercentileSnapshot(_limits, counts);
+	}
+
+	/**
+	 * merge any number of snapshots into one, allocating a single result
+	 *
+	 * @throws IllegalArgumentException
+	 *             if <code>snapshots</code> is empty or limits differ
+	 */
+	public static PercentileSnapshot merge(final Iterable<PercentileSnapshot> snapshots) {
+		final Iterator<PercentileSnapshot> iter = snapshots.iterator();
+		if (!iter.hasNext()) {
+			throw new IllegalArgumentException("at least 1 snapshot required");
+		}
+
+		final PercentileSnapshot first = iter.next();
+		final long[] counts = Arrays.copyOf(first._counts, first._counts.length);
+		while (iter.hasNext()) {
+			final PercentileSnapshot next = iter.next();
+			first.checkLimits(next);
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += next._counts[i];
+			}
+		}
+		return new PercentileSnapshot(first._limits, counts);
+	}
+
+	private void checkLimits(final PercentileSnapshot other) {
+		if (!Arrays.equals(_limits, other._limits)) {
+			throw new IllegalArgumentException("can't merge snapshots with different limits");
+		}
+	}
+
+	/**
+	 * @return number of bytes needed by {@link #write(ByteBuffer)}
+	 */
+	public int getEncodedLength() {
+		int length = 1 + VarIntUtils.length(_limits.length) + VarIntUtils.signedLength(_limits[0]);
+		for (int i = 1; i < _limits.length; i++) {
+			length += VarIntUtils.length(_limits[i] - _limits[i - 1]);
+		}
+		for (final long count : _counts) {
+			length += VarIntUtils.length(count);
+		}
+		return length;
+	}
+
+	/**
+	 * @throws java.nio.BufferOverflowException
+	 *             if less than {@link #getEncodedLength()} bytes remaining
+	 */
+	public void write(final ByteBuffer buf) {
+		buf.put(VERSION);
+		VarIntUtils.write(_limits.length, buf);
+		VarIntUtils.writeSigned(_limits[0], buf);
+		for (int i = 1; i < _limits.length; i++) {
+			VarIntUtils.write(_limits[i] - _limits[i - 1], buf);
+		}
+		for (final long count : _counts) {
+			VarIntUtils.write(count, buf);
+		}
+	}
+
+	public byte[] toByteArray() {
+		final ByteBuffer buf = ByteBuffer.allocate(getEncodedLength());
+		write(buf);
+		return buf.array();
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if <code>buf</code> doesn't contain a valid snapshot
+	 */
+	public static PercentileSnapshot read(final ByteBuffer buf) {
+		try {
+			final byte version = buf.get();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("unsupported version " + version);
+			}
+
+			final long length = VarIntUtils.read(buf);
+			if (length < 1 || length > buf.remaining()) {
+				throw new IllegalArgumentException("illegal number of limits " + length);
+			}
+
+			final long[] limits = new long[(int) length];
+			limits[0] = VarIntUtils.readSigned(buf);
+			for (int i = 1; i < limits.length; i++) {
+				limits[i] = limits[i - 1] + VarIntUtils.read(buf);
+			}
+
+			final long[] counts = new long[limits.length + 1];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = VarIntUtils.read(buf);
+			}
+
+			return new PercentileSnapshot(limits, counts);
+		} catch (final BufferUnderflowException e) {
+			throw new IllegalArgumentException("truncated snapshot", e);
+		}
+	}
+
+	public static PercentileSnapshot fromByteArray(final byte[] bytes) {
+		return read(ByteBuffer.wrap(bytes));
+	}
+
+	public long getTotal() {
+		return _total;
+	}
+
+	/**
+	 * @return copy of counts per limit, last is the count of values exceeding
+	 *         the highest limit
+	 */
+	public long[] getCounts() {
+		return Arrays.copyOf(_counts, _counts.length);
+	}
+
+	/**
+	 * @return copy of limits in <code>unit</code>, rounded down
+	 */
+	public long[] getLimits(final TimeUnit unit) {
+		return AbstractPercentileCounter.limits(_limits, unit);
+	}
+
+	/**
+	 * @see IPercentileCounter#estimatePercentile(double, TimeUnit)
+	 */
+	public long estimatePercentile(final double percentile, final TimeUnit unit) {
+		return AbstractPercentileCounter.estimatePercentile(this, percentile, unit);
+	}
+
+	public List<Percentile> toList() {
+		final ArrayList<Percentile> list = new ArrayList<Percentile>(_limits.length);
+		for (final Percentile p : this) {
+			list.add(p);
+		}
+		return list;
+	}
+
+	@Override
+	public Iterator<Percentile> iterator() {
+		return new Iterator<Percentile>() {
+
+			private int _i = 0;
+			private long _sum = 0;
+
+			@Override
+			public boolean hasNext() {
+				return _i < _limits.length;
+			}
+
+			@Override
+			public Percentile next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				_sum += _counts[_i];
+				final Percentile p = new Percentile(_sum, _total, _limits[_i], TimeUnit.NANOSECONDS);
+				_i++;
+				return p;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(_counts);
+		result = prime * result + Arrays.hashCode(_limits);
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (!(obj instanceof PercentileSnapshot)) {
+			return false;
+		}
+		final PercentileSnapshot other = (PercentileSnapshot) obj;
+		if (!Arrays.equals(_counts, other._counts)) {
+			return false;
+		}
+		if (!Arrays.equals(_limits, other._limits)) {
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return PercentileSnapshot.class.getSimpleName() + ": " + toList() + ", " + _total + " total";
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import java.util.concurrent.TimeUnit;
+
+import at.molindo.utils.system.IClock;
+import at.molindo.utils.system.SystemClock;
+
+/**
+ * reusable stopwatch recording durations measured with
+ * {@link IClock#nanoTime()} to an {@link IPercentileCounter} without
+ * allocating. Not thread-safe, use one instance per thread.
+ *
+ * <pre>
+ * timer.start();
+ * try {
+ * 	// ...
+ * } finally {
+ * 	timer.stop();
+ * }
+ * </pre>
+ */
+public class PercentileTimer {
+
+	private final IPercentileCounter _counter;
+	private final IClock _clock;
+	private long _start;
+	private boolean _running;
+
+	public PercentileTimer(final IPercentileCounter counter) {
+		this(counter, SystemClock.INSTANCE);
+	}
+
+	public PercentileTimer(final IPercentileCounter counter, final IClock clock) {
+		if (counter == null) {
+			throw new NullPointerException("counter");
+		}
+		if (clock == null) {
+			throw new NullPointerException("clock");
+		}
+		_counter = counter;
+		_clock = clock;
+	}
+
+	/**
+	 * start (or restart) timing
+	 */
+	public PercentileTimer start() {
+		_start = nanoTime();
+		_running = true;
+		return this;
+	}
+
+	/**
+	 * stop timing and record elapsed time
+	 *
+	 * @return elapsed nanoseconds
+	 * @throws IllegalStateException
+	 *             if not started
+	 */
+	public long stop() {
+		final long elapsed = elapsedNanos();
+		_running = false;
+		_counter.recordNanos(elapsed);
+		return elapsed;
+	}
+
+	/**
+	 * stop timing without recording
+	 */
+	public void cancel() {
+		_running = false;
+	}
+
+	/**
+	 * @return elapsed time in <code>unit</code> without stopping
+	 * @throws IllegalStateException
+	 *             if not started
+	 */
+	public long elapsed(final TimeUnit unit) {
+		return unit.convert(elapsedNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	private long elapsedNanos() {
+		if (!_running) {
+			throw new IllegalStateException("timer not started");
+		}
+		return nanoTime() - _start;
+	}
+
+	public boolean isRunning() {
+		return _running;
+	}
+
+	public IPercentileCounter getCounter() {
+		return _counter;
+	}
+
+	// mock this method for unit testing
+	protected long nanoTime() {
+		return _clock.nanoTime();
+	}
+}
@@ -16,6 +16,7 @@
 package at.molindo.utils.metric.percentile;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class UnmodifiableIntervalPercentileCounterWrapper extends UnmodifiablePercentileCounterWrapper implements
 		IIntervalPercentileCounter {
@@ -31,6 +32,11 @@ public class UnmodifiableIntervalPercentileCounterWrapper extends UnmodifiablePe
 		return getWrapped().getLimits();
 	}
 
+	@Override
+	public long[] getLimits(final TimeUnit unit) {
+		return getWrapped().getLimits(unit);
+	}
+
 	@Override
 	public List<IPercentileCounter> toCountersList() {
 		return getWrapped().toCountersList();
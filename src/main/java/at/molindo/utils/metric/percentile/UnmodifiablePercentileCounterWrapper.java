@@ -17,6 +17,7 @@ package at.molindo.utils.metric.percentile;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class UnmodifiablePercentileCounterWrapper implements IPercentileCounter {
 
@@ -41,6 +42,11 @@ public class UnmodifiablePercentileCounterWrapper implements IPercentileCounter
 		return _wrapped.estimatePercentile(percentile);
 	}
 
+	@Override
+	public long estimatePercentile(final double percentile, final TimeUnit unit) {
+		return _wrapped.estimatePercentile(percentile, unit);
+	}
+
 	@Override
 	public int getTotal() {
 		return _wrapped.getTotal();
@@ -56,6 +62,11 @@ public class UnmodifiablePercentileCounterWrapper implements IPercentileCounter
 		throw new UnsupportedOperationException("increment(int) not allowed (read-only)");
 	}
 
+	@Override
+	public void recordNanos(final long nanos) {
+		throw new UnsupportedOperationException("recordNanos(long) not allowed (read-only)");
+	}
+
 	@Override
 	public Iterator<Percentile> iterator() {
 		return _wrapped.iterator();
@@ -66,6 +77,11 @@ public class UnmodifiablePercentileCounterWrapper implements IPercentileCounter
 		return _wrapped.toList();
 	}
 
+	@Override
+	public PercentileSnapshot toSnapshot() {
+		return _wrapped.toSnapshot();
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof UnmodifiablePercentileCounterWrapper) {
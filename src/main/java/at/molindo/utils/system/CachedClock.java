@@ -0,0 +1,118 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.system;
+
+/**
+ * coarse {@link IClock} returning the time of the last tick of a background
+ * daemon thread from a volatile field, i.e. {@link #currentTimeMillis()} is as
+ * cheap as a volatile read but lags behind by up to the resolution (and any
+ * delay of the ticker thread). {@link #nanoTime()} isn't cached.
+ *
+ * Use {@link #getDefault()} to share a single ticker thread, which can't be
+ * stopped.
+ */
+public class CachedClock implements IClock {
+
+	private static final long serialVersionUID = 1L;
+
+	private static CachedClock _default;
+
+	private final long _resolutionMillis;
+
+	private transient volatile long _millis;
+	private final transient Thread _ticker;
+
+	/**
+	 * @return a shared instance with 1 ms resolution, started on first access
+	 */
+	public static synchronized CachedClock getDefault() {
+		if (_default == null) {
+			_default = new CachedClock(1);
+		}
+		return _default;
+	}
+
+	/**
+	 * @param resolutionMillis
+	 *            interval between ticks
+	 */
+	public CachedClock(final long resolutionMillis) {
+		if (resolutionMillis < 1) {
+			throw new IllegalArgumentException("resolutionMillis must be >= 1, was " + resolutionMillis);
+		}
+		_resolutionMillis = resolutionMillis;
+		_millis = System.currentTimeMillis();
+
+		_ticker = new Thread(CachedClock.class.getSimpleName() + "-ticker") {
+
+			@Override
+			public void run() {
+				try {
+					while (!isInterrupted()) {
+						_millis = System.currentTimeMillis();
+						Thread.sleep(_resolutionMillis);
+					}
+				} catch (final InterruptedException e) {
+					// stopped
+				}
+			}
+		};
+		_ticker.setDaemon(true);
+		_ticker.start();
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return _millis;
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * stop the ticker thread, time won't advance anymore
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if called on {@link #getDefault()}
+	 */
+	public void stop() {
+		synchronized (CachedClock.class) {
+			if (this == _default) {
+				throw new UnsupportedOperationException("can't stop shared default clock");
+			}
+		}
+		_ticker.interrupt();
+	}
+
+	public boolean isRunning() {
+		return _ticker.isAlive();
+	}
+
+	public long getResolutionMillis() {
+		return _resolutionMillis;
+	}
+
+	/**
+	 * @return {@link #getDefault()} for the default resolution, otherwise a new
+	 *         (running) clock with the same resolution
+	 */
+	private Object readResolve() {
+		final CachedClock clock = getDefault();
+		return _resolutionMillis == clock.getResolutionMillis() ? clock : new CachedClock(_resolutionMillis);
+	}
+}
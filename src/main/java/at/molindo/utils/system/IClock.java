@@ -0,0 +1,38 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.system;
+
+import java.io.Serializable;
+
+/**
+ * source of time for time-bucketed metrics and timers
+ *
+ * @see SystemClock
+ * @see CachedClock
+ * @see ManualClock
+ */
+public interface IClock extends Serializable {
+
+	/**
+	 * @see System#currentTimeMillis()
+	 */
+	long currentTimeMillis();
+
+	/**
+	 * @see System#nanoTime()
+	 */
+	long nanoTime();
+}
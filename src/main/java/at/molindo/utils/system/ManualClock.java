@@ -0,0 +1,58 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.system;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link IClock} that only advances when told to, e.g. for deterministic
+ * tests. {@link #currentTimeMillis()} and {@link #nanoTime()} share the same
+ * time.
+ */
+public class ManualClock implements IClock {
+
+	private static final long serialVersionUID = 1L;
+
+	private final AtomicLong _nanos = new AtomicLong();
+
+	public ManualClock() {
+	}
+
+	public ManualClock(final long millis) {
+		set(millis, TimeUnit.MILLISECONDS);
+	}
+
+	public ManualClock set(final long time, final TimeUnit unit) {
+		_nanos.set(unit.toNanos(time));
+		return this;
+	}
+
+	public ManualClock advance(final long duration, final TimeUnit unit) {
+		_nanos.addAndGet(unit.toNanos(duration));
+		return this;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(_nanos.get());
+	}
+
+	@Override
+	public long nanoTime() {
+		return _nanos.get();
+	}
+}
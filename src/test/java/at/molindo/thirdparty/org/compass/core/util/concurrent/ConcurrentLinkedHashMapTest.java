@@ -0,0 +1,407 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.thirdparty.org.compass.core.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionListener;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionPolicy;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Weigher;
+
+public class ConcurrentLinkedHashMapTest {
+
+	private static final Weigher<String> LENGTH = new Weigher<String>() {
+
+		@Override
+		public int weightOf(String value) {
+			return value.length();
+		}
+	};
+
+	@Test
+	public void tinyLfuBounded() {
+		final AtomicInteger evictions = new AtomicInteger();
+		ConcurrentLinkedHashMap<Integer, Integer> map = new ConcurrentLinkedHashMap<Integer, Integer>(
+				EvictionPolicy.TINY_LFU, 100, listener(evictions));
+
+		for (int i = 0; i < 1000; i++) {
+			map.put(i, i);
+		}
+		assertEquals(100, map.size());
+		assertEquals(900, evictions.get());
+		assertEquals(100, map.buffered.weightedSize());
+
+		map.setCapacity(10);
+		assertEquals(10, map.size());
+		assertEquals(990, evictions.get());
+		assertEquals(10, map.buffered.weightedSize());
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertEquals(0, map.buffered.weightedSize());
+	}
+
+	@Test
+	public void tinyLfuScanResistance() {
+		ConcurrentLinkedHashMap<Integer, Integer> map = new ConcurrentLinkedHashMap<Integer, Integer>(
+				EvictionPolicy.TINY_LFU, 100);
+
+		// popular entries
+		for (int r = 0; r < 10; r++) {
+			for (int i = 0; i < 50; i++) {
+				if (map.get(i) == null) {
+					map.put(i, i);
+				}
+			}
+		}
+
+		// scan of entries used once
+		for (int i = 1000; i < 11000; i++) {
+			map.put(i, i);
+		}
+
+		int hits = 0;
+		for (int i = 0; i < 50; i++) {
+			if (map.get(i) != null) {
+				hits++;
+			}
+		}
+		assertTrue("hits: " + hits, hits >= 45);
+		assertEquals(100, map.size());
+	}
+
+	@Test
+	public void tinyLfuRemove() {
+		ConcurrentLinkedHashMap<String, String> map = new ConcurrentLinkedHashMap<String, String>(
+				EvictionPolicy.TINY_LFU, 10);
+
+		map.put("a", "1");
+		assertEquals("1", map.get("a"));
+		assertEquals("1", map.put("a", "2"));
+		assertFalse(map.remove("a", "1"));
+		assertTrue(map.remove("a", "2"));
+		assertNull(map.remove("a"));
+		assertNull(map.get("a"));
+		assertEquals(0, map.buffered.weightedSize());
+
+		map.put("b", "1");
+		// access still pending in read buffer
+		map.get("b");
+		assertEquals("1", map.remove("b"));
+		map.setCapacity(5);
+		assertEquals(0, map.buffered.weightedSize());
+	}
+
+	@Test
+	public void evictReplacedNode() {
+		final AtomicInteger evictions = new AtomicInteger();
+		ConcurrentLinkedHashMap<String, String> map = new ConcurrentLinkedHashMap<String, String>(
+				EvictionPolicy.TINY_LFU, 10, listener(evictions));
+
+		map.put("a", "1");
+		final ConcurrentLinkedHashMap.Node<String, String> old = map.data.get("a");
+
+		// remove(a) racing with put(a, 1): unmapped but not yet removed from
+		// the policy when evicted
+		map.data.remove("a");
+		map.put("a", "1");
+		map.evictNode(old);
+
+		assertEquals("1", map.get("a"));
+		assertEquals(0, evictions.get());
+		assertTrue(map.containsValue("1"));
+		assertFalse(map.containsValue("2"));
+	}
+
+	@Test
+	public void tinyLfuConcurrent() throws InterruptedException {
+		final ConcurrentLinkedHashMap<Integer, Integer> map = new ConcurrentLinkedHashMap<Integer, Integer>(
+				EvictionPolicy.TINY_LFU, 50);
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int seed = t;
+			threads[t] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < 50000; i++) {
+						int key = (i * 31 + seed) % 200;
+						if (map.get(key) == null) {
+							map.put(key, key);
+						}
+						if (i % 7 == 0) {
+							map.remove(key);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		map.setCapacity(50);
+		assertTrue(map.size() <= 50);
+		assertEquals(map.size(), map.buffered.weightedSize());
+	}
+
+	@Test
+	public void lru() {
+		final AtomicInteger evictions = new AtomicInteger();
+		ConcurrentLinkedHashMap<String, Integer> map = new ConcurrentLinkedHashMap<String, Integer>(
+				EvictionPolicy.LRU, 3, listener(evictions));
+
+		map.put("a", 1);
+		map.put("b", 2);
+		map.put("c", 3);
+		assertEquals(Integer.valueOf(1), map.get("a"));
+
+		// pending accesses are replayed before evicting
+		map.put("d", 4);
+		assertEquals(3, map.size());
+		assertEquals(1, evictions.get());
+		assertNull(map.get("b"));
+		assertEquals(Integer.valueOf(1), map.get("a"));
+
+		// reads don't create nodes
+		for (int i = 0; i < 100; i++) {
+			map.get("c");
+		}
+		assertEquals(3, map.buffered.weightedSize());
+		assertEquals(0, map.length.get());
+
+		assertEquals(Integer.valueOf(1), map.remove("a"));
+		assertEquals(2, map.buffered.weightedSize());
+
+		map.setCapacity(1);
+		assertEquals(1, map.size());
+		assertEquals(2, evictions.get());
+		assertEquals(Integer.valueOf(3), map.get("c"));
+	}
+
+	@Test
+	public void weighted() {
+		for (EvictionPolicy policy : EvictionPolicy.values()) {
+			final AtomicInteger evictions = new AtomicInteger();
+			ConcurrentLinkedHashMap<String, String> map = new ConcurrentLinkedHashMap<String, String>(policy, 10, 16,
+					LENGTH, listener(evictions));
+
+			for (char c = 'a'; c < 'k'; c++) {
+				map.put(String.valueOf(c), "x");
+			}
+			assertEquals(policy.name(), 10, map.weightedSize());
+			assertEquals(0, evictions.get());
+
+			// a heavy entry evicts several
+			map.put("big", "123456789");
+			assertWeights(policy, map);
+			assertTrue(policy.name(), evictions.get() >= 8);
+
+			// replacing a value applies the new weight
+			map.put("k", "x");
+			String key = map.keySet().iterator().next();
+			map.replace(key, "1234567");
+			assertWeights(policy, map);
+
+			map.setCapacity(3);
+			assertWeights(policy, map);
+			assertTrue(policy.name(), map.weightedSize() <= 3);
+		}
+	}
+
+	@Test
+	public void weightedLru() {
+		ConcurrentLinkedHashMap<String, String> map = new ConcurrentLinkedHashMap<String, String>(EvictionPolicy.LRU,
+				10, 16, LENGTH);
+
+		for (char c = 'a'; c < 'k'; c++) {
+			map.put(String.valueOf(c), "x");
+		}
+		map.get("a");
+		map.put("big", "12345678");
+		assertEquals(10, map.weightedSize());
+		assertEquals(3, map.size());
+		assertEquals("x", map.get("a"));
+		assertEquals("x", map.get("j"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeWeight() {
+		new ConcurrentLinkedHashMap<String, String>(EvictionPolicy.LRU, 10, 16,
+				new Weigher<String>() {
+
+					@Override
+					public int weightOf(String value) {
+						return -1;
+					}
+				}).put("a", "b");
+	}
+
+	@Test
+	public void stats() {
+		for (EvictionPolicy policy : EvictionPolicy.values()) {
+			ConcurrentLinkedHashMap<Integer, Integer> map = new ConcurrentLinkedHashMap<Integer, Integer>(policy, 10);
+			map.put(0, 0);
+			map.get(0);
+			assertEquals(0, map.stats().getRequestCount());
+
+			map.setRecordStats(true);
+			map.setHitRateSampling(1);
+			for (int i = 0; i < 20; i++) {
+				map.put(i, i);
+			}
+			map.putIfAbsent(19, 0);
+			map.replace(19, 1);
+			map.get(19);
+			map.get(100);
+
+			CacheStats stats = map.stats();
+			assertEquals(policy, stats.getPolicy());
+			assertEquals(21, stats.getPutCount());
+			assertEquals(10, stats.getEvictionCount());
+			assertEquals(1, stats.getHitCount());
+			assertEquals(1, stats.getMissCount());
+			assertEquals(0.5, stats.getHitRate(), 0.0001);
+			assertEquals(1, stats.getSamplingRate());
+			assertEquals(0.5, stats.getSampledHitRate(), 0.0001);
+
+			map.resetStats();
+			assertEquals(0, map.stats().getPutCount());
+			assertEquals(0, map.stats().getSampledHitCount());
+
+			map.setRecordStats(false);
+			map.setHitRateSampling(0);
+			map.get(19);
+			assertEquals(0, map.stats().getHitCount());
+			assertEquals(0, map.stats().getSamplingRate());
+		}
+	}
+
+	@Test
+	public void sampledHitRate() throws InterruptedException {
+		final ConcurrentLinkedHashMap<Integer, Integer> map = new ConcurrentLinkedHashMap<Integer, Integer>(
+				EvictionPolicy.TINY_LFU, 1000);
+		for (int i = 0; i < 1000; i++) {
+			map.put(i, i);
+		}
+		map.setRecordStats(true);
+		map.setHitRateSampling(3);
+		assertEquals(4, map.stats().getSamplingRate());
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+
+				@Override
+				public void run() {
+					// 50% of requests hit
+					for (int i = 0; i < 20000; i++) {
+						map.get(i % 2000);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		CacheStats stats = map.stats();
+		assertEquals(80000, stats.getRequestCount());
+		assertEquals(0.5, stats.getHitRate(), 0.0001);
+		long sampled = stats.getSampledHitCount() + stats.getSampledMissCount();
+		assertTrue(sampled > 0 && sampled < 80000);
+		assertEquals(0.5, stats.getSampledHitRate(), 0.1);
+	}
+
+	@Test
+	public void readBuffer() {
+		ReadBuffer<String> buffer = new ReadBuffer<String>(3);
+		assertEquals(4, buffer.stripes());
+
+		for (int i = 1; i < ReadBuffer.DRAIN_THRESHOLD; i++) {
+			assertFalse(buffer.record("a"));
+		}
+		assertTrue(buffer.record("a"));
+		for (int i = ReadBuffer.DRAIN_THRESHOLD; i < ReadBuffer.BUFFER_SIZE + 5; i++) {
+			assertTrue(buffer.record("a"));
+		}
+		// lossy
+		assertEquals(ReadBuffer.BUFFER_SIZE, buffer.pending());
+
+		final AtomicInteger count = new AtomicInteger();
+		assertEquals(ReadBuffer.BUFFER_SIZE, buffer.drainTo(new ReadBuffer.Consumer<String>() {
+
+			@Override
+			public void accept(String e) {
+				count.incrementAndGet();
+			}
+		}));
+		assertEquals(ReadBuffer.BUFFER_SIZE, count.get());
+		assertEquals(0, buffer.pending());
+	}
+
+	@Test
+	public void frequencySketch() {
+		FrequencySketch sketch = new FrequencySketch(64);
+		assertEquals(0, sketch.frequency("a"));
+		for (int i = 0; i < 20; i++) {
+			sketch.increment("a");
+		}
+		assertEquals(15, sketch.frequency("a"));
+		sketch.increment("b");
+		assertEquals(1, sketch.frequency("b"));
+
+		// aging halves all counters after 10 * capacity increments
+		for (int i = 0; i < 640; i++) {
+			sketch.increment(Integer.valueOf(i));
+		}
+		assertTrue(sketch.frequency("a") <= 7);
+	}
+
+	private static void assertWeights(EvictionPolicy policy, ConcurrentLinkedHashMap<String, String> map) {
+		int weight = 0;
+		for (String value : map.values()) {
+			weight += value.length();
+		}
+		if (map.buffered != null) {
+			assertEquals(policy.name(), weight, map.weightedSize());
+		} else {
+			// FIFO-based policies include dead nodes
+			assertTrue(policy.name(), weight <= map.weightedSize());
+		}
+		assertTrue(policy.name(), map.weightedSize() <= map.capacity());
+	}
+
+	private static <K, V> EvictionListener<K, V> listener(final AtomicInteger evictions) {
+		return new EvictionListener<K, V>() {
+
+			@Override
+			public void onEviction(K key, V value) {
+				evictions.incrementAndGet();
+			}
+		};
+	}
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.EvictionPolicy;
+import at.molindo.thirdparty.org.compass.core.util.concurrent.ConcurrentLinkedHashMap.Weigher;
+import at.molindo.utils.system.ManualClock;
+
+public class LoadingCacheTest {
+
+	private static final Executor DIRECT = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	@Test
+	public void load() throws Exception {
+		CountingLoader loader = new CountingLoader();
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(loader, EvictionPolicy.LRU, 10);
+
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a1", cache.get("a"));
+		assertNull(cache.getIfPresent("b"));
+		assertEquals(1, loader._loads.get());
+
+		assertEquals(1, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1.0 / 3, cache.getHitRate(), 0.0001);
+		assertEquals(1, cache.getLoadSuccessCount());
+
+		cache.put("b", "x");
+		assertEquals("x", cache.get("b"));
+		cache.invalidate("b");
+		assertEquals("b2", cache.get("b"));
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+
+		cache.resetStats();
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void loadFailure() throws Exception {
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(new ICacheLoader<String, String>() {
+
+			@Override
+			public String load(String key) throws Exception {
+				if ("null".equals(key)) {
+					return null;
+				}
+				throw new IOException(key);
+			}
+		}, EvictionPolicy.LRU, 10);
+
+		try {
+			cache.get("a");
+			fail();
+		} catch (IOException e) {
+			assertEquals("a", e.getMessage());
+		}
+		assertEquals(1, cache.getLoadFailureCount());
+
+		assertNull(cache.get("null"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void singleFlight() throws Exception {
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger loads = new AtomicInteger();
+
+		final LoadingCache<String, String> cache = new LoadingCache<String, String>(
+				new ICacheLoader<String, String>() {
+
+					@Override
+					public String load(String key) throws Exception {
+						loads.incrementAndGet();
+						loading.countDown();
+						release.await();
+						return key;
+					}
+				}, EvictionPolicy.TINY_LFU, 10);
+
+		final AtomicInteger results = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						if ("a".equals(cache.get("a"))) {
+							results.incrementAndGet();
+						}
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		loading.await();
+		Thread.sleep(50);
+		release.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(1, loads.get());
+		assertEquals(threads.length, results.get());
+	}
+
+	@Test
+	public void expireAfterWrite() throws Exception {
+		ManualClock clock = new ManualClock();
+		CountingLoader loader = new CountingLoader();
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(loader, EvictionPolicy.LRU, 10)
+				.setExpireAfterWrite(1, TimeUnit.MINUTES).setClock(clock);
+
+		assertEquals("a1", cache.get("a"));
+		clock.advance(59, TimeUnit.SECONDS);
+		assertEquals("a1", cache.get("a"));
+		clock.advance(1, TimeUnit.SECONDS);
+		assertEquals("a2", cache.get("a"));
+		assertEquals(1, cache.getExpirationCount());
+	}
+
+	@Test
+	public void expireAfterAccess() throws Exception {
+		ManualClock clock = new ManualClock();
+		CountingLoader loader = new CountingLoader();
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(loader, EvictionPolicy.LRU, 10)
+				.setExpireAfterAccess(1, TimeUnit.MINUTES).setClock(clock);
+
+		assertEquals("a1", cache.get("a"));
+		for (int i = 0; i < 5; i++) {
+			clock.advance(50, TimeUnit.SECONDS);
+			assertEquals("a1", cache.get("a"));
+		}
+		clock.advance(1, TimeUnit.MINUTES);
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	@Test
+	public void cleanUp() throws Exception {
+		ManualClock clock = new ManualClock();
+		LoadingCache<Integer, String> cache = new LoadingCache<Integer, String>(new CountingLoader(),
+				EvictionPolicy.LRU, 1000).setExpireAfterAccess(1, TimeUnit.MINUTES).setClock(clock);
+
+		for (int i = 0; i < 100; i++) {
+			cache.get(i);
+		}
+		clock.advance(30, TimeUnit.SECONDS);
+		cache.get(0);
+
+		// wheel reschedules entry 0 after its access
+		clock.advance(45, TimeUnit.SECONDS);
+		assertEquals(99, cache.cleanUp());
+		assertEquals(1, cache.size());
+
+		// beyond a full rotation of the wheel
+		clock.advance(1, TimeUnit.HOURS);
+		assertEquals(1, cache.cleanUp());
+		assertEquals(0, cache.size());
+		assertEquals(100, cache.getExpirationCount());
+	}
+
+	@Test
+	public void refresh() throws Exception {
+		ManualClock clock = new ManualClock();
+		CountingLoader loader = new CountingLoader();
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(loader, EvictionPolicy.LRU, 10)
+				.setExpireAfterWrite(10, TimeUnit.MINUTES).setRefreshAfterWrite(1, TimeUnit.MINUTES, DIRECT)
+				.setClock(clock);
+
+		assertEquals("a1", cache.get("a"));
+		clock.advance(2, TimeUnit.MINUTES);
+
+		// stale value while reloading
+		assertEquals("a1", cache.get("a"));
+		assertEquals("a2", cache.get("a"));
+		assertEquals(1, cache.getRefreshCount());
+		assertEquals(2, loader._loads.get());
+
+		// failed refresh keeps stale value
+		loader._fail = true;
+		clock.advance(2, TimeUnit.MINUTES);
+		assertEquals("a2", cache.get("a"));
+		assertEquals("a2", cache.get("a"));
+		assertEquals(2, cache.getLoadFailureCount());
+
+		loader._fail = false;
+		assertEquals("a2", cache.get("a"));
+		assertEquals("a5", cache.get("a"));
+	}
+
+	@Test
+	public void unlinkFromWheel() throws Exception {
+		ManualClock clock = new ManualClock();
+		LoadingCache<Integer, String> cache = new LoadingCache<Integer, String>(new CountingLoader(),
+				EvictionPolicy.LRU, 10).setExpireAfterWrite(1, TimeUnit.HOURS).setClock(clock);
+
+		cache.put(1, "a");
+		cache.put(1, "b");
+		assertEquals(1, cache.scheduledCount());
+		cache.invalidate(1);
+		assertEquals(0, cache.scheduledCount());
+
+		// evicted entries are unlinked on the next write
+		for (int i = 0; i < 20; i++) {
+			cache.put(i, "x");
+		}
+		assertEquals(20 - 10, cache.getEvictionCount());
+		assertEquals(10, cache.size());
+		assertEquals(10, cache.scheduledCount());
+	}
+
+	@Test
+	public void refreshAfterRemoval() throws Exception {
+		ManualClock clock = new ManualClock();
+		CountingLoader loader = new CountingLoader();
+		final List<LoadingCache<String, String>> holder = new ArrayList<LoadingCache<String, String>>();
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(loader, EvictionPolicy.LRU, 10)
+				.setRefreshAfterWrite(1, TimeUnit.MINUTES, new Executor() {
+
+					@Override
+					public void execute(Runnable command) {
+						// stale entry removed before the reload completes
+						holder.get(0).invalidate("a");
+						command.run();
+					}
+				}).setClock(clock);
+		holder.add(cache);
+
+		assertEquals("a1", cache.get("a"));
+		clock.advance(2, TimeUnit.MINUTES);
+		assertEquals("a1", cache.get("a"));
+
+		// reloaded value is cached anyway
+		assertEquals("a2", cache.getIfPresent("a"));
+		assertEquals(2, loader._loads.get());
+		assertEquals(0, cache.getRefreshCount());
+	}
+
+	@Test
+	public void evict() throws Exception {
+		LoadingCache<String, String> cache = new LoadingCache<String, String>(new CountingLoader(),
+				EvictionPolicy.LRU, 10, new Weigher<String>() {
+
+					@Override
+					public int weightOf(String value) {
+						return value.length();
+					}
+				});
+
+		cache.put("a", "12345");
+		cache.put("b", "1234");
+		assertEquals(9, cache.weightedSize());
+		cache.put("c", "123");
+		assertEquals(7, cache.weightedSize());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.getIfPresent("a"));
+	}
+
+	@Test
+	public void timerWheel() {
+		final TimerWheel<String, String> wheel = new TimerWheel<String, String>(4, 10);
+		final LoadingCache.Entry<String, String> entry = new LoadingCache.Entry<String, String>("a", "b", 0);
+		final AtomicInteger expired = new AtomicInteger();
+		TimerWheel.ICallback<String, String> callback = new TimerWheel.ICallback<String, String>() {
+
+			@Override
+			public long deadline(LoadingCache.Entry<String, String> e) {
+				return 100;
+			}
+
+			@Override
+			public void expire(LoadingCache.Entry<String, String> e) {
+				assertSame(entry, e);
+				expired.incrementAndGet();
+			}
+		};
+
+		wheel.schedule(entry, 100, 0);
+		assertEquals(1, wheel.size());
+		assertEquals(0, wheel.advance(50, callback));
+		assertEquals(1, wheel.size());
+		assertEquals(1, wheel.advance(100, callback));
+		assertEquals(0, wheel.size());
+		assertEquals(1, expired.get());
+
+		wheel.schedule(entry, 200, 100);
+		entry.kill();
+		assertEquals(0, wheel.advance(300, callback));
+		assertEquals(0, wheel.size());
+	}
+
+	private static final class CountingLoader implements ICacheLoader<Object, String> {
+
+		private final AtomicInteger _loads = new AtomicInteger();
+		private volatile boolean _fail;
+
+		@Override
+		public String load(Object key) throws Exception {
+			int load = _loads.incrementAndGet();
+			if (_fail) {
+				throw new IOException("failed");
+			}
+			return key + "" + load;
+		}
+	}
+}
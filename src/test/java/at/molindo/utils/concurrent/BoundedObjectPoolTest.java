@@ -0,0 +1,184 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import at.molindo.utils.metric.percentile.PercentileCounter;
+import at.molindo.utils.system.ManualClock;
+
+public class BoundedObjectPoolTest {
+
+	@Test
+	public void test() throws InterruptedException {
+		final TestPool pool = new TestPool(2, 0, 0);
+
+		List<String> a = pool.get();
+		List<String> b = pool.get();
+		assertNotNull(a);
+		assertNotSame(a, b);
+		assertEquals(2, pool.getActiveCount());
+
+		// exhausted
+		assertNull(pool.get(10, TimeUnit.MILLISECONDS));
+		assertEquals(1, pool.getWaitCount());
+		assertTrue(pool.getWaitNanos() > 0);
+
+		pool.put(a);
+		assertEquals(1, pool.getIdleCount());
+		assertSame(a, pool.get(10, TimeUnit.MILLISECONDS));
+
+		// failed reset destroys object and frees slot
+		b.add("invalid");
+		pool.put(b);
+		assertEquals(1, pool.getTotal());
+		assertEquals(1, pool.destroyed.get());
+		assertNotSame(b, pool.get());
+
+		assertEquals(3, pool.getCreatedCount());
+		assertEquals(1, pool.getDestroyedCount());
+		assertEquals(4, pool.getBorrowedCount());
+	}
+
+	@Test
+	public void blocking() throws InterruptedException {
+		final TestPool pool = new TestPool(1, 0, 0);
+		final PercentileCounter waitTimes = new PercentileCounter(10000);
+		pool.setWaitTimes(waitTimes);
+
+		final List<String> a = pool.get();
+		final Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				pool.put(a);
+			}
+		};
+		t.start();
+
+		assertSame(a, pool.get());
+		t.join();
+
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(1, waitTimes.getTotal());
+	}
+
+	@Test
+	public void evict() {
+		final TestPool pool = new TestPool(5, 1, 60);
+		final ManualClock clock = new ManualClock(0);
+		pool.setClock(clock);
+
+		// creates min idle
+		assertEquals(0, pool.evict());
+		assertEquals(1, pool.getIdleCount());
+
+		List<String> a = pool.get();
+		List<String> b = pool.get();
+		List<String> c = pool.get();
+		pool.put(a);
+		clock.advance(30, TimeUnit.SECONDS);
+		pool.put(b);
+		pool.put(c);
+		assertEquals(3, pool.getIdleCount());
+
+		// nothing expired
+		assertEquals(0, pool.evict());
+
+		clock.advance(40, TimeUnit.SECONDS);
+		assertEquals(1, pool.evict());
+		assertEquals(2, pool.getIdleCount());
+
+		clock.advance(60, TimeUnit.SECONDS);
+		// keeps min idle, the most recently returned
+		assertEquals(1, pool.evict());
+		assertEquals(1, pool.getIdleCount());
+		assertSame(c, pool.get());
+
+		assertEquals(2, pool.destroyed.get());
+		assertEquals(2, pool.getDestroyedCount());
+	}
+
+	@Test
+	public void clear() {
+		final TestPool pool = new TestPool(5, 0, 0);
+		pool.put(pool.get());
+		pool.startEviction(1, TimeUnit.HOURS);
+		pool.clear();
+		assertEquals(0, pool.getTotal());
+		assertEquals(1, pool.destroyed.get());
+	}
+
+	@Test
+	public void extraReturns() {
+		final TestPool pool = new TestPool(2, 0, 0);
+		final List<String> a = pool.get();
+		pool.put(a);
+
+		// returned twice
+		pool.put(a);
+		assertEquals(1, pool.destroyed.get());
+
+		// never borrowed
+		pool.put(new ArrayList<String>());
+		pool.invalidate(new ArrayList<String>());
+		assertEquals(3, pool.destroyed.get());
+
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(1, pool.getTotal());
+	}
+
+	private static class TestPool extends BoundedObjectPool<List<String>> {
+
+		private final AtomicInteger destroyed = new AtomicInteger();
+
+		public TestPool(int maxTotal, int minIdle, long idleTimeoutSeconds) {
+			super(maxTotal, minIdle, idleTimeoutSeconds, TimeUnit.SECONDS);
+		}
+
+		@Override
+		protected List<String> create() {
+			return new ArrayList<String>();
+		}
+
+		@Override
+		protected boolean reset(List<String> object) {
+			return object.isEmpty();
+		}
+
+		@Override
+		protected void destroy(List<String> object) {
+			destroyed.incrementAndGet();
+		}
+	}
+}
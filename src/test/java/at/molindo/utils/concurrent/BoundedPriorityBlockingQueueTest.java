@@ -20,8 +20,11 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -76,4 +79,82 @@ public class BoundedPriorityBlockingQueueTest {
 			assertEquals(i, q.poll());
 		}
 	}
+
+	@Test
+	public void batch() throws InterruptedException {
+		final BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<Integer>(4);
+		assertEquals(4, q.offerAll(Arrays.asList(5, 1, 4, 2, 3)));
+		assertEquals(0, q.remainingCapacity());
+		assertEquals(0, q.offerAll(Arrays.asList(0)));
+
+		final List<Integer> batch = new ArrayList<Integer>();
+		assertEquals(3, q.takeBatch(batch, 3, 0, TimeUnit.MILLISECONDS));
+		assertEquals(Arrays.asList(1, 2, 4), batch);
+
+		batch.clear();
+		assertEquals(1, q.drainTo(batch, 10));
+		assertEquals(Arrays.asList(5), batch);
+
+		batch.clear();
+		assertEquals(0, q.takeBatch(batch, 3, 1, TimeUnit.MILLISECONDS));
+	}
+
+	@Test(timeout = 1000)
+	public void takeBatchWaits() throws InterruptedException {
+		final BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<Integer>(4);
+
+		Thread t = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				q.offerAll(Arrays.asList(2, 1));
+			}
+		};
+		t.start();
+
+		final List<Integer> batch = new ArrayList<Integer>();
+		int n = q.takeBatch(batch, 10, 1, TimeUnit.SECONDS);
+		t.join();
+		n += q.drainTo(batch);
+
+		assertEquals(2, n);
+		assertTrue(batch.contains(1));
+		assertTrue(batch.contains(2));
+	}
+
+	@Test(timeout = 1000)
+	public void offerAllFailureSignals() throws InterruptedException {
+		final BoundedPriorityBlockingQueue<Integer> q = new BoundedPriorityBlockingQueue<Integer>(4);
+		final List<Integer> taken = new ArrayList<Integer>();
+
+		Thread t = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					taken.add(q.take());
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		t.start();
+		while (t.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+
+		try {
+			q.offerAll(Arrays.asList(1, null));
+			fail();
+		} catch (NullPointerException e) {
+			// expected
+		}
+		t.join();
+		assertEquals(Arrays.asList(1), taken);
+	}
 }
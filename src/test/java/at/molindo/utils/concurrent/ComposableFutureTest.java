@@ -0,0 +1,229 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import at.molindo.utils.data.Function;
+import at.molindo.utils.data.Function2;
+
+public class ComposableFutureTest {
+
+	private static final Function<Integer, Integer> DOUBLE = new Function<Integer, Integer>() {
+
+		@Override
+		public Integer apply(Integer input) {
+			return input * 2;
+		}
+	};
+
+	@Test
+	public void thenApply() throws Exception {
+		final ComposableFuture<Integer> f = new ComposableFuture<Integer>();
+		final ComposableFuture<Integer> doubled = f.thenApply(DOUBLE);
+		assertFalse(doubled.isDone());
+
+		assertTrue(f.complete(21));
+		assertFalse(f.complete(22));
+		assertEquals((Integer) 42, doubled.get());
+
+		// already completed
+		assertEquals((Integer) 84, doubled.thenApply(DOUBLE).get(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void failure() throws Exception {
+		final ComposableFuture<Integer> f = ComposableFuture.completed(1).thenApply(
+				new Function2<Integer, Integer, Exception>() {
+
+					@Override
+					public Integer apply(Integer input) throws Exception {
+						throw new Exception("expected");
+					}
+				});
+
+		try {
+			f.thenApply(DOUBLE).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertEquals("expected", e.getCause().getMessage());
+		}
+
+		assertEquals((Integer) 0, f.recover(new Function<Throwable, Integer>() {
+
+			@Override
+			public Integer apply(Throwable input) {
+				return 0;
+			}
+		}).get());
+
+		final ComposableFuture<Integer> c = new ComposableFuture<Integer>();
+		assertTrue(c.cancel(false));
+		assertTrue(c.isCancelled());
+		try {
+			c.get();
+			fail();
+		} catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void thenCompose() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final ComposableFuture<Integer> f = ComposableFuture.supply(new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					return 20;
+				}
+			}, executor).thenCompose(new Function<Integer, ComposableFuture<Integer>>() {
+
+				@Override
+				public ComposableFuture<Integer> apply(final Integer input) {
+					return ComposableFuture.supply(new Callable<Integer>() {
+
+						@Override
+						public Integer call() throws Exception {
+							return input + 22;
+						}
+					}, executor);
+				}
+			});
+			assertEquals((Integer) 42, f.get(1, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void allOfAnyOf() throws Exception {
+		final ComposableFuture<Integer> a = new ComposableFuture<Integer>();
+		final ComposableFuture<Integer> b = new ComposableFuture<Integer>();
+
+		final ComposableFuture<List<Integer>> all = FutureUtils.allOf(a, b);
+		final ComposableFuture<Integer> any = FutureUtils.anyOf(a, b);
+
+		b.complete(2);
+		assertFalse(all.isDone());
+		assertEquals((Integer) 2, any.get());
+
+		a.complete(1);
+		assertEquals(Arrays.asList(1, 2), all.get());
+
+		final ComposableFuture<Integer> failed = ComposableFuture.failed(new IllegalStateException());
+		assertSame(IllegalStateException.class,
+				FutureUtils.allOf(new ComposableFuture<Integer>(), failed).getFailure().getClass());
+
+		assertEquals(0, FutureUtils.allOf(Arrays.<ComposableFuture<Integer>> asList()).get().size());
+	}
+
+	@Test
+	public void fanOut() throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertEquals(Arrays.asList(2, 4, 6), FutureUtils.fanOut(Arrays.asList(1, 2, 3), DOUBLE, executor)
+					.get(1, TimeUnit.SECONDS));
+
+			final ComposableFuture<Integer> slow = FutureUtils.toComposable(executor.submit(new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					Thread.sleep(10);
+					return 1;
+				}
+			}), executor);
+			assertEquals((Integer) 1, slow.get(1, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void withTimeout() throws Exception {
+		final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		try {
+			final ComposableFuture<Integer> f = new ComposableFuture<Integer>();
+			try {
+				f.withTimeout(10, TimeUnit.MILLISECONDS, scheduler).get(1, TimeUnit.SECONDS);
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+
+			final ComposableFuture<Integer> timed = f.withTimeout(1, TimeUnit.SECONDS, scheduler);
+			f.complete(42);
+			assertEquals((Integer) 42, timed.get());
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void failingListener() throws Exception {
+		final ComposableFuture<Integer> f = new ComposableFuture<Integer>();
+		f.addListener(new Runnable() {
+
+			@Override
+			public void run() {
+				throw new IllegalStateException("listener");
+			}
+		}, null);
+		f.addListener(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		}, new Executor() {
+
+			@Override
+			public void execute(final Runnable command) {
+				throw new RejectedExecutionException("rejected");
+			}
+		});
+		final ComposableFuture<Integer> g = f.thenApply(new Function<Integer, Integer>() {
+
+			@Override
+			public Integer apply(final Integer v) {
+				return v + 1;
+			}
+		});
+
+		assertTrue(f.complete(1));
+		assertTrue(g.isDone());
+		assertEquals(Integer.valueOf(2), g.get());
+	}
+}
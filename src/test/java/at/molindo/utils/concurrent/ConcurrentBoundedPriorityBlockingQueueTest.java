@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ConcurrentBoundedPriorityBlockingQueueTest {
+
+	@Test(timeout = 1000)
+	public void foo() throws InterruptedException {
+
+		final ConcurrentBoundedPriorityBlockingQueue<Integer> q = new ConcurrentBoundedPriorityBlockingQueue<Integer>(1);
+
+		assertTrue(q.offer(1));
+		assertFalse(q.offer(2));
+
+		assertFalse(q.offer(3, 1, TimeUnit.MILLISECONDS));
+
+		assertEquals((Integer) 1, q.peek());
+		assertEquals((Integer) 1, q.poll());
+		assertNull(q.peek());
+		assertNull(q.poll(1, TimeUnit.MILLISECONDS));
+
+		Thread t = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 10; i++) {
+						Thread.sleep(10);
+						assertNotNull(q.take());
+					}
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		t.start();
+
+		for (int i = 0; i < 10; i++) {
+			q.put(i);
+		}
+		t.join();
+
+		assertEquals(0, q.size());
+		assertEquals(1, q.remainingCapacity());
+	}
+
+	@Test
+	public void priority() {
+		final ConcurrentBoundedPriorityBlockingQueue<Integer> q = new ConcurrentBoundedPriorityBlockingQueue<Integer>(10);
+		q.addAll(Arrays.asList(1, 4, 3, 5, 2, 3));
+
+		assertEquals(6, q.size());
+		assertTrue(q.contains(4));
+		assertEquals(Arrays.asList(1, 2, 3, 3, 4, 5), new ArrayList<Integer>(q));
+
+		assertTrue(q.remove(3));
+		assertFalse(q.remove(6));
+
+		Iterator<Integer> iter = q.iterator();
+		assertEquals((Integer) 1, iter.next());
+		iter.remove();
+
+		List<Integer> drained = new ArrayList<Integer>();
+		assertEquals(2, q.drainTo(drained, 2));
+		assertEquals(Arrays.asList(2, 3), drained);
+		assertEquals(2, q.size());
+
+		q.clear();
+		assertEquals(0, q.size());
+		assertEquals(10, q.remainingCapacity());
+	}
+
+	@Test
+	public void fifoOnEqualPriority() {
+		final ConcurrentBoundedPriorityBlockingQueue<String> q = new ConcurrentBoundedPriorityBlockingQueue<String>(10,
+				new Comparator<String>() {
+
+					@Override
+					public int compare(String o1, String o2) {
+						return o1.length() - o2.length();
+					}
+				});
+		q.addAll(Arrays.asList("bb", "a", "cc", "d", "eee"));
+		assertEquals(Arrays.asList("a", "d", "bb", "cc", "eee"), new ArrayList<String>(q));
+		assertEquals("a", q.poll());
+		assertEquals("d", q.poll());
+	}
+
+	@Test
+	public void concurrent() throws InterruptedException {
+		final ConcurrentBoundedPriorityBlockingQueue<Integer> q = new ConcurrentBoundedPriorityBlockingQueue<Integer>(16);
+		final int perThread = 10000;
+		final AtomicLong sum = new AtomicLong();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < perThread; j++) {
+							q.put(j);
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < perThread; j++) {
+							sum.addAndGet(q.take());
+						}
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		}
+		Collections.shuffle(threads);
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(4L * perThread * (perThread - 1) / 2, sum.get());
+		assertEquals(0, q.size());
+		assertEquals(16, q.remainingCapacity());
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentObjectPoolTest {
+
+	@Test
+	public void test() {
+		ConcurrentObjectPool<List<String>> pool = new ConcurrentObjectPool<List<String>>(10) {
+
+			@Override
+			protected List<String> create() {
+				return new ArrayList<String>();
+			}
+
+		};
+
+		List<String> list = pool.get();
+		assertNotNull("pool did return null object", list);
+		assertNotSame("pool did return same list", list, pool.get());
+
+		pool.put(list);
+		assertSame("pool did not return same list after put(..)", list, pool.get());
+	}
+
+	@Test
+	public void sharedStack() {
+		final AtomicInteger created = new AtomicInteger();
+		ConcurrentObjectPool<Object> pool = new ConcurrentObjectPool<Object>(2, 0) {
+
+			@Override
+			protected Object create() {
+				created.incrementAndGet();
+				return new Object();
+			}
+
+		};
+
+		Object a = pool.get();
+		Object b = pool.get();
+		Object c = pool.get();
+		assertEquals(3, created.get());
+
+		pool.put(a);
+		pool.put(b);
+		pool.put(c);
+		// capacity exceeded, c dropped
+		assertEquals(2, pool.size());
+
+		// LIFO
+		assertSame(b, pool.get());
+		assertSame(a, pool.get());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void create() {
+		ConcurrentObjectPool<ArrayList> pool = ConcurrentObjectPool.create(ArrayList.class, 1);
+		assertNotNull(pool.get());
+	}
+
+	@Test
+	public void concurrent() throws InterruptedException {
+		final AtomicInteger created = new AtomicInteger();
+		final ConcurrentObjectPool<Object> pool = new ConcurrentObjectPool<Object>(100, 2) {
+
+			@Override
+			protected Object create() {
+				created.incrementAndGet();
+				return new Object();
+			}
+
+		};
+		final Set<Object> inUse = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		final AtomicInteger errors = new AtomicInteger();
+
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						Object o1 = pool.get();
+						Object o2 = pool.get();
+						synchronized (inUse) {
+							if (!inUse.add(o1) || !inUse.add(o2)) {
+								errors.incrementAndGet();
+							}
+						}
+						synchronized (inUse) {
+							inUse.remove(o1);
+							inUse.remove(o2);
+						}
+						pool.put(o2);
+						pool.put(o1);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals("object borrowed twice", 0, errors.get());
+		// 2 objects per thread at most
+		assertEquals(true, created.get() <= 2 * threads.length);
+	}
+
+	@Test
+	public void garbageCollected() throws InterruptedException {
+		ConcurrentObjectPool<List<String>> pool = new ConcurrentObjectPool<List<String>>(4) {
+
+			@Override
+			protected List<String> create() {
+				return new ArrayList<String>();
+			}
+		};
+		// populate this thread's cache
+		pool.put(pool.get());
+
+		final WeakReference<Object> ref = new WeakReference<Object>(pool);
+		pool = null;
+
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("pool referenced by thread cache", ref.get());
+	}
+}
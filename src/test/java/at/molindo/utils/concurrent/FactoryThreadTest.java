@@ -16,6 +16,9 @@
 package at.molindo.utils.concurrent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -96,4 +99,58 @@ public class FactoryThreadTest {
 		assertEquals(10, count[0]);
 		assertEquals(group.activeCount(), 0);
 	}
+
+	@Test(timeout = 5000)
+	public void testIdle() throws InterruptedException {
+		final int[] count = { 0 };
+
+		FactoryThread t = new FactoryThread(new IRunnableFactory() {
+
+			@Override
+			public Runnable newRunnable() {
+				if (count[0]++ % 2 == 0) {
+					// no work
+					return null;
+				}
+				return new Runnable() {
+
+					@Override
+					public void run() {
+						if (count[0] > 10) {
+							throw new RuntimeException();
+						}
+					}
+				};
+			}
+		}) {
+			protected void handleException(Throwable t, int consecutiveErrors, boolean terminate) {
+			}
+		}.setMaxErrors(3).setIdleStrategy(IdleStrategies.yielding())
+				.setErrorBackoff(IdleStrategies.exponential(1, 10, TimeUnit.MILLISECONDS));
+
+		t.start();
+		t.join();
+
+		assertEquals(5, t.getRunCount());
+		assertEquals(3, t.getErrorCount());
+		// idle count isn't reset by errors
+		assertEquals(8, t.getIdleCount());
+	}
+
+	@Test(timeout = 5000)
+	public void testInterrupt() throws InterruptedException {
+		FactoryThread t = new FactoryThread(new IRunnableFactory() {
+
+			@Override
+			public Runnable newRunnable() {
+				return null;
+			}
+		}).setIdleStrategy(IdleStrategies.blocking(1, TimeUnit.HOURS));
+
+		t.start();
+		t.interrupt();
+		t.join();
+
+		assertFalse(t.isAlive());
+	}
 }
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import at.molindo.utils.concurrent.FactoryThread.IRunnableFactory;
+
+public class FactoryWorkerGroupTest {
+
+	@Test(timeout = 5000)
+	public void testErrors() throws InterruptedException {
+		final int[] count = { 0 };
+		final ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			FactoryWorkerGroup group = new FactoryWorkerGroup(FactoryWorkerGroupTest.class.getSimpleName(), 4,
+					new IRunnableFactory() {
+
+						@Override
+						public Runnable newRunnable() {
+							return new Runnable() {
+
+								@Override
+								public void run() {
+									synchronized (count) {
+										if (count[0] >= 10) {
+											throw new RuntimeException();
+										}
+										count[0]++;
+									}
+								}
+							};
+						}
+					}, executor) {
+
+				@Override
+				protected void handleException(Throwable t, int consecutiveErrors, boolean terminate) {
+					if (terminate) {
+						assertEquals(2, consecutiveErrors);
+					} else {
+						assertEquals(1, consecutiveErrors);
+					}
+				}
+
+			}.setMaxErrors(2).start().join();
+
+			assertEquals(10, count[0]);
+			assertEquals(0, group.activeCount());
+			assertEquals(0, group.getWorkers());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void testResize() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+
+		FactoryWorkerGroup group = FactoryWorkerGroup.newVirtualThreadGroup("resize", 2, new IRunnableFactory() {
+
+			@Override
+			public Runnable newRunnable() {
+				return new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							throw new RuntimeException(e);
+						}
+						runs.incrementAndGet();
+					}
+				};
+			}
+		}).start();
+
+		assertEquals(2, group.activeCount());
+
+		group.setWorkers(5);
+		assertEquals(5, group.getWorkers());
+		assertEquals(5, group.activeCount());
+
+		group.setWorkers(1);
+		// surplus workers stop after their current runnable
+		release.countDown();
+		while (group.activeCount() > 1) {
+			Thread.sleep(1);
+		}
+		assertEquals(1, group.activeCount());
+
+		group.setInactive();
+		group.join(1000);
+		assertEquals(0, group.activeCount());
+		assertTrue(runs.get() >= 4);
+	}
+
+	@Test(timeout = 5000)
+	public void testInterrupt() throws InterruptedException {
+		final Thread[] threads = new Thread[2];
+
+		FactoryWorkerGroup group = new FactoryWorkerGroup("interrupt", 2, new IRunnableFactory() {
+
+			@Override
+			public Runnable newRunnable() {
+				return null;
+			}
+		}, new Executor() {
+
+			private int _i = 0;
+
+			@Override
+			public void execute(Runnable command) {
+				threads[_i] = new Thread(command);
+				threads[_i++].start();
+			}
+		}).setIdleStrategy(IdleStrategies.backoff(0, 0, 1, 1, TimeUnit.HOURS)).start();
+
+		threads[0].interrupt();
+		threads[0].join();
+
+		// interrupted worker isn't replaced
+		assertEquals(1, group.activeCount());
+		assertEquals(1, group.getWorkers());
+
+		threads[1].interrupt();
+		group.join();
+		assertEquals(0, group.activeCount());
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import at.molindo.utils.concurrent.IdleStrategies.BlockingIdleStrategy;
+
+public class IdleStrategiesTest {
+
+	@Test
+	public void backoff() {
+		final IIdleStrategy s = IdleStrategies.backoff(2, 1, 1, 8, TimeUnit.MILLISECONDS);
+		long start = System.nanoTime();
+		// spin, spin, yield
+		for (int i = 1; i <= 3; i++) {
+			s.idle(i);
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+
+		start = System.nanoTime();
+		// 1 + 2 + 4 + 8 + 8 ms
+		for (int i = 4; i <= 8; i++) {
+			s.idle(i);
+		}
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(23));
+
+		// no overflow for many consecutive idles
+		start = System.nanoTime();
+		s.idle(Integer.MAX_VALUE);
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test(timeout = 5000)
+	public void blocking() throws InterruptedException {
+		final BlockingIdleStrategy s = IdleStrategies.blocking(1, TimeUnit.HOURS);
+
+		final Thread t = new Thread() {
+			@Override
+			public void run() {
+				s.idle(1);
+			}
+		};
+		t.start();
+		while (t.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1);
+		}
+		s.signal();
+		t.join();
+
+		// signal before waiting isn't lost
+		s.signal();
+		s.idle(1);
+
+		final long start = System.nanoTime();
+		IdleStrategies.blocking(10, TimeUnit.MILLISECONDS).idle(1);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(9));
+	}
+
+	@Test(timeout = 5000)
+	public void blockingPermits() {
+		final BlockingIdleStrategy s = IdleStrategies.blocking(10, TimeUnit.MILLISECONDS);
+
+		// signals without waiting threads don't accumulate
+		s.signal();
+		s.signal();
+		s.signalAll();
+		s.idle(1);
+
+		final long start = System.nanoTime();
+		s.idle(1);
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(9));
+	}
+
+	@Test
+	public void yielding() {
+		IdleStrategies.yielding().idle(1);
+		IdleStrategies.busySpin().idle(1);
+		assertEquals("busySpin", IdleStrategies.busySpin().toString());
+	}
+}
@@ -18,10 +18,15 @@ package at.molindo.utils.concurrent;
 import static org.junit.Assert.*;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.junit.Test;
 
+import at.molindo.utils.concurrent.KeyLock.KeyLockedException;
+import at.molindo.utils.data.Pair;
+import at.molindo.utils.metric.percentile.PercentileCounter;
+
 public class KeyLockTest {
 
 	@Test
@@ -34,6 +39,9 @@ public class KeyLockTest {
 			}
 
 		};
+		final PercentileCounter waitTimes = new PercentileCounter(10000);
+		lock.setWaitTimes(waitTimes);
+
 		final Integer[] values = new Integer[2];
 		final Thread[] threads = new Thread[1];
 
@@ -77,6 +85,52 @@ public class KeyLockTest {
 		threads[0].join();
 
 		assertArrayEquals(new Integer[] { 42, 42 }, values);
+
+		assertEquals(2, lock.getAcquisitionCount());
+		assertEquals(1, lock.getContendedCount());
+		assertEquals(1, waitTimes.getTotal());
+		assertEquals(0, lock.getRejectionCount());
+		assertEquals(Arrays.asList(Pair.pair("foo", 1L)), lock.getTopContendedKeys(10));
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		final KeyLock<String, Integer> lock = KeyLock.newKeyLock(false);
+		final PercentileCounter waitTimes = new PercentileCounter(10, 100);
+		lock.setWaitTimes(waitTimes);
+
+		lock.withLock("foo", new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				assertTrue(lock.isLocked("foo"));
+				assertFalse(lock.isLocked("bar"));
+
+				for (int i = 0; i < 3; i++) {
+					try {
+						lock.withLock("foo", this);
+						fail();
+					} catch (final KeyLockedException e) {
+						assertEquals("foo", e.getKey());
+					}
+				}
+				return 42;
+			}
+		});
+
+		assertFalse(lock.isLocked("foo"));
+		assertEquals(4, lock.getAcquisitionCount());
+		assertEquals(0, lock.getContendedCount());
+		assertEquals(3, lock.getRejectionCount());
+		// only waiting calls are timed
+		assertEquals(0, waitTimes.getTotal());
+
+		final List<Pair<String, Long>> top = lock.getTopContendedKeys(1);
+		assertEquals(Arrays.asList(Pair.pair("foo", 3L)), top);
+
+		lock.resetStats();
+		assertEquals(0, lock.getAcquisitionCount());
+		assertEquals(0, lock.getTopContendedKeys(10).size());
 	}
 
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PrefetchingFactoryQueueTest {
+
+	private static PrefetchingFactoryQueue<Integer> q(int producers, int low, int high) {
+		return new PrefetchingFactoryQueue<Integer>(PrefetchingFactoryQueueTest.class.getSimpleName(), producers, low,
+				high) {
+
+			private final AtomicInteger _next = new AtomicInteger();
+
+			@Override
+			protected Integer create() {
+				return _next.getAndIncrement();
+			}
+
+		};
+	}
+
+	@Test(timeout = 5000)
+	public void watermarks() throws InterruptedException {
+		final PrefetchingFactoryQueue<Integer> q = q(2, 2, 5);
+
+		// not started, created inline
+		assertNull(q.poll());
+		assertNotNull(q.get());
+		assertEquals(1, q.getInlineCreatedCount());
+
+		q.start();
+		try {
+			while (q.size() < 5) {
+				Thread.sleep(1);
+			}
+			Thread.sleep(20);
+			assertEquals(5, q.size());
+			assertEquals(5, q.getProducedCount());
+
+			// above low watermark, no refill
+			q.take();
+			q.take();
+			Thread.sleep(20);
+			assertEquals(3, q.size());
+
+			// low watermark reached
+			q.take();
+			while (q.size() < 5) {
+				Thread.sleep(1);
+			}
+			assertEquals(8, q.getProducedCount());
+		} finally {
+			q.stop();
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void concurrent() throws InterruptedException {
+		final PrefetchingFactoryQueue<Integer> q = q(3, 4, 16).start();
+		final Set<Integer> values = new HashSet<Integer>();
+		try {
+			Thread[] consumers = new Thread[4];
+			for (int i = 0; i < consumers.length; i++) {
+				consumers[i] = new Thread() {
+					@Override
+					public void run() {
+						for (int j = 0; j < 1000; j++) {
+							try {
+								final Integer v = q.poll(1, TimeUnit.SECONDS);
+								synchronized (values) {
+									assertTrue(values.add(v));
+								}
+							} catch (InterruptedException e) {
+								throw new RuntimeException(e);
+							}
+						}
+					}
+				};
+				consumers[i].start();
+			}
+			for (Thread t : consumers) {
+				t.join();
+			}
+		} finally {
+			q.stop();
+		}
+		assertEquals(4000, values.size());
+		assertTrue(q.size() <= 16);
+	}
+}
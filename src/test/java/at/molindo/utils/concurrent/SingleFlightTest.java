@@ -0,0 +1,232 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	@Test
+	public void shared() throws Exception {
+		final SingleFlight<String, Integer> flight = SingleFlight.newSingleFlight();
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		final Integer[] values = new Integer[1];
+		final Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					values[0] = flight.get("foo", new Callable<Integer>() {
+
+						@Override
+						public Integer call() throws Exception {
+							calls.incrementAndGet();
+							started.countDown();
+							release.await();
+							return 42;
+						}
+					});
+				} catch (final Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		t.start();
+		started.await();
+
+		assertEquals(1, flight.activeCount());
+		assertEquals(Arrays.asList("foo"), flight.activeKeys());
+
+		final Future<Integer> f = flight.submit("foo", new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				throw new RuntimeException("must not be called");
+			}
+		});
+		assertSame(f, flight.getRunning("foo"));
+		assertFalse(f.isDone());
+		assertFalse(f.cancel(true));
+
+		try {
+			f.get(10, TimeUnit.MILLISECONDS);
+			fail();
+		} catch (final TimeoutException e) {
+			// expected
+		}
+
+		release.countDown();
+		assertEquals(Integer.valueOf(42), f.get());
+		t.join();
+
+		assertEquals(Integer.valueOf(42), values[0]);
+		assertEquals(1, calls.get());
+		assertEquals(0, flight.activeCount());
+		assertNull(flight.getRunning("foo"));
+
+		// next call runs again
+		assertEquals(Integer.valueOf(43), flight.get("foo", new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				return 43;
+			}
+		}));
+	}
+
+	@Test
+	public void exception() throws Exception {
+		final SingleFlight<String, Integer> flight = SingleFlight.newSingleFlight();
+		try {
+			flight.get("foo", new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					throw new IllegalStateException("expected");
+				}
+			});
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals("expected", e.getMessage());
+		}
+		assertEquals(0, flight.activeCount());
+	}
+
+	@Test
+	public void executor() throws Exception {
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final SingleFlight<String, Integer> flight = SingleFlight.newSingleFlight(executor);
+			final CountDownLatch release = new CountDownLatch(1);
+			final AtomicInteger calls = new AtomicInteger();
+
+			final Callable<Integer> callable = new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					calls.incrementAndGet();
+					release.await();
+					return 42;
+				}
+			};
+
+			final Future<Integer> f1 = flight.submit("foo", callable);
+			final Future<Integer> f2 = flight.submit("foo", callable);
+			assertSame(f1, f2);
+			assertFalse(f1.isDone());
+
+			release.countDown();
+			assertEquals(Integer.valueOf(42), flight.get("foo", callable, 1, TimeUnit.SECONDS));
+			assertTrue(f1.isDone());
+			assertEquals(Integer.valueOf(42), f2.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void rejected() throws Exception {
+		final List<SingleFlight<String, Integer>> holder = new ArrayList<SingleFlight<String, Integer>>();
+		final List<Future<Integer>> joined = new ArrayList<Future<Integer>>();
+		final SingleFlight<String, Integer> flight = SingleFlight.newSingleFlight(new Executor() {
+
+			@Override
+			public void execute(final Runnable command) {
+				// a concurrent caller joins before the executor rejects
+				joined.add(holder.get(0).getRunning("foo"));
+				throw new RejectedExecutionException("full");
+			}
+		});
+		holder.add(flight);
+
+		try {
+			flight.submit("foo", new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					return 42;
+				}
+			});
+			fail();
+		} catch (final RejectedExecutionException e) {
+			assertEquals("full", e.getMessage());
+		}
+		assertEquals(0, flight.activeCount());
+
+		final Future<Integer> f = joined.get(0);
+		assertTrue(f.isDone());
+		try {
+			f.get(1, TimeUnit.SECONDS);
+			fail();
+		} catch (final ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+	}
+
+	@Test
+	public void joinedException() throws Exception {
+		final SingleFlight<String, Integer> flight = SingleFlight.newSingleFlight();
+		final List<Future<Integer>> joined = new ArrayList<Future<Integer>>();
+
+		try {
+			flight.get("foo", new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					// a concurrent caller joins the inline call
+					joined.add(flight.getRunning("foo"));
+					assertSame(joined.get(0), flight.getRunning("foo"));
+					throw new IllegalStateException("expected");
+				}
+			});
+			fail();
+		} catch (final IllegalStateException e) {
+			assertEquals("expected", e.getMessage());
+		}
+		assertEquals(0, flight.activeCount());
+
+		try {
+			joined.get(0).get(1, TimeUnit.SECONDS);
+			fail();
+		} catch (final ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
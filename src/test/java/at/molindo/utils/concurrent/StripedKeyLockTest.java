@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import at.molindo.utils.concurrent.KeyLock.KeyLockedException;
+
+public class StripedKeyLockTest {
+
+	@Test
+	public void stripes() {
+		assertEquals(1, new StripedKeyLock<String, Integer>(1).stripes());
+		assertEquals(16, new StripedKeyLock<String, Integer>(10).stripes());
+
+		final StripedKeyLock<Integer, Integer> lock = StripedKeyLock.newStripedKeyLock(16);
+		final int[] used = new int[lock.stripes()];
+		for (int i = 0; i < 1600; i++) {
+			used[lock.stripe(i)]++;
+		}
+		for (final int u : used) {
+			assertTrue(u > 0);
+		}
+	}
+
+	@Test
+	public void withLock() throws Exception {
+		final StripedKeyLock<String, Integer> lock = StripedKeyLock.newStripedKeyLock(1);
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		final Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					lock.withLock("foo", new Callable<Integer>() {
+
+						@Override
+						public Integer call() throws Exception {
+							locked.countDown();
+							release.await();
+							return 1;
+						}
+					});
+				} catch (final Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		t.start();
+		locked.await();
+
+		assertTrue(lock.isLocked("bar"));
+		assertEquals(1, lock.activeCount());
+
+		final Thread releaser = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (final InterruptedException e) {
+					// ignore
+				}
+				release.countDown();
+			}
+		};
+		releaser.start();
+
+		// same stripe, waits and runs own callable
+		assertEquals(Integer.valueOf(2), lock.withLock("bar", new Callable<Integer>() {
+
+			@Override
+			public Integer call() throws Exception {
+				// reentrant
+				return lock.withLock("foo", new Callable<Integer>() {
+
+					@Override
+					public Integer call() throws Exception {
+						return 2;
+					}
+				});
+			}
+		}));
+		t.join();
+		releaser.join();
+
+		assertFalse(lock.isLocked("foo"));
+		assertArrayEquals(new long[] { 1 }, lock.getWaitCounts());
+		assertTrue(lock.getWaitNanos()[0] > 0);
+
+		lock.resetStats();
+		assertArrayEquals(new long[] { 0 }, lock.getWaitCounts());
+	}
+
+	@Test
+	public void failFast() throws Exception {
+		final StripedKeyLock<String, Integer> lock = StripedKeyLock.newStripedKeyLock(1, false);
+		final CountDownLatch locked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		final Thread t = new Thread() {
+			@Override
+			public void run() {
+				try {
+					lock.withLock("foo", new Callable<Integer>() {
+
+						@Override
+						public Integer call() throws Exception {
+							locked.countDown();
+							release.await();
+							return 1;
+						}
+					});
+				} catch (final Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		t.start();
+		locked.await();
+
+		try {
+			lock.withLock("bar", new Callable<Integer>() {
+
+				@Override
+				public Integer call() throws Exception {
+					throw new RuntimeException("must not be called");
+				}
+			});
+			fail();
+		} catch (final KeyLockedException e) {
+			assertEquals("bar", e.getKey());
+		} finally {
+			release.countDown();
+			t.join();
+		}
+
+		assertArrayEquals(new long[] { 1 }, lock.getRejectionCounts());
+		assertArrayEquals(new long[] { 0 }, lock.getWaitCounts());
+	}
+}
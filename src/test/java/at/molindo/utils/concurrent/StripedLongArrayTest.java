@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.concurrent;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StripedLongArrayTest {
+
+	@Test
+	public void test() {
+		StripedLongArray a = new StripedLongArray(3, 3);
+		assertEquals(4, a.stripes());
+		assertEquals(3, a.length());
+
+		a.increment(0);
+		a.add(2, 5);
+		a.add(2, -1);
+
+		assertEquals(1, a.get(0));
+		assertEquals(0, a.get(1));
+		assertEquals(4, a.get(2));
+		assertEquals(5, a.sum());
+		assertArrayEquals(new long[] { 1, 0, 4 }, a.toArray());
+
+		a.reset();
+		assertEquals(0, a.sum());
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void outOfBounds() {
+		new StripedLongArray(3).increment(3);
+	}
+
+	@Test
+	public void concurrent() throws InterruptedException {
+		final StripedLongArray a = new StripedLongArray(2, 2);
+		final StripedCounter c = new StripedCounter();
+
+		Thread[] threads = new Thread[5];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 100000; j++) {
+						a.increment(j & 1);
+						c.increment();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertArrayEquals(new long[] { 250000, 250000 }, a.toArray());
+		assertEquals(500000, c.sum());
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferInputStreamTest {
+
+	@Test
+	public void test() throws IOException {
+		final ByteBuffer buf = ByteBuffer.allocate(8);
+
+		final ByteBufferOutputStream out = new ByteBufferOutputStream(buf);
+		out.write(0xFF);
+		out.write(new byte[] { 1, 2, 3 });
+		assertEquals(4, buf.position());
+
+		buf.flip();
+		final ByteBufferInputStream in = new ByteBufferInputStream(buf);
+		assertEquals(4, in.available());
+		assertEquals(0xFF, in.read());
+
+		final byte[] b = new byte[5];
+		assertEquals(3, in.read(b));
+		assertArrayEquals(new byte[] { 1, 2, 3, 0, 0 }, b);
+		assertEquals(-1, in.read());
+		assertEquals(-1, in.read(b));
+	}
+
+	@Test(expected = BufferOverflowException.class)
+	public void overflow() throws IOException {
+		new ByteBufferOutputStream(ByteBuffer.allocate(2)).write(new byte[3]);
+	}
+}
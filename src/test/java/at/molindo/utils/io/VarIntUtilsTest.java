@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class VarIntUtilsTest {
+
+	private static final long[] VALUES = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE,
+			-1, -300, Long.MIN_VALUE };
+
+	@Test
+	public void buffer() {
+		final ByteBuffer buf = ByteBuffer.allocate(VALUES.length * 2 * VarIntUtils.MAX_LENGTH);
+		for (final long v : VALUES) {
+			final int pos = buf.position();
+			VarIntUtils.write(v, buf);
+			assertEquals(VarIntUtils.length(v), buf.position() - pos);
+			VarIntUtils.writeSigned(v, buf);
+		}
+
+		buf.flip();
+		for (final long v : VALUES) {
+			assertEquals(v, VarIntUtils.read(buf));
+			assertEquals(v, VarIntUtils.readSigned(buf));
+		}
+		assertEquals(0, buf.remaining());
+	}
+
+	@Test
+	public void stream() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (final long v : VALUES) {
+			VarIntUtils.write(v, out);
+			VarIntUtils.writeSigned(v, out);
+		}
+
+		final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		for (final long v : VALUES) {
+			assertEquals(v, VarIntUtils.read(in));
+			assertEquals(v, VarIntUtils.readSigned(in));
+		}
+	}
+
+	@Test
+	public void encoding() {
+		final ByteBuffer buf = ByteBuffer.allocate(2);
+		VarIntUtils.write(300, buf);
+		assertArrayEquals(new byte[] { (byte) 0xAC, 0x02 }, buf.array());
+
+		assertEquals(1, VarIntUtils.length(0));
+		assertEquals(9, VarIntUtils.length(Long.MAX_VALUE));
+		assertEquals(10, VarIntUtils.length(-1));
+		assertEquals(1, VarIntUtils.signedLength(-1));
+
+		assertEquals(0, VarIntUtils.zigZag(0));
+		assertEquals(1, VarIntUtils.zigZag(-1));
+		assertEquals(2, VarIntUtils.zigZag(1));
+		assertEquals(Long.MIN_VALUE, VarIntUtils.unZigZag(VarIntUtils.zigZag(Long.MIN_VALUE)));
+	}
+
+	@Test(expected = EOFException.class)
+	public void truncated() throws IOException {
+		VarIntUtils.read(new ByteArrayInputStream(new byte[] { (byte) 0x80 }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void malformed() {
+		final byte[] bytes = new byte[11];
+		Arrays.fill(bytes, (byte) 0x80);
+		VarIntUtils.read(ByteBuffer.wrap(bytes));
+	}
+}
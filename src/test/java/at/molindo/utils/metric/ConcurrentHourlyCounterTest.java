@@ -0,0 +1,131 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ConcurrentHourlyCounterTest {
+
+	private static final long HOUR = 3600000L;
+
+	private long _now = 1000 * HOUR;
+
+	private ConcurrentHourlyCounter counter(final int hours) {
+		return new ConcurrentHourlyCounter(hours) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected long currentMillis() {
+				return _now;
+			}
+		};
+	}
+
+	@Test
+	public void rotate() {
+		final ConcurrentHourlyCounter c = counter(3);
+
+		c.increment(5);
+		assertEquals(5, c.getCount());
+
+		_now += HOUR;
+		c.increment(2);
+		c.increment();
+		assertEquals(3, c.getCount());
+		assertEquals(5, c.getCount(-1));
+		assertArrayEquals(new int[] { 0, 5, 3 }, c.getData());
+		assertEquals(5, c.getMax());
+		assertEquals(5, c.getMin());
+
+		// skip an hour
+		_now += 2 * HOUR;
+		c.increment(1);
+		assertArrayEquals(new int[] { 3, 0, 1 }, c.getData());
+		assertEquals(5, c.getMax());
+		assertEquals(3, c.getMin());
+
+		// evict all but current
+		_now += 3 * HOUR;
+		c.increment(4);
+		assertArrayEquals(new int[] { 0, 0, 4 }, c.getData());
+		assertEquals(5, c.getMax());
+		assertEquals(1, c.getMin());
+	}
+
+	@Test
+	public void bean() {
+		final ConcurrentHourlyCounter c = counter(4);
+		c.increment(1);
+		_now += HOUR;
+		c.increment(2);
+
+		final HourlyCounterBean bean = c.toHourlyCounterBean();
+		assertEquals(1, bean.getMax());
+		assertEquals(1, bean.getMin());
+		assertEquals(1001, bean.getCurrentIndex());
+
+		final HourlyCounter hc = bean.toHourlyCounter();
+		assertEquals(2, hc.getCount(0));
+		assertEquals(1, hc.getCount(1));
+
+		final ConcurrentHourlyCounter copy = new ConcurrentHourlyCounter(bean) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected long currentMillis() {
+				return _now;
+			}
+		};
+		assertArrayEquals(c.getData(), copy.getData());
+		assertEquals(c.getMax(), copy.getMax());
+	}
+
+	@Test
+	public void concurrent() throws InterruptedException {
+		final ConcurrentHourlyCounter c = counter(2);
+
+		final Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 100000; j++) {
+						c.increment();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(800000, c.getCount());
+	}
+
+	@Test
+	public void saturate() {
+		final ConcurrentHourlyCounter c = counter(2);
+		c.increment(Integer.MAX_VALUE);
+		c.increment(Integer.MAX_VALUE);
+		assertEquals(Integer.MAX_VALUE, c.getCount());
+		assertArrayEquals(new int[] { 0, Integer.MAX_VALUE }, c.getData());
+	}
+}
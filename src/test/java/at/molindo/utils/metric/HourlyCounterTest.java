@@ -0,0 +1,91 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import at.molindo.utils.system.ManualClock;
+
+public class HourlyCounterTest {
+
+	@Test
+	public void rotate() {
+		final ManualClock clock = new ManualClock(TimeUnit.HOURS.toMillis(1000));
+		final HourlyCounter c = new HourlyCounter(3, 60, clock);
+
+		c.increment(5);
+		assertEquals(5, c.getCount());
+
+		clock.advance(1, TimeUnit.HOURS);
+		c.increment(2);
+		assertEquals(2, c.getCount());
+		assertArrayEquals(new int[] { 0, 5, 2 }, c.getData());
+		assertEquals(5, c.getMax());
+
+		// granularity
+		final HourlyCounter q = new HourlyCounter(1, 15, clock);
+		q.increment();
+		clock.advance(15, TimeUnit.MINUTES);
+		q.increment(3);
+		assertArrayEquals(new int[] { 0, 0, 1, 3 }, q.getData());
+	}
+
+	@Test
+	public void codec() throws IOException {
+		final ManualClock clock = new ManualClock(TimeUnit.HOURS.toMillis(1000));
+		final HourlyCounter c = new HourlyCounter(24, 60, clock);
+		c.setTitle("requests");
+		for (int i = 0; i < 30; i++) {
+			c.increment(1000 + i % 3);
+			clock.advance(1, TimeUnit.HOURS);
+		}
+		c.increment(7);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		c.write(out);
+		// about 1 byte per value, including title and header
+		assertTrue(out.size() < 2 * 24 + 10);
+
+		final HourlyCounter r = HourlyCounter.read(new ByteArrayInputStream(out.toByteArray()), clock);
+		assertEquals("requests", r.getTitle());
+		assertArrayEquals(c.getData(), r.getData());
+		assertEquals(c.getMax(), r.getMax());
+		assertEquals(c.getMin(), r.getMin());
+		assertEquals(7, r.getCount());
+	}
+
+	@Test
+	public void values() {
+		final HourlyCounterBean bean = new HourlyCounterBean();
+		bean.setArray(new int[] { 1, -2, 300, 0 });
+		assertEquals("1 -2 300 0", bean.getValues());
+
+		bean.setValues("4  5");
+		assertArrayEquals(new int[] { 4, 0, 5 }, bean.getArray());
+
+		bean.setValues("");
+		assertArrayEquals(new int[] { 0 }, bean.getArray());
+	}
+}
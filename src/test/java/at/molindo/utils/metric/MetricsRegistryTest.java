@@ -0,0 +1,154 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import at.molindo.utils.io.FileUtils;
+import at.molindo.utils.metric.percentile.ConcurrentPercentileCounter;
+import at.molindo.utils.metric.percentile.PercentileSnapshot;
+import at.molindo.utils.system.ManualClock;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void register() {
+		final MetricsRegistry registry = new MetricsRegistry();
+		final HourlyCounter counter = registry.register("requests", new HourlyCounter());
+		final ConcurrentPercentileCounter pc = registry.register("latency", new ConcurrentPercentileCounter(10, 100));
+
+		assertSame(counter, registry.getCounter("requests"));
+		assertSame(pc, registry.getPercentileCounter("latency"));
+		assertNull(registry.getCounter("latency"));
+		assertEquals(Arrays.asList("latency", "requests"), Arrays.asList(registry.getNames().toArray()));
+
+		assertEquals(1, registry.toStatistics().getCounters().size());
+
+		assertTrue(registry.unregister("requests"));
+		assertFalse(registry.unregister("requests"));
+		assertNull(registry.getCounter("requests"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicate() {
+		final MetricsRegistry registry = new MetricsRegistry();
+		registry.register("foo", new HourlyCounter());
+		registry.register("foo", new ConcurrentPercentileCounter(10));
+	}
+
+	@Test
+	public void export() {
+		final ManualClock clock = new ManualClock(1000);
+		final MetricsRegistry registry = new MetricsRegistry(clock);
+		final HourlyCounter counter = registry.register("requests", new HourlyCounter(24, 1, clock));
+		final ConcurrentPercentileCounter pc = registry.register("latency", new ConcurrentPercentileCounter(10, 100));
+
+		final RingMetricsSink sink = new RingMetricsSink(2);
+		registry.addSink(new IMetricsSink() {
+
+			@Override
+			public void export(final MetricsSnapshot snapshot) throws IOException {
+				throw new IOException("expected");
+			}
+		});
+		registry.addSink(sink);
+
+		counter.increment(3);
+		pc.increment(5);
+		pc.increment(50);
+
+		final MetricsSnapshot snapshot = registry.export();
+		assertSame(snapshot, sink.getLast());
+		assertEquals(1000, snapshot.getTimestamp());
+		assertEquals(Integer.valueOf(3), snapshot.getCounts().get("requests"));
+
+		final PercentileSnapshot ps = snapshot.getPercentiles().get("latency");
+		assertEquals(2, ps.getTotal());
+		assertEquals(10, ps.estimatePercentile(50.0, TimeUnit.MILLISECONDS));
+
+		// snapshots are immutable
+		counter.increment();
+		assertEquals(Integer.valueOf(3), snapshot.getCounts().get("requests"));
+
+		clock.advance(1, TimeUnit.SECONDS);
+		registry.export();
+		registry.export();
+		assertEquals(2, sink.getSnapshots().size());
+		assertEquals(2000, sink.getLast().getTimestamp());
+		assertEquals(Integer.valueOf(4), sink.getLast().getCounts().get("requests"));
+	}
+
+	@Test
+	public void start() throws InterruptedException {
+		final MetricsRegistry registry = new MetricsRegistry();
+		registry.register("requests", new HourlyCounter());
+		final RingMetricsSink sink = new RingMetricsSink(10);
+		registry.addSink(sink);
+
+		registry.start(10, TimeUnit.MILLISECONDS);
+		try {
+			assertTrue(registry.isStarted());
+			for (int i = 0; i < 500 && sink.getSnapshots().size() < 2; i++) {
+				Thread.sleep(10);
+			}
+			assertTrue(sink.getSnapshots().size() >= 2);
+		} finally {
+			registry.stop();
+		}
+		assertFalse(registry.isStarted());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void startTwice() {
+		final MetricsRegistry registry = new MetricsRegistry();
+		registry.start(1, TimeUnit.HOURS);
+		try {
+			registry.start(1, TimeUnit.HOURS);
+		} finally {
+			registry.stop();
+		}
+	}
+
+	@Test
+	public void fileSink() throws IOException {
+		final File file = File.createTempFile("metrics", ".log");
+		try {
+			final MetricsRegistry registry = new MetricsRegistry(new ManualClock(1000));
+			registry.register("requests", new HourlyCounter()).increment(2);
+			registry.addSink(new FileMetricsSink(file));
+
+			registry.export();
+			registry.export();
+
+			final String content = new String(FileUtils.bytes(file), "UTF-8");
+			assertEquals(2, content.split("\n").length);
+			assertTrue(content, content.contains("requests=2"));
+		} finally {
+			file.delete();
+		}
+	}
+}
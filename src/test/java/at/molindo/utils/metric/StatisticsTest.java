@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import at.molindo.utils.metric.percentile.IntervalPercentileCounter;
+
+public class StatisticsTest {
+
+	@Test
+	public void codec() {
+		final Statistics s = new Statistics();
+
+		final HourlyCounter hc = new HourlyCounter(24);
+		hc.increment(5);
+		s.getCounters().add(hc);
+
+		final ConcurrentHourlyCounter chc = new ConcurrentHourlyCounter(24, 30);
+		chc.setTitle("concurrent");
+		chc.increment(3);
+		s.getCounters().add(chc);
+
+		final IntervalPercentileCounter ipc = new IntervalPercentileCounter(TimeUnit.HOURS, 24, TimeUnit.MILLISECONDS,
+				10, 100, 1000);
+		ipc.increment(50);
+		s.getIntervalPercentileCounters().add(ipc);
+
+		final byte[] bytes = s.toByteArray();
+		final Statistics r = Statistics.fromByteArray(bytes);
+
+		assertEquals(2, r.getCounters().size());
+		assertArrayEquals(hc.getData(), ((HourlyCounter) r.getCounters().get(0)).getData());
+		assertEquals("concurrent", r.getCounters().get(1).getTitle());
+		assertArrayEquals(chc.getData(), ((ConcurrentHourlyCounter) r.getCounters().get(1)).getData());
+
+		assertEquals(1, r.getIntervalPercentileCounters().size());
+		assertEquals(ipc.toList(), r.getIntervalPercentileCounters().get(0).toList());
+
+		// ByteBuffer
+		final ByteBuffer buf = ByteBuffer.allocate(bytes.length + 10);
+		s.write(buf);
+		assertEquals(bytes.length, buf.position());
+		buf.flip();
+		assertEquals(ipc.toList(), Statistics.read(buf).getIntervalPercentileCounters().get(0).toList());
+		assertEquals(0, buf.remaining());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncated() {
+		final Statistics s = new Statistics();
+		s.getCounters().add(new HourlyCounter());
+		final byte[] bytes = s.toByteArray();
+		Statistics.read(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+	}
+}
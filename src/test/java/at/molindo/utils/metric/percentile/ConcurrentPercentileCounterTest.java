@@ -0,0 +1,111 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrentPercentileCounterTest {
+
+	@Test
+	public void test() {
+		final ConcurrentPercentileCounter rp = new ConcurrentPercentileCounter(10, 100, 1000);
+
+		rp.increment(3);
+		rp.increment(4);
+		rp.increment(23);
+		rp.increment(124);
+		rp.increment(1433);
+
+		final List<Percentile> list = rp.toList();
+
+		assertEquals(5, rp.getTotal());
+		assertEquals(3, list.size());
+
+		a(list.get(0), 40.0, 2, 10, 5);
+		a(list.get(1), 60.0, 3, 100, 5);
+		a(list.get(2), 80.0, 4, 1000, 5);
+
+		assertEquals(10, rp.estimatePercentile(40.0));
+		assertEquals(100, rp.estimatePercentile(50.0));
+		assertEquals(Integer.MAX_VALUE, rp.estimatePercentile(80.1));
+
+		assertEquals(new PercentileCounter(10, 100, 1000) {
+			private static final long serialVersionUID = 1L;
+
+			{
+				increment(3);
+				increment(4);
+				increment(23);
+				increment(124);
+				increment(1433);
+			}
+		}.toList(), list);
+
+		rp.clear();
+		assertEquals(0, rp.getTotal());
+	}
+
+	@Test
+	public void concurrent() throws InterruptedException {
+		final ConcurrentPercentileCounter rp = new ConcurrentPercentileCounter(TimeUnit.MILLISECONDS, 10, 100);
+
+		final int threads = 8;
+		final int increments = 100000;
+
+		final Thread[] t = new Thread[threads];
+		for (int i = 0; i < t.length; i++) {
+			t[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < increments; j++) {
+						rp.increment(j % 200);
+					}
+				}
+			};
+			t[i].start();
+		}
+		for (int i = 0; i < t.length; i++) {
+			t[i].join();
+		}
+
+		assertEquals(threads * increments, rp.getLongTotal());
+
+		final List<Percentile> list = rp.toList();
+		// 0-10, 0-100, 100 of 200 exceed max limit
+		assertEquals(threads * increments / 200 * 11, list.get(0).getLongSum());
+		assertEquals(threads * increments / 200 * 101, list.get(1).getLongSum());
+	}
+
+	@Test
+	public void longTotal() {
+		final Percentile p = new Percentile(Integer.MAX_VALUE + 1L, 2L * Integer.MAX_VALUE, 10);
+		assertEquals(Integer.MAX_VALUE, p.getSum());
+		assertEquals(Integer.MAX_VALUE, p.getTotal());
+		assertEquals(50.0, p.getPercentage(), 0.01);
+	}
+
+	private void a(final Percentile p, final double percentage, final int sum, final int limit, final int total) {
+		assertEquals("expected " + percentage, percentage, p.getPercentage(), 0.01);
+		assertEquals(p.getSum(), sum);
+		assertEquals(p.getLimit(), limit);
+		assertEquals(p.getTotal(), total);
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class HistogramPercentileCounterTest {
+
+	@Test
+	public void percentiles() {
+		final HistogramPercentileCounter c = new HistogramPercentileCounter(TimeUnit.MICROSECONDS,
+				TimeUnit.MINUTES.toMicros(1), 3, 1, 5, 10);
+
+		// 1 to 10000 microseconds
+		for (int i = 1; i <= 10000; i++) {
+			c.record(i);
+		}
+
+		assertEquals(10000, c.getTotal());
+
+		// 3 significant digits
+		assertEquals(5000, c.getValueAtPercentile(50.0), 5);
+		assertEquals(9900, c.getValueAtPercentile(99.0), 10);
+		assertEquals(9990, c.getValueAtPercentile(99.9), 10);
+		assertEquals(10000, c.getValueAtPercentile(100.0), 10);
+		assertEquals(1, c.getValueAtPercentile(0.0));
+
+		// milliseconds, rounded up (5000 is recorded in a bucket up to 5003)
+		assertEquals(6, c.estimatePercentile(50.0));
+		assertEquals(10, c.estimatePercentile(99.9));
+
+		final List<Percentile> list = c.toList();
+		assertEquals(3, list.size());
+		a(list.get(0), 10.0, 1000, 1, 10000);
+		// bucket containing the limit is counted (5000 to 5003)
+		a(list.get(1), 50.03, 5003, 5, 10000);
+		a(list.get(2), 100.0, 10000, 10, 10000);
+
+		c.clear();
+		assertEquals(0, c.getTotal());
+		assertEquals(0, c.getValueAtPercentile(99.0));
+	}
+
+	@Test
+	public void precision() {
+		final HistogramPercentileCounter c = new HistogramPercentileCounter(TimeUnit.NANOSECONDS, Long.MAX_VALUE / 2,
+				2, 1);
+
+		for (long v = 1; v < Long.MAX_VALUE / 4; v = v * 3 + 1) {
+			c.clear();
+			c.record(v);
+			final long recorded = c.getValueAtPercentile(100.0);
+			assertEquals("value " + v, v, recorded, Math.max(1, v / 100.0));
+		}
+	}
+
+	@Test
+	public void clamp() {
+		final HistogramPercentileCounter c = new HistogramPercentileCounter(TimeUnit.MILLISECONDS, 1000, 2, 10);
+		c.record(-5);
+		c.increment(Integer.MAX_VALUE);
+
+		assertEquals(2, c.getTotal());
+		assertEquals(0, c.getValueAtPercentile(50.0));
+		assertEquals(1000, c.getValueAtPercentile(100.0));
+	}
+
+	@Test
+	public void interval() {
+		final IntervalPercentileCounter c = new IntervalPercentileCounter(TimeUnit.HOURS, 24,
+				HistogramPercentileCounter.factory(TimeUnit.MICROSECONDS, TimeUnit.SECONDS.toMicros(10), 2, 10, 100));
+
+		for (int i = 0; i < 100; i++) {
+			c.increment(i);
+		}
+
+		assertEquals(100, c.getTotal());
+		assertEquals(2, c.getLimits().length);
+		assertEquals(50, c.estimatePercentile(50.0), 1);
+		assertEquals(11, c.toList().get(0).getSum());
+	}
+
+	private void a(final Percentile p, final double percentage, final int sum, final int limit, final int total) {
+		assertEquals("expected " + percentage, percentage, p.getPercentage(), 0.01);
+		assertEquals(sum, p.getSum());
+		assertEquals(limit, p.getLimit());
+		assertEquals(total, p.getTotal());
+	}
+}
@@ -15,14 +15,23 @@
  */
 package at.molindo.utils.metric.percentile;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import at.molindo.utils.data.SerializationUtils;
+import at.molindo.utils.io.StreamUtils;
+
+import at.molindo.utils.system.ManualClock;
+
 public class IntervalPercentileCounterTest {
 
 	private static Date NOW = new Date();
@@ -101,6 +110,128 @@ public class IntervalPercentileCounterTest {
 		// System.out.println(IntervalPercentileChartImage.getImageSourceModel(c).getUrl());
 	}
 
+	@Test
+	public void codec() throws IOException {
+		final ManualClock clock = new ManualClock(TimeUnit.HOURS.toMillis(1000));
+		final IntervalPercentileCounter c = new IntervalPercentileCounter(TimeUnit.HOURS, 3,
+				ConcurrentPercentileCounter.factory(TimeUnit.MICROSECONDS, 100, 1000), clock);
+		c.setTitle("test");
+
+		c.recordNanos(50000);
+		clock.advance(1, TimeUnit.HOURS);
+		c.recordNanos(500000);
+		c.increment(5);
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		c.write(out);
+
+		clock.advance(5, TimeUnit.HOURS);
+		final IntervalPercentileCounter r = IntervalPercentileCounter.read(
+				new ByteArrayInputStream(out.toByteArray()), clock);
+
+		assertEquals("test", r.getTitle());
+		assertEquals(3, r.getLongTotal());
+		assertEquals(c.toList(), r.toList());
+		assertEquals(3, r.toCountersList().size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(c.toCountersList().get(i).toSnapshot(), r.toCountersList().get(i).toSnapshot());
+		}
+
+		// most recent interval is current at time of reading
+		r.recordNanos(50000);
+		assertEquals(4, r.getTotal());
+		assertEquals(3, r.toSnapshot().getTotal());
+		assertEquals(1, r.toCountersList().get(1).toSnapshot().getTotal());
+
+		clock.advance(1, TimeUnit.HOURS);
+		r.recordNanos(50000);
+		assertEquals(1, r.toSnapshot().getTotal());
+		assertEquals(3, r.toCountersList().get(1).toSnapshot().getTotal());
+	}
+
+	@Test
+	public void codecHistogram() throws IOException {
+		final IntervalPercentileCounter c = new IntervalPercentileCounter(TimeUnit.MINUTES, 2,
+				HistogramPercentileCounter.factory(TimeUnit.MICROSECONDS, 1000000, 2, 1, 10));
+		c.increment(1);
+		c.increment(2);
+		c.increment(20);
+		c.recordNanos(TimeUnit.MICROSECONDS.toNanos(1234));
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		c.write(out);
+		final IntervalPercentileCounter r = IntervalPercentileCounter.read(new ByteArrayInputStream(out
+				.toByteArray()));
+
+		assertEquals(c.toList(), r.toList());
+		assertEquals(4, r.getTotal());
+
+		// all buckets restored, not only counts per limit
+		for (final double p : new double[] { 25, 50, 75, 100 }) {
+			assertEquals(c.estimatePercentile(p, TimeUnit.MICROSECONDS),
+					r.estimatePercentile(p, TimeUnit.MICROSECONDS));
+		}
+		assertEquals(1234, r.estimatePercentile(50, TimeUnit.MICROSECONDS), 12);
+	}
+
+	@Test
+	public void concurrent() throws InterruptedException {
+		// backed by ConcurrentPercentileCounter by default
+		final IntervalPercentileCounter c = new IntervalPercentileCounter(TimeUnit.HOURS, 2, 10, 100) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected long currentMillis() {
+				return NOW.getTime();
+			}
+		};
+
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						c.increment(j % 20);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (final Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals(40000, c.getTotal());
+		assertEquals(22000, c.toList().get(0).getSum());
+		assertEquals(40000, c.toList().get(1).getSum());
+	}
+
+	@Test
+	public void deserializeIntTotal() throws IOException, ClassNotFoundException {
+		// serialized by 3.0, keeping an int total and PercentileCounter[]
+		final byte[] bytes = StreamUtils.bytes(IntervalPercentileCounterTest.class
+				.getResourceAsStream("IntervalPercentileCounter-3.0.ser"));
+		final IntervalPercentileCounter c = SerializationUtils.deserialize(bytes, IntervalPercentileCounter.class);
+
+		assertEquals("old", c.getTitle());
+		assertEquals(3, c.getLongTotal());
+		assertArrayEquals(new long[] { 10, 100 }, c.getLimits(TimeUnit.MILLISECONDS));
+		assertEquals(3, c.toSnapshot().getTotal());
+		assertEquals(2, c.toList().get(1).getSum());
+
+		// counters created for new intervals use the same limits
+		c.clear();
+		c.increment(50);
+		assertEquals(4, c.getLongTotal());
+		assertArrayEquals(new long[] { 10, 100 }, c.getLimits(TimeUnit.MILLISECONDS));
+
+		// current form
+		final IntervalPercentileCounter copy = SerializationUtils.copy(c, IntervalPercentileCounter.class);
+		assertEquals(4, copy.getLongTotal());
+		assertEquals(c.toList(), copy.toList());
+	}
+
 	private void a(final Percentile p, final double percentage, final int sum, final int limit, final int total) {
 		assertEquals("expected " + percentage, percentage, p.getPercentage(), 0.01);
 		assertEquals(p.getSum(), sum);
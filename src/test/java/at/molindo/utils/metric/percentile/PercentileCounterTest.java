@@ -15,12 +15,19 @@
  */
 package at.molindo.utils.metric.percentile;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import at.molindo.utils.data.SerializationUtils;
+import at.molindo.utils.io.StreamUtils;
+import at.molindo.utils.system.SystemClock;
+
 public class PercentileCounterTest {
 
 	@Test
@@ -69,10 +76,78 @@ public class PercentileCounterTest {
 		assertEquals(3, rp.index(1500));
 	}
 
+	@Test
+	public void nanos() {
+		final PercentileCounter rp = new PercentileCounter(TimeUnit.MICROSECONDS, 100, 500, 2000);
+
+		rp.recordNanos(TimeUnit.MICROSECONDS.toNanos(50));
+		rp.recordNanos(TimeUnit.MICROSECONDS.toNanos(100));
+		rp.recordNanos(TimeUnit.MICROSECONDS.toNanos(100) + 1);
+		rp.increment(1);
+		rp.increment(3);
+
+		assertEquals(5, rp.getTotal());
+
+		final List<Percentile> list = rp.toList();
+		assertEquals(100, list.get(0).getLimit(TimeUnit.MICROSECONDS));
+		assertEquals(0, list.get(0).getLimit());
+		assertEquals(2, list.get(0).getSum());
+		assertEquals(3, list.get(1).getSum());
+		assertEquals(4, list.get(2).getSum());
+		assertEquals("2 (40.00%) <= 100 us", list.get(0).toString());
+		assertEquals("4 (80.00%) <= 2 ms", list.get(2).toString());
+
+		assertEquals(500, rp.estimatePercentile(60.0, TimeUnit.MICROSECONDS));
+		assertEquals(Long.MAX_VALUE, rp.estimatePercentile(90.0, TimeUnit.MICROSECONDS));
+		// rounded up
+		assertEquals(1, rp.estimatePercentile(40.0));
+
+		assertEquals(0, rp.getLimits()[1]);
+		assertEquals(500, rp.getLimits(TimeUnit.MICROSECONDS)[1]);
+	}
+
 	private void a(final Percentile p, final double percentage, final int sum, final int limit, final int total) {
 		assertEquals("expected " + percentage, percentage, p.getPercentage(), 0.01);
 		assertEquals(p.getSum(), sum);
 		assertEquals(p.getLimit(), limit);
 		assertEquals(p.getTotal(), total);
 	}
+
+	@Test
+	public void deserializeMillisLimits() throws IOException, ClassNotFoundException {
+		// serialized by 3.0, keeping int limits in milliseconds
+		final byte[] bytes = StreamUtils.bytes(PercentileCounterTest.class
+				.getResourceAsStream("PercentileCounter-3.0.ser"));
+		final PercentileCounter c = SerializationUtils.deserialize(bytes, PercentileCounter.class);
+
+		assertEquals("old", c.getTitle());
+		assertEquals(3, c.getTotal());
+		assertEquals(SystemClock.INSTANCE, c.getClock());
+		assertArrayEquals(new long[] { 10000000, 100000000 }, c.getLimits(TimeUnit.NANOSECONDS));
+
+		final List<Percentile> list = c.toList();
+		assertEquals(1, list.get(0).getSum());
+		assertEquals(2, list.get(1).getSum());
+
+		c.recordNanos(50);
+		assertEquals(2, c.toList().get(0).getSum());
+
+		// current form
+		final PercentileCounter copy = SerializationUtils.copy(c, PercentileCounter.class);
+		assertEquals(c.toList(), copy.toList());
+	}
+
+	@Test
+	public void deserializePercentile() throws IOException, ClassNotFoundException {
+		// serialized by 3.0, keeping int fields
+		final byte[] bytes = StreamUtils.bytes(PercentileCounterTest.class.getResourceAsStream("Percentile-3.0.ser"));
+		final Percentile p = SerializationUtils.deserialize(bytes, Percentile.class);
+
+		assertEquals(new Percentile(2, 3, 100), p);
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), p.getLimit(TimeUnit.NANOSECONDS));
+
+		// current form
+		final Percentile large = new Percentile(Integer.MAX_VALUE + 1L, Integer.MAX_VALUE + 2L, 1, TimeUnit.MICROSECONDS);
+		assertEquals(large, SerializationUtils.copy(large, Percentile.class));
+	}
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import at.molindo.utils.data.SerializationUtils;
+
+public class PercentileSnapshotTest {
+
+	@Test
+	public void snapshot() {
+		final PercentileCounter c = new PercentileCounter(10, 100, 1000);
+		c.increment(3);
+		c.increment(4);
+		c.increment(23);
+		c.increment(1433);
+
+		final PercentileSnapshot s = c.toSnapshot();
+		assertEquals(4, s.getTotal());
+		assertArrayEquals(new long[] { 2, 1, 0, 1 }, s.getCounts());
+		assertArrayEquals(new long[] { 10, 100, 1000 }, s.getLimits(TimeUnit.MILLISECONDS));
+		assertEquals(c.toList(), s.toList());
+		assertEquals(100, s.estimatePercentile(75.0, TimeUnit.MILLISECONDS));
+
+		// immutable
+		c.increment(5);
+		assertEquals(4, s.getTotal());
+	}
+
+	@Test
+	public void merge() {
+		final ConcurrentPercentileCounter c1 = new ConcurrentPercentileCounter(10, 100);
+		final ConcurrentPercentileCounter c2 = new ConcurrentPercentileCounter(10, 100);
+		c1.increment(5);
+		c2.increment(50);
+		c2.increment(500);
+
+		final PercentileSnapshot merged = c1.toSnapshot().merge(c2.toSnapshot());
+		assertEquals(3, merged.getTotal());
+		assertArrayEquals(new long[] { 1, 1, 1 }, merged.getCounts());
+
+		assertEquals(merged, PercentileSnapshot.merge(Arrays.asList(c1.toSnapshot(), c2.toSnapshot())));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void mergeIncompatible() {
+		new PercentileCounter(10, 100).toSnapshot().merge(new PercentileCounter(10, 50).toSnapshot());
+	}
+
+	@Test
+	public void encoding() {
+		final PercentileSnapshot s = new PercentileSnapshot(new long[] { 100, 500, 1000, 5000 },
+				TimeUnit.MICROSECONDS, new long[] { 123456, 0, 1, 300, 7 });
+
+		final byte[] bytes = s.toByteArray();
+		assertEquals(s.getEncodedLength(), bytes.length);
+		assertTrue(bytes.length < 30);
+		assertEquals(s, PercentileSnapshot.fromByteArray(bytes));
+
+		// multiple snapshots in one buffer
+		final ByteBuffer buf = ByteBuffer.allocate(2 * bytes.length);
+		s.write(buf);
+		s.write(buf);
+		buf.flip();
+		assertEquals(s, PercentileSnapshot.read(buf));
+		assertEquals(s, PercentileSnapshot.read(buf));
+		assertEquals(0, buf.remaining());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void truncated() {
+		final byte[] bytes = new PercentileCounter(10, 100).toSnapshot().toByteArray();
+		PercentileSnapshot.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1));
+	}
+
+	@Test
+	public void interval() throws NotSerializableException {
+		final IntervalPercentileCounter c = new IntervalPercentileCounter(TimeUnit.HOURS, 2, TimeUnit.MILLISECONDS,
+				10, 100);
+		c.increment(5);
+
+		final PercentileSnapshot s = new UnmodifiableIntervalPercentileCounterWrapper(c).toSnapshot();
+		assertArrayEquals(new long[] { 1, 0, 0 }, s.getCounts());
+		assertEquals(s, SerializationUtils.copy(s, PercentileSnapshot.class));
+	}
+}
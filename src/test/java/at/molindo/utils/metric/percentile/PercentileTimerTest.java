@@ -0,0 +1,64 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.metric.percentile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PercentileTimerTest {
+
+	private long _nanos;
+
+	@Test
+	public void test() {
+		final PercentileCounter counter = new PercentileCounter(TimeUnit.MICROSECONDS, 10, 100);
+		final PercentileTimer timer = new PercentileTimer(counter) {
+
+			@Override
+			protected long nanoTime() {
+				return _nanos;
+			}
+		};
+
+		assertFalse(timer.isRunning());
+
+		for (int i = 0; i < 4; i++) {
+			timer.start();
+			assertTrue(timer.isRunning());
+			_nanos += TimeUnit.MICROSECONDS.toNanos(i * 40);
+			assertEquals(i * 40, timer.elapsed(TimeUnit.MICROSECONDS));
+			assertEquals(TimeUnit.MICROSECONDS.toNanos(i * 40), timer.stop());
+			assertFalse(timer.isRunning());
+		}
+
+		timer.start();
+		timer.cancel();
+
+		assertEquals(4, counter.getTotal());
+		assertEquals(1, counter.toList().get(0).getSum());
+		assertEquals(3, counter.toList().get(1).getSum());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void notStarted() {
+		new PercentileTimer(new PercentileCounter(10)).stop();
+	}
+}
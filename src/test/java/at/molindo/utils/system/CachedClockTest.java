@@ -0,0 +1,84 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.NotSerializableException;
+
+import org.junit.Test;
+
+import at.molindo.utils.data.SerializationUtils;
+
+public class CachedClockTest {
+
+	@Test
+	public void test() throws InterruptedException {
+		final CachedClock clock = new CachedClock(5);
+		try {
+			assertTrue(clock.isRunning());
+
+			final long start = clock.currentTimeMillis();
+			assertEquals(System.currentTimeMillis(), start, 50);
+
+			Thread.sleep(50);
+			assertTrue(clock.currentTimeMillis() > start);
+		} finally {
+			clock.stop();
+		}
+
+		// wait for ticker to die
+		for (int i = 0; i < 100 && clock.isRunning(); i++) {
+			Thread.sleep(10);
+		}
+		assertFalse(clock.isRunning());
+
+		final long stopped = clock.currentTimeMillis();
+		Thread.sleep(20);
+		assertEquals(stopped, clock.currentTimeMillis());
+	}
+
+	@Test
+	public void serialize() throws NotSerializableException {
+		assertSame(CachedClock.getDefault(), SerializationUtils.copy(CachedClock.getDefault(), CachedClock.class));
+		assertSame(SystemClock.INSTANCE, SerializationUtils.copy(SystemClock.INSTANCE, SystemClock.class));
+
+		final CachedClock clock = new CachedClock(10);
+		final CachedClock copy = SerializationUtils.copy(clock, CachedClock.class);
+		try {
+			assertEquals(10, copy.getResolutionMillis());
+			assertTrue(copy.isRunning());
+		} finally {
+			clock.stop();
+			copy.stop();
+		}
+	}
+
+	@Test
+	public void stopDefault() {
+		try {
+			CachedClock.getDefault().stop();
+			fail();
+		} catch (final UnsupportedOperationException e) {
+			// expected
+		}
+		assertTrue(CachedClock.getDefault().isRunning());
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2016 Molindo GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package at.molindo.utils.system;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ManualClockTest {
+
+	@Test
+	public void test() {
+		final ManualClock clock = new ManualClock(1000);
+		assertEquals(1000, clock.currentTimeMillis());
+		assertEquals(1000000000, clock.nanoTime());
+
+		clock.advance(1500, TimeUnit.MICROSECONDS);
+		assertEquals(1001, clock.currentTimeMillis());
+		assertEquals(1001500000, clock.nanoTime());
+
+		clock.set(2, TimeUnit.SECONDS);
+		assertEquals(2000, clock.currentTimeMillis());
+	}
+}